@@ -0,0 +1,360 @@
+package tcking.github.com.giraffeplayer2;
+
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.Choreographer;
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.ViewParent;
+import android.view.ViewTreeObserver;
+
+import com.github.tcking.giraffeplayer2.R;
+
+import java.util.ArrayList;
+
+/**
+ * autoplay the most visible VideoView in a scrolling container(RecyclerView,ListView,ScrollView...).
+ * VideoViews register themselves when attached to window,so only the attached items are measured,
+ * at most once per frame when scrolled or laid out. a fling only tracks the velocity,
+ * the player is prepared when the scroll settles. only accessed on main thread
+ */
+
+public class AutoPlayCoordinator {
+    private static final String TAG = "GiraffeAutoPlay";
+    //a playing item is only switched if another one is visible by this fraction more
+    private static final float SWITCH_MARGIN = 0.1f;
+
+    private final ViewGroup container;
+    private final ArrayList<VideoView> videoViews = new ArrayList<>();
+    private float minVisibleFraction = 0.6f;
+    private int flingVelocity = 1000;//dp per second
+    private long settleDelay = 150;
+    private boolean attached;
+
+    private VideoView current;
+    private boolean frameScheduled;
+    //the item whose movement tells the scroll velocity
+    private VideoView tracked;
+    private int trackedTop;
+    private long trackedTime;
+    private float[] fractions = new float[8];
+    private int[] tops = new int[8];
+
+    private final Choreographer.FrameCallback frameCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            frameScheduled = false;
+            onFrame(false);
+        }
+    };
+
+    private final Runnable settleCallback = new Runnable() {
+        @Override
+        public void run() {
+            onFrame(true);
+        }
+    };
+
+    private final ViewTreeObserver.OnScrollChangedListener scrollListener = new ViewTreeObserver.OnScrollChangedListener() {
+        @Override
+        public void onScrollChanged() {
+            scheduleFrame();
+        }
+    };
+
+    private final ViewTreeObserver.OnGlobalLayoutListener layoutListener = new ViewTreeObserver.OnGlobalLayoutListener() {
+        @Override
+        public void onGlobalLayout() {
+            scheduleFrame();
+        }
+    };
+
+    private AutoPlayCoordinator(ViewGroup container) {
+        this.container = container;
+    }
+
+    /**
+     * start autoplay in the container,the coordinator attached before is returned if any
+     * @param container RecyclerView,ListView or any scrolling ViewGroup
+     * @return AutoPlayCoordinator
+     */
+    public static AutoPlayCoordinator attach(ViewGroup container) {
+        Object tag = container.getTag(R.id.player_autoplay_coordinator);
+        if (tag instanceof AutoPlayCoordinator) {
+            return (AutoPlayCoordinator) tag;
+        }
+        AutoPlayCoordinator coordinator = new AutoPlayCoordinator(container);
+        container.setTag(R.id.player_autoplay_coordinator, coordinator);
+        coordinator.attached = true;
+        ViewTreeObserver observer = container.getViewTreeObserver();
+        observer.addOnScrollChangedListener(coordinator.scrollListener);
+        observer.addOnGlobalLayoutListener(coordinator.layoutListener);
+        //VideoViews attached before the coordinator
+        coordinator.collect(container);
+        coordinator.scheduleFrame();
+        return coordinator;
+    }
+
+    /**
+     * stop autoplay,the playing video goes on
+     */
+    public void detach() {
+        if (!attached) {
+            return;
+        }
+        attached = false;
+        container.setTag(R.id.player_autoplay_coordinator, null);
+        ViewTreeObserver observer = container.getViewTreeObserver();
+        if (observer.isAlive()) {
+            observer.removeOnScrollChangedListener(scrollListener);
+            observer.removeOnGlobalLayoutListener(layoutListener);
+        }
+        if (frameScheduled) {
+            Choreographer.getInstance().removeFrameCallback(frameCallback);
+            frameScheduled = false;
+        }
+        container.removeCallbacks(settleCallback);
+        videoViews.clear();
+        current = null;
+        tracked = null;
+    }
+
+    /**
+     * @return the coordinator of the nearest container which the view is in,null if none
+     */
+    static AutoPlayCoordinator find(View view) {
+        for (ViewParent vp = view.getParent(); vp instanceof View; vp = vp.getParent()) {
+            Object tag = ((View) vp).getTag(R.id.player_autoplay_coordinator);
+            if (tag instanceof AutoPlayCoordinator) {
+                return (AutoPlayCoordinator) tag;
+            }
+        }
+        return null;
+    }
+
+    private void collect(ViewGroup group) {
+        for (int i = 0; i < group.getChildCount(); i++) {
+            View child = group.getChildAt(i);
+            if (child instanceof VideoView) {
+                register((VideoView) child);
+            } else if (child instanceof ViewGroup) {
+                collect((ViewGroup) child);
+            }
+        }
+    }
+
+    void register(VideoView videoView) {
+        if (attached && !videoViews.contains(videoView)) {
+            videoViews.add(videoView);
+            scheduleFrame();
+        }
+    }
+
+    void unregister(VideoView videoView) {
+        videoViews.remove(videoView);
+        if (videoView == current) {
+            //scrolled out and recycled,maybe during a fling no other item is picked after,don't keep playing off screen
+            pause(current);
+            current = null;
+        }
+        if (videoView == tracked) {
+            tracked = null;
+        }
+    }
+
+    private void scheduleFrame() {
+        if (attached && !frameScheduled) {
+            frameScheduled = true;
+            Choreographer.getInstance().postFrameCallback(frameCallback);
+        }
+    }
+
+    /**
+     * measure the visibility of the attached items,
+     * pick the most visible one unless it's flinging
+     * @param settled true if no scroll for settleDelay
+     */
+    private void onFrame(boolean settled) {
+        if (!attached) {
+            return;
+        }
+        int count = videoViews.size();
+        if (fractions.length < count) {
+            fractions = new float[count * 2];
+            tops = new int[count * 2];
+        }
+        int currentIndex = -1;
+        boolean trackedFound = false;
+        for (int i = 0; i < count; i++) {
+            VideoView videoView = videoViews.get(i);
+            measure(videoView, i);
+            if (videoView == current) {
+                currentIndex = i;
+            }
+            if (videoView == tracked) {
+                trackedFound = true;
+            }
+        }
+        if (!settled) {
+            container.removeCallbacks(settleCallback);
+            container.postDelayed(settleCallback, settleDelay);
+            long now = SystemClock.uptimeMillis();
+            boolean fling = false;
+            if (trackedFound) {
+                int index = videoViews.indexOf(tracked);
+                float density = container.getResources().getDisplayMetrics().density;
+                fling = isFling(Math.abs(tops[index] - trackedTop), now - trackedTime, density, flingVelocity);
+            }
+            if (count > 0) {
+                tracked = videoViews.get(0);
+                trackedTop = tops[0];
+                trackedTime = now;
+            }
+            if (fling) {
+                return;
+            }
+        }
+        int best = pick(fractions, tops, count, currentIndex, minVisibleFraction);
+        if (best >= 0) {
+            play(videoViews.get(best));
+        } else if (current != null) {
+            pause(current);
+            current = null;
+        }
+    }
+
+    private void measure(VideoView videoView, int index) {
+        int left = 0;
+        int top = 0;
+        View view = videoView;
+        boolean inContainer = videoView.getVisibility() == View.VISIBLE;
+        while (inContainer && view != container) {
+            left += view.getLeft() + (int) view.getTranslationX();
+            top += view.getTop() + (int) view.getTranslationY();
+            ViewParent parent = view.getParent();
+            if (!(parent instanceof View)) {
+                inContainer = false;
+            } else {
+                view = (View) parent;
+                left -= view.getScrollX();
+                top -= view.getScrollY();
+            }
+        }
+        tops[index] = top;
+        fractions[index] = inContainer ? visibleFraction(left, top, videoView.getWidth(), videoView.getHeight(),
+                container.getWidth(), container.getHeight()) : 0;
+    }
+
+    private void play(VideoView videoView) {
+        if (videoView == current || videoView.getVideoInfo().getUri() == null) {
+            return;
+        }
+        log("play " + videoView.getVideoInfo().getFingerprint());
+        current = videoView;
+        GiraffePlayer player = videoView.getPlayer();
+        PlayerManager.getInstance().setCurrentPlayer(player);
+        player.start();
+    }
+
+    private void pause(VideoView videoView) {
+        log("pause " + videoView.getVideoInfo().getFingerprint());
+        GiraffePlayer player = PlayerManager.getInstance().getPlayerByFingerprint(videoView.getVideoInfo().getFingerprint());
+        if (player != null && player.isPlaying()) {
+            player.pause();
+        }
+    }
+
+    /**
+     * @return the part of the item inside the container,0~1
+     */
+    static float visibleFraction(int left, int top, int width, int height, int containerWidth, int containerHeight) {
+        if (width <= 0 || height <= 0) {
+            return 0;
+        }
+        int visibleWidth = Math.min(left + width, containerWidth) - Math.max(left, 0);
+        int visibleHeight = Math.min(top + height, containerHeight) - Math.max(top, 0);
+        if (visibleWidth <= 0 || visibleHeight <= 0) {
+            return 0;
+        }
+        return (float) visibleWidth * visibleHeight / ((float) width * height);
+    }
+
+    /**
+     * @return index of the item to play,-1 if none is visible enough.
+     * the most visible one wins,the upper one on a tie,the current one is kept unless another is clearly more visible
+     */
+    static int pick(float[] fractions, int[] tops, int count, int current, float minVisibleFraction) {
+        int best = -1;
+        for (int i = 0; i < count; i++) {
+            if (fractions[i] < minVisibleFraction) {
+                continue;
+            }
+            if (best < 0 || fractions[i] > fractions[best] || (fractions[i] == fractions[best] && tops[i] < tops[best])) {
+                best = i;
+            }
+        }
+        if (best >= 0 && current >= 0 && current != best && fractions[current] >= minVisibleFraction
+                && fractions[best] < fractions[current] + SWITCH_MARGIN) {
+            return current;
+        }
+        return best;
+    }
+
+    /**
+     * @param distance pixels moved since the last frame
+     * @param elapsed ms since the last frame
+     */
+    static boolean isFling(int distance, long elapsed, float density, int flingVelocity) {
+        if (elapsed <= 0) {
+            return false;
+        }
+        return distance * 1000f / elapsed > flingVelocity * density;
+    }
+
+    public float getMinVisibleFraction() {
+        return minVisibleFraction;
+    }
+
+    /**
+     * @param minVisibleFraction 0~1,an item plays only if this part of it is visible,default is 0.6
+     * @return AutoPlayCoordinator
+     */
+    public AutoPlayCoordinator setMinVisibleFraction(float minVisibleFraction) {
+        this.minVisibleFraction = minVisibleFraction;
+        scheduleFrame();
+        return this;
+    }
+
+    public int getFlingVelocity() {
+        return flingVelocity;
+    }
+
+    /**
+     * @param flingVelocity dp per second,faster scroll is a fling and nothing is prepared until it settles,
+     *                      default is 1000
+     * @return AutoPlayCoordinator
+     */
+    public AutoPlayCoordinator setFlingVelocity(int flingVelocity) {
+        this.flingVelocity = flingVelocity;
+        return this;
+    }
+
+    public long getSettleDelay() {
+        return settleDelay;
+    }
+
+    /**
+     * @param settleDelay ms without scroll to consider the scroll settled,default is 150
+     * @return AutoPlayCoordinator
+     */
+    public AutoPlayCoordinator setSettleDelay(long settleDelay) {
+        this.settleDelay = settleDelay;
+        return this;
+    }
+
+    private void log(String msg) {
+        if (GiraffePlayer.debug) {
+            Log.d(TAG, msg);
+        }
+    }
+}
@@ -31,6 +31,8 @@ public abstract class BaseMediaController extends DefaultPlayerListener implemen
     protected Handler handler;
     protected VideoView videoView;
     protected View controllerView;
+    //format time labels without allocation
+    protected final TimeFormatter timeFormatter = new TimeFormatter();
 
     public BaseMediaController(Context context) {
         this.context = context;
@@ -0,0 +1,244 @@
+package tcking.github.com.giraffeplayer2;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+import tv.danmaku.ijk.media.player.IjkMediaPlayer;
+
+/**
+ * typed buffering and latency settings of ijkplayer,compiled into player options.
+ * trade startup latency against stall rate with a preset,eg: {@link #lowLatencyLive()},
+ * and adjust single values by the setters. unset values keep the ijkplayer defaults
+ */
+
+public class BufferConfig implements Parcelable {
+    public static final int UNSET = -1;
+
+    private long maxBufferSize = UNSET;
+    private int minFrames = UNSET;
+    private long probeSize = UNSET;
+    private long analyzeDuration = UNSET;
+    private int packetBuffering = UNSET;
+    private int framedrop = UNSET;
+    private int infiniteBuffer = UNSET;
+
+    public BufferConfig() {
+    }
+
+    public BufferConfig(BufferConfig other) {
+        maxBufferSize = other.maxBufferSize;
+        minFrames = other.minFrames;
+        probeSize = other.probeSize;
+        analyzeDuration = other.analyzeDuration;
+        packetBuffering = other.packetBuffering;
+        framedrop = other.framedrop;
+        infiniteBuffer = other.infiniteBuffer;
+    }
+
+    /**
+     * live streams: start as soon as possible and stay close to the live edge,
+     * render packets without buffering and drop late frames
+     */
+    public static BufferConfig lowLatencyLive() {
+        return new BufferConfig()
+                .setMaxBufferSize(1024 * 1024)
+                .setMinFrames(2)
+                .setProbeSize(32 * 1024)
+                .setAnalyzeDuration(100)
+                .setPacketBuffering(false)
+                .setFramedrop(5)
+                .setInfiniteBuffer(true);
+    }
+
+    /**
+     * on demand videos: a large buffer against stalls,no dropped frames
+     */
+    public static BufferConfig vodQuality() {
+        return new BufferConfig()
+                .setMaxBufferSize(15 * 1024 * 1024)
+                .setMinFrames(50000)
+                .setPacketBuffering(true)
+                .setFramedrop(0)
+                .setInfiniteBuffer(false);
+    }
+
+    /**
+     * short previews in a feed: quick first frame with a small buffer,
+     * many of them may be alive at the same time
+     */
+    public static BufferConfig feedPreview() {
+        return new BufferConfig()
+                .setMaxBufferSize(2 * 1024 * 1024)
+                .setMinFrames(25)
+                .setProbeSize(64 * 1024)
+                .setAnalyzeDuration(500)
+                .setPacketBuffering(true)
+                .setFramedrop(1)
+                .setInfiniteBuffer(false);
+    }
+
+    /**
+     * @return the ijkplayer options of the set values
+     */
+    public OptionProfile toOptionProfile() {
+        OptionProfile profile = OptionProfile.EMPTY;
+        if (maxBufferSize != UNSET) {
+            profile = profile.with(Option.create(IjkMediaPlayer.OPT_CATEGORY_PLAYER, "max-buffer-size", maxBufferSize));
+        }
+        if (minFrames != UNSET) {
+            profile = profile.with(Option.create(IjkMediaPlayer.OPT_CATEGORY_PLAYER, "min-frames", (long) minFrames));
+        }
+        if (probeSize != UNSET) {
+            profile = profile.with(Option.create(IjkMediaPlayer.OPT_CATEGORY_FORMAT, "probesize", probeSize));
+        }
+        if (analyzeDuration != UNSET) {
+            //in microseconds
+            profile = profile.with(Option.create(IjkMediaPlayer.OPT_CATEGORY_FORMAT, "analyzeduration", analyzeDuration * 1000));
+        }
+        if (packetBuffering != UNSET) {
+            profile = profile.with(Option.create(IjkMediaPlayer.OPT_CATEGORY_PLAYER, "packet-buffering", (long) packetBuffering));
+        }
+        if (framedrop != UNSET) {
+            profile = profile.with(Option.create(IjkMediaPlayer.OPT_CATEGORY_PLAYER, "framedrop", (long) framedrop));
+        }
+        if (infiniteBuffer != UNSET) {
+            profile = profile.with(Option.create(IjkMediaPlayer.OPT_CATEGORY_PLAYER, "infbuf", (long) infiniteBuffer));
+        }
+        return profile;
+    }
+
+    public long getMaxBufferSize() {
+        return maxBufferSize;
+    }
+
+    /**
+     * @param maxBufferSize max bytes buffered ahead
+     * @return BufferConfig
+     */
+    public BufferConfig setMaxBufferSize(long maxBufferSize) {
+        this.maxBufferSize = maxBufferSize;
+        return this;
+    }
+
+    public int getMinFrames() {
+        return minFrames;
+    }
+
+    /**
+     * @param minFrames frames buffered before reading pauses,small value starts faster but stalls more
+     * @return BufferConfig
+     */
+    public BufferConfig setMinFrames(int minFrames) {
+        this.minFrames = minFrames;
+        return this;
+    }
+
+    public long getProbeSize() {
+        return probeSize;
+    }
+
+    /**
+     * @param probeSize bytes read to detect the stream format
+     * @return BufferConfig
+     */
+    public BufferConfig setProbeSize(long probeSize) {
+        this.probeSize = probeSize;
+        return this;
+    }
+
+    public long getAnalyzeDuration() {
+        return analyzeDuration;
+    }
+
+    /**
+     * @param analyzeDuration media duration in ms analyzed to find the stream info
+     * @return BufferConfig
+     */
+    public BufferConfig setAnalyzeDuration(long analyzeDuration) {
+        this.analyzeDuration = analyzeDuration;
+        return this;
+    }
+
+    /**
+     * @return 1,0 or UNSET
+     */
+    public int getPacketBuffering() {
+        return packetBuffering;
+    }
+
+    /**
+     * @param packetBuffering false to render packets without waiting for the buffer
+     * @return BufferConfig
+     */
+    public BufferConfig setPacketBuffering(boolean packetBuffering) {
+        this.packetBuffering = packetBuffering ? 1 : 0;
+        return this;
+    }
+
+    public int getFramedrop() {
+        return framedrop;
+    }
+
+    /**
+     * @param framedrop frames allowed to drop when the decoder falls behind,0 to never drop
+     * @return BufferConfig
+     */
+    public BufferConfig setFramedrop(int framedrop) {
+        this.framedrop = framedrop;
+        return this;
+    }
+
+    /**
+     * @return 1,0 or UNSET
+     */
+    public int getInfiniteBuffer() {
+        return infiniteBuffer;
+    }
+
+    /**
+     * @param infiniteBuffer true to read without the buffer limit,for real time streams
+     * @return BufferConfig
+     */
+    public BufferConfig setInfiniteBuffer(boolean infiniteBuffer) {
+        this.infiniteBuffer = infiniteBuffer ? 1 : 0;
+        return this;
+    }
+
+    protected BufferConfig(Parcel in) {
+        maxBufferSize = in.readLong();
+        minFrames = in.readInt();
+        probeSize = in.readLong();
+        analyzeDuration = in.readLong();
+        packetBuffering = in.readInt();
+        framedrop = in.readInt();
+        infiniteBuffer = in.readInt();
+    }
+
+    @Override
+    public void writeToParcel(Parcel dest, int flags) {
+        dest.writeLong(maxBufferSize);
+        dest.writeInt(minFrames);
+        dest.writeLong(probeSize);
+        dest.writeLong(analyzeDuration);
+        dest.writeInt(packetBuffering);
+        dest.writeInt(framedrop);
+        dest.writeInt(infiniteBuffer);
+    }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    public static final Creator<BufferConfig> CREATOR = new Creator<BufferConfig>() {
+        @Override
+        public BufferConfig createFromParcel(Parcel in) {
+            return new BufferConfig(in);
+        }
+
+        @Override
+        public BufferConfig[] newArray(int size) {
+            return new BufferConfig[size];
+        }
+    };
+}
@@ -51,14 +51,21 @@ public class DefaultMediaController extends BaseMediaController {
     private int status = STATUS_IDLE;
     private int displayModel = GiraffePlayer.DISPLAY_NORMAL;
 
+    private GiraffePlayer progressPlayer;
+
     private String generateTime(long time) {
-        int totalSeconds = (int) (time / 1000);
-        int seconds = totalSeconds % 60;
-        int minutes = (totalSeconds / 60) % 60;
-        int hours = totalSeconds / 3600;
-        return hours > 0 ? String.format("%02d:%02d:%02d", hours, minutes, seconds) : String.format("%02d:%02d", minutes, seconds);
+        return timeFormatter.format(time);
     }
 
+    protected final PositionClock.OnPositionChangeListener positionListener = new PositionClock.OnPositionChangeListener() {
+        @Override
+        public void onPositionChange(long position, long duration) {
+            if (videoView.isCurrentActivePlayer()) {
+                updateProgress(position, duration);
+            }
+        }
+    };
+
     protected final SeekBar.OnSeekBarChangeListener seekListener = new SeekBar.OnSeekBarChangeListener() {
         @Override
         public void onProgressChanged(SeekBar seekBar, int progress, boolean fromUser) {
@@ -72,8 +79,7 @@ public class DefaultMediaController extends BaseMediaController {
             int newPosition = (int) ((player.getDuration() * progress * 1.0) / 1000);
             String time = generateTime(newPosition);
             if (instantSeeking) {
-                player.seekTo(newPosition);
-
+                player.previewSeekTo(newPosition);
             }
             $.id(R.id.app_video_currentTime).text(time);
         }
@@ -94,9 +100,8 @@ public class DefaultMediaController extends BaseMediaController {
                 return;
             }
             GiraffePlayer player = videoView.getPlayer();
-            if (!instantSeeking) {
-                player.seekTo((int) ((player.getDuration() * seekBar.getProgress() * 1.0) / 1000));
-            }
+            //exact seek on release,previews while dragging may have been coalesced
+            player.seekTo((int) ((player.getDuration() * seekBar.getProgress() * 1.0) / 1000));
             show(defaultTimeout);
             handler.removeMessages(MESSAGE_SHOW_PROGRESS);
             audioManager.setStreamMute(AudioManager.STREAM_MUSIC, false);
@@ -132,19 +137,48 @@ public class DefaultMediaController extends BaseMediaController {
 
         long position = player.getCurrentPosition();
         long duration = player.getDuration();
+        updateProgress(position, duration);
+        return position;
+    }
 
+    protected void updateProgress(long position, long duration) {
+        if (isDragging) {
+            return;
+        }
         if (seekBar != null) {
             if (duration > 0) {
                 long pos = 1000L * position / duration;
                 seekBar.setProgress((int) pos);
             }
-            int percent = player.getBufferPercentage();
+            int percent = videoView.getPlayer().getBufferPercentage();
             seekBar.setSecondaryProgress(percent * 10);
         }
 
         $.id(R.id.app_video_currentTime).text(generateTime(position));
-        $.id(R.id.app_video_endTime).text(generateTime(player.getDuration()));
-        return position;
+        $.id(R.id.app_video_endTime).text(generateTime(duration));
+    }
+
+    /**
+     * receive position changes from the current player's clock instead of polling
+     */
+    protected void subscribeProgress() {
+        if (!videoView.isCurrentActivePlayer()) {
+            unsubscribeProgress();
+            return;
+        }
+        GiraffePlayer player = videoView.getPlayer();
+        if (player != progressPlayer) {
+            unsubscribeProgress();
+            progressPlayer = player;
+            player.addOnPositionChangeListener(positionListener);
+        }
+    }
+
+    protected void unsubscribeProgress() {
+        if (progressPlayer != null) {
+            progressPlayer.removeOnPositionChangeListener(positionListener);
+            progressPlayer = null;
+        }
     }
 
 
@@ -182,6 +216,7 @@ public class DefaultMediaController extends BaseMediaController {
     protected void hide(boolean force) {
         if (force || isShowing) {
             handler.removeMessages(MESSAGE_SHOW_PROGRESS);
+            unsubscribeProgress();
             showBottomControl(false);
             $.id(R.id.app_video_top_box).gone();
 //            $.id(R.id.app_video_fullscreen).invisible();
@@ -313,8 +348,8 @@ public class DefaultMediaController extends BaseMediaController {
             case MESSAGE_SHOW_PROGRESS:
                 setProgress();
                 if (!isDragging && isShowing) {
-                    msg = handler.obtainMessage(MESSAGE_SHOW_PROGRESS);
-                    handler.sendMessageDelayed(msg, 300);
+                    //later updates are pushed by the player's position clock
+                    subscribeProgress();
                     updatePausePlay();
                 }
                 break;
@@ -599,6 +634,20 @@ public class DefaultMediaController extends BaseMediaController {
 //        }
     }
 
+    @Override
+    public void onBufferingUpdate(GiraffePlayer giraffePlayer, int percent) {
+        if (isShowing && seekBar != null && videoView.isCurrentActivePlayer()) {
+            seekBar.setSecondaryProgress(percent * 10);
+        }
+    }
+
+    @Override
+    public void onCurrentStateChange(int oldState, int newState) {
+        if (isShowing) {
+            updatePausePlay();
+        }
+    }
+
     @Override
     public void onTargetStateChange(int oldState, int newState) {
         if (newState != GiraffePlayer.STATE_IDLE) {
@@ -0,0 +1,113 @@
+package tcking.github.com.giraffeplayer2;
+
+import android.graphics.SurfaceTexture;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Surface;
+import android.view.TextureView;
+
+/**
+ * owns the SurfaceTexture and the Surface of a player.
+ * the first SurfaceTexture is kept and handed to every later TextureView of the player
+ * (fullscreen,re-init,rebind after park),so the last frame stays on screen and no surface is leaked.
+ * the Surface wrapping it is created once,both are released by {@link #release()}
+ */
+
+public class DisplaySurfaceManager {
+    /**
+     * called on main thread when the TextureView is ready,with the SurfaceTexture to render to
+     */
+    public interface Callback {
+        void onSurfaceAvailable(SurfaceTexture surfaceTexture);
+    }
+
+    private final Handler uiHandler = new Handler(Looper.getMainLooper());
+    private SurfaceTexture surfaceTexture;
+    private Surface surface;
+
+    /**
+     * render the player on the textureView,must be called on main thread
+     */
+    public void bind(final TextureView textureView, final Callback callback) {
+        textureView.setSurfaceTextureListener(new TextureView.SurfaceTextureListener() {
+            @Override
+            public void onSurfaceTextureAvailable(SurfaceTexture surfaceTexture, int width, int height) {
+                SurfaceTexture kept = keep(surfaceTexture);
+                if (kept != surfaceTexture) {
+                    //the new one is released by TextureView
+                    textureView.setSurfaceTexture(kept);
+                }
+                callback.onSurfaceAvailable(kept);
+            }
+
+            @Override
+            public void onSurfaceTextureSizeChanged(SurfaceTexture surfaceTexture, int width, int height) {
+
+            }
+
+            @Override
+            public boolean onSurfaceTextureDestroyed(SurfaceTexture surfaceTexture) {
+                //the kept one is moved to another view(eg. fullscreen) or released by release()
+                return !isKept(surfaceTexture);
+            }
+
+            @Override
+            public void onSurfaceTextureUpdated(SurfaceTexture surfaceTexture) {
+
+            }
+        });
+    }
+
+    private synchronized SurfaceTexture keep(SurfaceTexture surfaceTexture) {
+        if (this.surfaceTexture == null) {
+            this.surfaceTexture = surfaceTexture;
+        }
+        return this.surfaceTexture;
+    }
+
+    private synchronized boolean isKept(SurfaceTexture surfaceTexture) {
+        return surfaceTexture == this.surfaceTexture;
+    }
+
+    /**
+     * @return the Surface of the kept SurfaceTexture,created once,null if the surfaceTexture is not kept
+     */
+    public synchronized Surface getSurface(SurfaceTexture surfaceTexture) {
+        if (surfaceTexture == null || surfaceTexture != this.surfaceTexture) {
+            return null;
+        }
+        if (surface == null) {
+            surface = new Surface(surfaceTexture);
+        }
+        return surface;
+    }
+
+    /**
+     * release the Surface and the SurfaceTexture on main thread,
+     * after the display is removed and the media player no longer renders to them
+     */
+    public void release() {
+        final SurfaceTexture surfaceTexture;
+        final Surface surface;
+        synchronized (this) {
+            surfaceTexture = this.surfaceTexture;
+            surface = this.surface;
+            this.surfaceTexture = null;
+            this.surface = null;
+        }
+        if (surfaceTexture == null && surface == null) {
+            return;
+        }
+        uiHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (surface != null) {
+                    surface.release();
+                }
+                if (surfaceTexture != null) {
+                    surfaceTexture.release();
+                }
+            }
+        });
+    }
+}
@@ -10,14 +10,13 @@ import android.media.AudioManager;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Handler;
-import android.os.HandlerThread;
 import android.os.Looper;
 import android.os.Message;
-import android.os.Process;
 import android.transition.TransitionManager;
 import android.util.Log;
 import android.view.Gravity;
 import android.view.Surface;
+import android.view.SurfaceHolder;
 import android.view.SurfaceView;
 import android.view.TextureView;
 import android.view.View;
@@ -31,6 +30,7 @@ import com.github.tcking.giraffeplayer2.R;
 import java.io.IOException;
 import java.lang.ref.WeakReference;
 import java.util.Map;
+import java.util.Random;
 
 import tv.danmaku.ijk.media.player.AndroidMediaPlayer;
 import tv.danmaku.ijk.media.player.IMediaPlayer;
@@ -53,6 +53,11 @@ public class GiraffePlayer implements MediaController.MediaPlayerControl {
     private static final int MSG_CTRL_RELEASE = 4;
     private static final int MSG_CTRL_RETRY = 5;
     private static final int MSG_CTRL_SELECT_TRACK = 6;
+    private static final int MSG_CTRL_PREPARE = 7;
+    private static final int MSG_CTRL_SEEK_COMPLETE = 8;
+    private static final int MSG_SAVE_POSITION = 9;
+    private static final int MSG_LIVE_LATENCY = 10;
+    private static final int MSG_CTRL_PARK = 11;
 
 
     private static final int MSG_SET_DISPLAY = 12;
@@ -66,7 +71,7 @@ public class GiraffePlayer implements MediaController.MediaPlayerControl {
     public static final int STATE_PLAYING = 3;
     public static final int STATE_PAUSED = 4;
     public static final int STATE_PLAYBACK_COMPLETED = 5;
-    private final HandlerThread internalPlaybackThread;
+    private final Looper internalPlaybackLooper;
 
     private int currentBufferPercentage = 0;
     private boolean canPause = true;
@@ -75,6 +80,33 @@ public class GiraffePlayer implements MediaController.MediaPlayerControl {
     private int audioSessionId;
     private int seekWhenPrepared;
 
+    //seek scheduler,only accessed on playback thread
+    private static final int SEEK_TIMEOUT = 3000;
+    private static final int PREVIEW_SEEK_MIN_DISTANCE = 1000;
+    private boolean seekInFlight;
+    private int lastSeek = -1;
+    private int pendingSeek = -1;
+    private boolean pendingSeekPreview;
+
+    //save the position for resuming every RESUME_SAMPLE_INTERVAL ms while playing
+    private static final int RESUME_SAMPLE_INTERVAL = 5000;
+
+    //retry state,retryAttempt is only accessed on playback thread
+    private final Random retryRandom = new Random();
+    private int retryAttempt;
+    //where the playback goes on after a retry
+    private volatile int retryPosition;
+    //the surface to set again after the media player is reset
+    private volatile Object display;
+    private final DisplaySurfaceManager surfaceManager = new DisplaySurfaceManager();
+
+    //null if the video has no live latency config,only accessed on playback thread
+    private LiveLatencyController liveLatencyController;
+    private LiveLatencyController.Player livePlayer;
+    //stream info the media player is quickly probed by,null if probed fully
+    private volatile StreamInfo fastProbeInfo;
+    private volatile LiveLatencyController.OnLatencyActionListener latencyActionListener;
+
 
     private int currentState = STATE_IDLE;
     private int targetState = STATE_IDLE;
@@ -82,12 +114,20 @@ public class GiraffePlayer implements MediaController.MediaPlayerControl {
     private Map<String, String> headers;
     private Context context;
 
-    private IMediaPlayer mediaPlayer;
+    //read on main thread to detach a destroyed display
+    private volatile IMediaPlayer mediaPlayer;
     private volatile boolean released;
+    private volatile boolean looperReleased;
+    private volatile boolean preloading;
+    //detached from its VideoView without release,see park()
+    private volatile boolean parked;
+    private WeakReference<View> displayGroupRef = new WeakReference<>(null);
     private Handler handler;
     private Handler uiHandler = new Handler(Looper.getMainLooper());
     private ProxyPlayerListener proxyListener;
     private WeakReference<ViewGroup> videoViewContainerRef;
+    //the activity of the VideoView(or the context preloaded with),a parked or preloaded player is released with it
+    private WeakReference<Context> ownerRef;
 
     public static final int DISPLAY_NORMAL = 0;
     public static final int DISPLAY_FULL_WINDOW = 1;
@@ -100,25 +140,76 @@ public class GiraffePlayer implements MediaController.MediaPlayerControl {
     private VideoInfo videoInfo;
 
 
-    private ProxyPlayerListener proxyListener() {
-        return proxyListener;
+    private PlayerListener proxyListener() {
+        //a preloaded player is invisible to listeners until it is attached
+        return preloading || parked ? DefaultPlayerListener.INSTANCE : proxyListener;
     }
 
+    private final PlayerMetrics metrics = new PlayerMetrics();
+    private final PositionClock positionClock = new PositionClock(new PositionClock.Source() {
+        @Override
+        public long readPosition() {
+            return getCurrentPosition();
+        }
+
+        @Override
+        public long readDuration() {
+            return getDuration();
+        }
+    });
+
+    //deliver batched events to proxyListener on main thread
+    private final UIEventBatcher uiEventBatcher = new UIEventBatcher(new UIEventBatcher.Target() {
+        @Override
+        public void onEvent(int type, int arg1, int arg2) {
+            switch (type) {
+                case UIEventBatcher.EVENT_TARGET_STATE:
+                    proxyListener().onTargetStateChange(arg1, arg2);
+                    break;
+                case UIEventBatcher.EVENT_CURRENT_STATE:
+                    proxyListener().onCurrentStateChange(arg1, arg2);
+                    break;
+                case UIEventBatcher.EVENT_BUFFERING_UPDATE:
+                    proxyListener().onBufferingUpdate(GiraffePlayer.this, arg1);
+                    break;
+                case UIEventBatcher.EVENT_INFO:
+                    proxyListener().onInfo(GiraffePlayer.this, arg1, arg2);
+                    break;
+                case UIEventBatcher.EVENT_PREPARING:
+                    proxyListener().onPreparing(GiraffePlayer.this);
+                    break;
+                case UIEventBatcher.EVENT_ERROR:
+                    proxyListener().onError(GiraffePlayer.this, arg1, arg2);
+                    break;
+                default:
+            }
+        }
+    });
+
 
-    private GiraffePlayer(Context context, VideoInfo videoInfo) {
+    private GiraffePlayer(Context context, VideoInfo videoInfo, boolean preloading) {
         this.context = context.getApplicationContext();
+        this.ownerRef = new WeakReference<>(context);
         this.videoInfo = videoInfo;
-        VideoView videoView = PlayerManager.getInstance().getVideoView(videoInfo);
+        this.preloading = preloading;
+        VideoView videoView = preloading ? null : PlayerManager.getInstance().getVideoView(videoInfo);
         videoViewContainerRef = new WeakReference<>(videoView != null ? videoView.getContainer() : null);
         log("new GiraffePlayer");
         this.proxyListener = new ProxyPlayerListener(videoInfo);
-        internalPlaybackThread = new HandlerThread("GiraffePlayerInternal:Handler", Process.THREAD_PRIORITY_AUDIO);
-        internalPlaybackThread.start();
-        handler = new Handler(internalPlaybackThread.getLooper(), new Handler.Callback() {
+        internalPlaybackLooper = PlaybackLooperPool.getInstance().acquire();
+        handler = new Handler(internalPlaybackLooper, new Handler.Callback() {
             @Override
             public boolean handleMessage(Message msg) {
+                //the looper is shared with other players,ignore messages after release
+                if (looperReleased) {
+                    return true;
+                }
                 //init mediaPlayer before any actions
                 log("handleMessage:" + msg.what);
+                if (msg.what == MSG_CTRL_PARK && (mediaPlayer == null || released)) {
+                    //nothing to keep
+                    return true;
+                }
                 if (mediaPlayer == null || released) {
                     handler.removeCallbacks(null);
                     init(true);
@@ -128,24 +219,52 @@ public class GiraffePlayer implements MediaController.MediaPlayerControl {
                 switch (msg.what) {
                     case MSG_CTRL_PLAYING:
                         if (currentState == STATE_PLAYBACK_COMPLETED) {
-                            mediaPlayer.seekTo(0);
+                            doSeek(0, false);
                             mediaPlayer.start();
                             currentState(STATE_PLAYING);
+                            positionClock.sync(true);
+                            scheduleSavePosition();
+                            scheduleLiveLatency();
                         } else {
                             if (currentState == STATE_ERROR) {
                                 handler.sendEmptyMessage(MSG_CTRL_RETRY);
                             } else if (isInPlaybackState()) {
                                 mediaPlayer.start();
                                 currentState(STATE_PLAYING);
+                                positionClock.sync(true);
+                                scheduleSavePosition();
+                                scheduleLiveLatency();
                             }
                         }
                         break;
                     case MSG_CTRL_PAUSE:
                         mediaPlayer.pause();
                         currentState = STATE_PAUSED;
+                        positionClock.sync(false);
+                        savePosition();
+                        break;
+                    case MSG_SAVE_POSITION:
+                        savePosition();
+                        if (currentState == STATE_PLAYING) {
+                            scheduleSavePosition();
+                        }
+                        break;
+                    case MSG_LIVE_LATENCY:
+                        if (currentState == STATE_PLAYING) {
+                            controlLiveLatency();
+                        }
                         break;
                     case MSG_CTRL_SEEK:
-                        mediaPlayer.seekTo((int) msg.obj);
+                        scheduleSeek((int) msg.obj, msg.arg1 == 1);
+                        break;
+                    case MSG_CTRL_SEEK_COMPLETE:
+                        seekInFlight = false;
+                        if (pendingSeek >= 0) {
+                            int position = pendingSeek;
+                            boolean preview = pendingSeekPreview;
+                            pendingSeek = -1;
+                            scheduleSeek(position, preview);
+                        }
                         break;
                     case MSG_CTRL_SELECT_TRACK:
                         int track = (int) msg.obj;
@@ -156,29 +275,45 @@ public class GiraffePlayer implements MediaController.MediaPlayerControl {
                         }
                         break;
                     case MSG_SET_DISPLAY:
+                        display = msg.obj;
                         if (msg.obj == null) {
                             mediaPlayer.setDisplay(null);
-                        } else if (msg.obj instanceof SurfaceTexture) {
-                            mediaPlayer.setSurface(new Surface((SurfaceTexture) msg.obj));
-                        } else if (msg.obj instanceof SurfaceView) {
-                            mediaPlayer.setDisplay(((SurfaceView) msg.obj).getHolder());
+                        } else {
+                            applyDisplay();
+                        }
+                        break;
+                    case MSG_CTRL_PARK:
+                        if (currentState == STATE_PLAYING) {
+                            mediaPlayer.pause();
+                            currentState(STATE_PAUSED);
                         }
+                        positionClock.sync(false);
+                        savePosition();
+                        //the surface goes with the display of the old VideoView
+                        display = null;
+                        mediaPlayer.setDisplay(null);
                         break;
                     case MSG_CTRL_RELEASE:
                         handler.removeCallbacks(null);
                         doRelease(((String) msg.obj));
                         break;
                     case MSG_CTRL_RETRY:
-                        init(false);
+                        metrics.onRetry();
+                        reconnect();
                         handler.sendEmptyMessage(MSG_CTRL_PLAYING);
                         break;
+                    case MSG_CTRL_PREPARE:
+                        //mediaPlayer has been initialized above
+                        break;
 
                     default:
                 }
                 return true;
             }
         });
-        PlayerManager.getInstance().setCurrentPlayer(this);
+        if (!preloading) {
+            PlayerManager.getInstance().setCurrentPlayer(this);
+        }
     }
 
 
@@ -197,26 +332,13 @@ public class GiraffePlayer implements MediaController.MediaPlayerControl {
         proxyListener().onStart(this);
     }
 
-    private void targetState(final int newState) {
-        final int oldTargetState = targetState;
-        uiHandler.post(new Runnable() {
-            @Override
-            public void run() {
-                proxyListener().onTargetStateChange(oldTargetState, newState);
-            }
-        });
+    private void targetState(int newState) {
+        uiEventBatcher.postStateChange(UIEventBatcher.EVENT_TARGET_STATE, targetState, newState);
         targetState = newState;
     }
 
-    private void currentState(final int newState) {
-        final int oldCurrentState = currentState;
-        uiHandler.post(new Runnable() {
-            @Override
-            public void run() {
-                proxyListener().onCurrentStateChange(oldCurrentState, newState);
-
-            }
-        });
+    private void currentState(int newState) {
+        uiEventBatcher.postStateChange(UIEventBatcher.EVENT_CURRENT_STATE, currentState, newState);
         currentState = newState;
     }
 
@@ -243,9 +365,197 @@ public class GiraffePlayer implements MediaController.MediaPlayerControl {
         return (int) mediaPlayer.getCurrentPosition();
     }
 
+    /**
+     * @return the looper which this player handles its messages on
+     */
+    Looper getPlaybackLooper() {
+        return internalPlaybackLooper;
+    }
+
+    /**
+     * @return QoE metrics of this player
+     */
+    public PlayerMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return the clock which extrapolates playback position without querying the decoder
+     */
+    public PositionClock getPositionClock() {
+        return positionClock;
+    }
+
+    /**
+     * listen position changes,the listener is called on main thread when the displayed second changes
+     */
+    public void addOnPositionChangeListener(PositionClock.OnPositionChangeListener listener) {
+        positionClock.addListener(listener);
+    }
+
+    public void removeOnPositionChangeListener(PositionClock.OnPositionChangeListener listener) {
+        positionClock.removeListener(listener);
+    }
+
     @Override
     public void seekTo(int pos) {
-        handler.obtainMessage(MSG_CTRL_SEEK, pos).sendToTarget();
+        //only the latest target matters
+        handler.removeMessages(MSG_CTRL_SEEK);
+        handler.obtainMessage(MSG_CTRL_SEEK, 0, 0, pos).sendToTarget();
+    }
+
+    /**
+     * a fast seek for preview while user dragging,it goes to the nearest key frame
+     * and may be skipped if it's close to the last seek,
+     * call {@link #seekTo(int)} when dragging finished to seek to the exact position
+     * @param pos position in ms
+     */
+    public void previewSeekTo(int pos) {
+        handler.removeMessages(MSG_CTRL_SEEK);
+        handler.obtainMessage(MSG_CTRL_SEEK, 1, 0, pos).sendToTarget();
+    }
+
+    /**
+     * @return the store if this video resumes,null if not
+     */
+    private ResumeStore resumeStore() {
+        return videoInfo.isResumeEnabled() ? PlayerManager.getInstance().getResumeStore(context) : null;
+    }
+
+    private void scheduleSavePosition() {
+        if (videoInfo.isResumeEnabled()) {
+            handler.removeMessages(MSG_SAVE_POSITION);
+            handler.sendEmptyMessageDelayed(MSG_SAVE_POSITION, RESUME_SAMPLE_INTERVAL);
+        }
+    }
+
+    /**
+     * on playback thread,a position near the end clears the saved one
+     */
+    private void savePosition() {
+        ResumeStore store = resumeStore();
+        if (store != null && isInPlaybackState()) {
+            store.put(ResumeStore.keyOf(videoInfo), getCurrentPosition(), getDuration());
+        }
+    }
+
+    /**
+     * listen the speed changes and live edge jumps of the live latency control,called on main thread
+     * @see VideoInfo#setLiveLatency(LiveLatencyConfig)
+     */
+    public void setOnLatencyActionListener(LiveLatencyController.OnLatencyActionListener listener) {
+        this.latencyActionListener = listener;
+    }
+
+    private void scheduleLiveLatency() {
+        LiveLatencyConfig config = videoInfo.getLiveLatency();
+        //only live streams,a jump would restart a VOD from the beginning
+        if (config != null && mediaPlayer.getDuration() <= 0) {
+            if (livePlayer == null) {
+                livePlayer = LiveLatencyController.playerOf(mediaPlayer);
+                if (livePlayer == null) {
+                    return;
+                }
+            }
+            if (liveLatencyController == null || liveLatencyController.getConfig() != config) {
+                liveLatencyController = new LiveLatencyController(config, livePlayer);
+            }
+            handler.removeMessages(MSG_LIVE_LATENCY);
+            handler.sendEmptyMessageDelayed(MSG_LIVE_LATENCY, config.getSampleInterval());
+        }
+    }
+
+    /**
+     * on playback thread,sample the buffer level and act on the decision of the controller
+     */
+    private void controlLiveLatency() {
+        final LiveLatencyController controller = liveLatencyController;
+        if (controller == null || livePlayer == null) {
+            return;
+        }
+        final int action = controller.sample();
+        final long latency = controller.getLatency();
+        final float speed = controller.getSpeed();
+        metrics.onLiveLatency(latency, action);
+        if (action == LiveLatencyController.ACTION_SPEED) {
+            log("live latency " + latency + " ms,speed " + speed);
+            livePlayer.setSpeed(speed);
+            positionClock.setSpeed(speed);
+        } else if (action == LiveLatencyController.ACTION_JUMP) {
+            log("live latency " + latency + " ms,jump to the live edge");
+            //a live stream is opened at the edge
+            retryPosition = 0;
+            reconnect();
+            handler.sendEmptyMessage(MSG_CTRL_PLAYING);
+        }
+        if (action != LiveLatencyController.ACTION_NONE && latencyActionListener != null) {
+            uiHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    LiveLatencyController.OnLatencyActionListener listener = latencyActionListener;
+                    if (listener != null) {
+                        listener.onLatencyAction(GiraffePlayer.this, action, latency, speed);
+                    }
+                }
+            });
+        }
+        if (action != LiveLatencyController.ACTION_JUMP) {
+            scheduleLiveLatency();
+        }
+    }
+
+    /**
+     * keep only the latest target while a seek is in flight,the pending one is issued when seek completed
+     */
+    private void scheduleSeek(int position, boolean preview) {
+        if (seekInFlight) {
+            pendingSeek = position;
+            pendingSeekPreview = preview;
+            return;
+        }
+        if (preview && lastSeek >= 0 && Math.abs(position - lastSeek) < PREVIEW_SEEK_MIN_DISTANCE) {
+            //would land on the same key frame
+            return;
+        }
+        doSeek(position, preview);
+    }
+
+    private void doSeek(int position, boolean preview) {
+        seekInFlight = true;
+        lastSeek = position;
+        metrics.onSeekStart();
+        setAccurateSeek(!preview && accurateSeekEnabled());
+        mediaPlayer.seekTo(position);
+        //in case of onSeekComplete never comes
+        handler.removeMessages(MSG_CTRL_SEEK_COMPLETE);
+        handler.sendEmptyMessageDelayed(MSG_CTRL_SEEK_COMPLETE, SEEK_TIMEOUT);
+    }
+
+    /**
+     * a preview seek only goes to the key frame,the others decode to the exact target
+     */
+    private void setAccurateSeek(boolean accurate) {
+        if (mediaPlayer instanceof SeekMode) {
+            ((SeekMode) mediaPlayer).setAccurateSeek(accurate);
+        } else if (mediaPlayer instanceof IjkMediaPlayer) {
+            //read by ijkplayer when the seek is handled,reset() clears it
+            ((IjkMediaPlayer) mediaPlayer).setOption(IjkMediaPlayer.OPT_CATEGORY_PLAYER, "enable-accurate-seek", accurate ? 1 : 0);
+        }
+    }
+
+    /**
+     * @return false if the video turns off accurate seek by option "enable-accurate-seek"
+     */
+    private boolean accurateSeekEnabled() {
+        Object value = videoInfo.playerOptions().get(IjkMediaPlayer.OPT_CATEGORY_PLAYER, "enable-accurate-seek");
+        return value == null || !"0".equals(String.valueOf(value));
+    }
+
+    /**
+     * a media player which can switch between key frame seek and accurate seek(eg. a fake one in tests)
+     */
+    interface SeekMode {
+        void setAccurateSeek(boolean accurate);
     }
 
     @Override
@@ -320,13 +630,26 @@ public class GiraffePlayer implements MediaController.MediaPlayerControl {
 
     private void init(boolean createDisplay) {
         log("init createDisplay:" + createDisplay);
-        uiHandler.post(new Runnable() {
-            @Override
-            public void run() {
-                proxyListener().onPreparing(GiraffePlayer.this);
-            }
-        });
+        metrics.onInit();
+        uiEventBatcher.post(UIEventBatcher.EVENT_PREPARING, 0, 0);
         releaseMediaPlayer();
+        seekInFlight = false;
+        lastSeek = -1;
+        pendingSeek = -1;
+        handler.removeMessages(MSG_CTRL_SEEK_COMPLETE);
+        //a new media player plays at normal speed
+        liveLatencyController = null;
+        livePlayer = null;
+        positionClock.setSpeed(1);
+        ResumeStore store = resumeStore();
+        if (store != null) {
+            //also where a retry goes on
+            seekWhenPrepared = (int) store.get(ResumeStore.keyOf(videoInfo));
+        }
+        if (retryPosition > 0) {
+            //a retry falls back to init when the media player can't be reset
+            seekWhenPrepared = retryPosition;
+        }
         mediaPlayer = createMediaPlayer();
         if (mediaPlayer instanceof IjkMediaPlayer) {
             IjkMediaPlayer.native_setLogLevel(debug ? IjkMediaPlayer.IJK_LOG_DEBUG : IjkMediaPlayer.IJK_LOG_ERROR);
@@ -340,7 +663,17 @@ public class GiraffePlayer implements MediaController.MediaPlayerControl {
                 for (ITrackInfo trackInfo : mediaPlayer.getTrackInfo()) {
                     log("====:"+trackInfo);
                 }
+                metrics.onPrepared();
+                cacheStreamInfo();
                 currentState(STATE_PREPARED);
+                retryAttempt = 0;
+                retryPosition = 0;
+                if (seekWhenPrepared > 0) {
+                    log("resume at " + seekWhenPrepared);
+                    handler.obtainMessage(MSG_CTRL_SEEK, 0, 0, seekWhenPrepared).sendToTarget();
+                    seekWhenPrepared = 0;
+                }
+                positionClock.sync(false);
                 proxyListener().onPrepared(GiraffePlayer.this);
                 if (targetState == STATE_PLAYING) {
                     handler.sendEmptyMessage(MSG_CTRL_PLAYING);
@@ -348,31 +681,101 @@ public class GiraffePlayer implements MediaController.MediaPlayerControl {
             }
         });
         initInternalListener();
-        if (createDisplay) {
+        //a kept display(eg. init again after an error) is reused,a new one is set by MSG_SET_DISPLAY
+        applyDisplay();
+        if (createDisplay && !preloading) {
             VideoView videoView = PlayerManager.getInstance().getVideoView(videoInfo);
             if (videoView != null && videoView.getContainer() != null) {
                 createDisplay(videoView.getContainer());
             }
         }
+        openDataSource();
+    }
+
+    /**
+     * prepare the existing media player again after an error,
+     * keep its listeners and display,go on from the position where the error happened.
+     * a jump to the live edge goes through here too,it is not counted by metrics.onRetry()
+     */
+    private void reconnect() {
+        log("reconnect at " + retryPosition);
         try {
-            uri = videoInfo.getUri();
+            mediaPlayer.reset();
+        } catch (Exception e) {
+            log("reset failed,init again:" + e.getMessage());
+            init(false);
+            return;
+        }
+        if (liveLatencyController != null) {
+            liveLatencyController.reset();
+        }
+        //prepared again at normal speed
+        positionClock.setSpeed(1);
+        uiEventBatcher.post(UIEventBatcher.EVENT_PREPARING, 0, 0);
+        seekInFlight = false;
+        lastSeek = -1;
+        pendingSeek = -1;
+        handler.removeMessages(MSG_CTRL_SEEK_COMPLETE);
+        setOptions();
+        mediaPlayer.setAudioStreamType(AudioManager.STREAM_MUSIC);
+        applyDisplay();
+        if (retryPosition > 0) {
+            seekWhenPrepared = retryPosition;
+        }
+        openDataSource();
+    }
+
+    private void applyDisplay() {
+        if (display instanceof SurfaceTexture) {
+            Surface surface = surfaceManager.getSurface((SurfaceTexture) display);
+            if (surface != null) {
+                mediaPlayer.setSurface(surface);
+            }
+        } else if (display instanceof SurfaceView) {
+            mediaPlayer.setDisplay(((SurfaceView) display).getHolder());
+        }
+    }
+
+    private void openDataSource() {
+        try {
+            uri = dataSourceUri(videoInfo.getUri());
             mediaPlayer.setDataSource(context, uri, headers);
             currentState(STATE_PREPARING);
             mediaPlayer.prepareAsync();
         } catch (IOException e) {
             currentState(STATE_ERROR);
             e.printStackTrace();
-            uiHandler.post(new Runnable() {
-                @Override
-                public void run() {
-                    proxyListener().onError(GiraffePlayer.this, 0, 0);
-                }
-            });
+            uiEventBatcher.post(UIEventBatcher.EVENT_ERROR, 0, 0);
         }
+    }
 
+    private Uri dataSourceUri(Uri uri) {
+        String scheme = uri == null ? null : uri.getScheme();
+        if (!(videoInfo.isCacheEnabled() || videoInfo.getParallelFetch() > 1) || headers != null
+                || !("http".equalsIgnoreCase(scheme) || "https".equalsIgnoreCase(scheme))) {
+            return uri;
+        }
+        try {
+            return Uri.parse(PlayerManager.getInstance().getCacheProxy(context)
+                    .getProxyUrl(uri.toString(), videoInfo.getParallelFetch(), videoInfo.getLookAheadWindow()));
+        } catch (IOException e) {
+            log("caching proxy unavailable,play directly:" + e.getMessage());
+            return uri;
+        }
     }
 
     private IMediaPlayer createMediaPlayer() {
+        IMediaPlayer pooled = PlayerManager.getInstance().getMediaPlayerPool().obtain(videoInfo, handler.getLooper());
+        if (pooled != null) {
+            return pooled;
+        }
+        MediaPlayerFactory factory = PlayerManager.getInstance().getMediaPlayerFactory();
+        if (factory != null) {
+            IMediaPlayer created = factory.create(videoInfo);
+            if (created != null) {
+                return created;
+            }
+        }
         if (VideoInfo.PLAYER_IMPL_SYSTEM.equals(videoInfo.getPlayerImpl())) {
             return new AndroidMediaPlayer();
         }
@@ -380,37 +783,86 @@ public class GiraffePlayer implements MediaController.MediaPlayerControl {
     }
 
     private void setOptions() {
-        if (mediaPlayer instanceof IjkMediaPlayer && videoInfo.getOptions().size() > 0) {
-            IjkMediaPlayer ijkMediaPlayer = (IjkMediaPlayer) mediaPlayer;
-            for (Option option : videoInfo.getOptions()) {
-                if (option.getValue() instanceof String) {
-                    ijkMediaPlayer.setOption(option.getCategory(), option.getName(), ((String) option.getValue()));
-                } else if (option.getValue() instanceof Long) {
-                    ijkMediaPlayer.setOption(option.getCategory(), option.getName(), ((Long) option.getValue()));
-                }
+        if (preloading && mediaPlayer instanceof IjkMediaPlayer) {
+            //a preloaded player must wait for start()
+            ((IjkMediaPlayer) mediaPlayer).setOption(IjkMediaPlayer.OPT_CATEGORY_PLAYER, "start-on-prepared", 0);
+        }
+        fastProbeInfo = null;
+        if (mediaPlayer instanceof IjkMediaPlayer) {
+            OptionProfile options = videoInfo.playerOptions();
+            StreamInfo streamInfo = streamInfo();
+            if (streamInfo != null) {
+                log("probed before:" + streamInfo);
+                options = streamInfo.probeOptions().with(options);
+                fastProbeInfo = streamInfo;
             }
+            options.applyTo((IjkMediaPlayer) mediaPlayer);
+        }
+    }
+
+    /**
+     * keep the stream info of the prepared media player,
+     * drop it if a quick probe found other tracks(eg. missed the audio of a TS/FLV),so the next init probes fully
+     */
+    private void cacheStreamInfo() {
+        StreamInfoCache cache = PlayerManager.getInstance().getStreamInfoCache();
+        String key = StreamInfoCache.keyOf(videoInfo);
+        StreamInfo probed = StreamInfo.of(mediaPlayer);
+        StreamInfo fastProbeInfo = this.fastProbeInfo;
+        if (fastProbeInfo != null && !fastProbeInfo.hasSameTracks(probed)) {
+            log("tracks changed,probe fully next time:" + probed);
+            cache.remove(key);
+        } else {
+            cache.put(key, probed);
         }
     }
 
+    /**
+     * @return stream info of the video if it has been played before,null if not
+     */
+    private StreamInfo streamInfo() {
+        return PlayerManager.getInstance().getStreamInfoCache().get(StreamInfoCache.keyOf(videoInfo));
+    }
+
     private void initInternalListener() {
         //proxyListener fire on main thread
         mediaPlayer.setOnBufferingUpdateListener(new IMediaPlayer.OnBufferingUpdateListener() {
             @Override
             public void onBufferingUpdate(IMediaPlayer iMediaPlayer, int percent) {
-                proxyListener().onBufferingUpdate(GiraffePlayer.this, percent);
+                currentBufferPercentage = percent;
+                uiEventBatcher.postBufferingUpdate(percent);
             }
         });
         mediaPlayer.setOnInfoListener(new IMediaPlayer.OnInfoListener() {
             //https://developer.android.com/reference/android/media/MediaPlayer.OnInfoListener.html
             @Override
             public boolean onInfo(IMediaPlayer iMediaPlayer, int what, int extra) {
-                return proxyListener().onInfo(GiraffePlayer.this, what, extra);
+                if (what == IMediaPlayer.MEDIA_INFO_BUFFERING_START) {
+                    metrics.onBufferingStart();
+                    positionClock.sync(false);
+                } else if (what == IMediaPlayer.MEDIA_INFO_BUFFERING_END || what == IMediaPlayer.MEDIA_INFO_VIDEO_RENDERING_START
+                        || what == IMediaPlayer.MEDIA_INFO_AUDIO_RENDERING_START) {
+                    if (what == IMediaPlayer.MEDIA_INFO_BUFFERING_END) {
+                        metrics.onBufferingEnd();
+                    } else if (what == IMediaPlayer.MEDIA_INFO_VIDEO_RENDERING_START) {
+                        metrics.onFirstFrame();
+                    } else {
+                        metrics.onFirstAudio();
+                    }
+                    positionClock.sync(currentState == STATE_PLAYING);
+                }
+                uiEventBatcher.postInfo(what, extra);
+                return true;
             }
         });
         mediaPlayer.setOnCompletionListener(new IMediaPlayer.OnCompletionListener() {
             @Override
             public void onCompletion(IMediaPlayer iMediaPlayer) {
                 currentState = STATE_PLAYBACK_COMPLETED;
+                retryPosition = 0;
+                positionClock.sync(false);
+                //watched to the end,clear the saved position
+                handler.sendEmptyMessage(MSG_SAVE_POSITION);
                 proxyListener().onCompletion(GiraffePlayer.this);
             }
         });
@@ -418,11 +870,23 @@ public class GiraffePlayer implements MediaController.MediaPlayerControl {
             @Override
             public boolean onError(IMediaPlayer iMediaPlayer, int what, int extra) {
                 currentState(STATE_ERROR);
+                metrics.onError();
+                //may be caused by a quick probe,a retry probes fully
+                PlayerManager.getInstance().getStreamInfoCache().remove(StreamInfoCache.keyOf(videoInfo));
+                //the extrapolated position,the media player may report 0 after an error
+                int position = (int) positionClock.getPosition();
+                if (position > 0 && positionClock.getDuration() > 0) {
+                    retryPosition = position;
+                }
+                positionClock.sync(false);
                 boolean b = proxyListener().onError(GiraffePlayer.this, what, extra);
-                int retryInterval = videoInfo.getRetryInterval();
-                if (retryInterval > 0) {
-                    log("replay delay " + retryInterval + " seconds");
-                    handler.sendEmptyMessageDelayed(MSG_CTRL_RETRY, retryInterval * 1000);
+                RetryPolicy retryPolicy = videoInfo.getRetryPolicy();
+                if (retryPolicy != null && retryPolicy.shouldRetry(what, extra, retryAttempt)) {
+                    long delay = retryPolicy.getDelay(retryAttempt, retryRandom);
+                    retryAttempt++;
+                    log("retry " + retryAttempt + " in " + delay + " ms");
+                    handler.removeMessages(MSG_CTRL_RETRY);
+                    handler.sendEmptyMessageDelayed(MSG_CTRL_RETRY, delay);
                 }
                 return b;
 
@@ -431,6 +895,10 @@ public class GiraffePlayer implements MediaController.MediaPlayerControl {
         mediaPlayer.setOnSeekCompleteListener(new IMediaPlayer.OnSeekCompleteListener() {
             @Override
             public void onSeekComplete(IMediaPlayer iMediaPlayer) {
+                metrics.onSeekComplete();
+                handler.removeMessages(MSG_CTRL_SEEK_COMPLETE);
+                handler.sendEmptyMessage(MSG_CTRL_SEEK_COMPLETE);
+                positionClock.sync(currentState == STATE_PLAYING);
                 proxyListener().onSeekComplete(GiraffePlayer.this);
             }
         });
@@ -456,41 +924,156 @@ public class GiraffePlayer implements MediaController.MediaPlayerControl {
     }
 
     public static GiraffePlayer createPlayer(Context context, VideoInfo videoInfo) {
-        return new GiraffePlayer(context, videoInfo);
+        return new GiraffePlayer(context, videoInfo, false);
     }
 
-    private GiraffePlayer displayOn(final TextureView textureView) {
-        textureView.setSurfaceTextureListener(new TextureView.SurfaceTextureListener() {
-            private SurfaceTexture surface;
+    /**
+     * create a player without display and prepare it in background,
+     * it does not become the current player until {@link #attachVideoView(VideoView)}
+     */
+    static GiraffePlayer createPreloadPlayer(Context context, VideoInfo videoInfo) {
+        GiraffePlayer player = new GiraffePlayer(context, videoInfo, true);
+        player.handler.sendEmptyMessage(MSG_CTRL_PREPARE);
+        return player;
+    }
 
+    /**
+     * bind a preloaded player to the videoView which has the same fingerprint,
+     * make it the current player and create display on the videoView
+     */
+    void attachVideoView(VideoView videoView) {
+        log("attachVideoView");
+        this.videoInfo = videoView.getVideoInfo();
+        proxyListener.setVideoInfo(videoInfo);
+        videoViewContainerRef = new WeakReference<>(videoView.getContainer());
+        ownerRef = new WeakReference<>(videoView.getContext());
+        preloading = false;
+        parked = false;
+        PlayerManager.getInstance().setCurrentPlayer(this);
+        createDisplay(videoView.getContainer());
+        final int state = currentState;
+        uiHandler.post(new Runnable() {
             @Override
-            public void onSurfaceTextureAvailable(SurfaceTexture surface, int width, int height) {
-                if (this.surface == null) {
-                    handler.obtainMessage(MSG_SET_DISPLAY, surface).sendToTarget();
-                    this.surface = surface;
-                } else {
-                    textureView.setSurfaceTexture(this.surface);
+            public void run() {
+                //replay the events missed while preloading
+                proxyListener().onCurrentStateChange(STATE_IDLE, state);
+                if (state == STATE_PREPARED) {
+                    proxyListener().onPrepared(GiraffePlayer.this);
                 }
             }
+        });
+    }
 
-            @Override
-            public void onSurfaceTextureSizeChanged(SurfaceTexture surface, int width, int height) {
+    /**
+     * detach from the VideoView without release,eg: the VideoView is rebound to another item in list.
+     * the decoder is paused,the display is removed and the position is kept,
+     * the player is attached by {@link #attachVideoView(VideoView)} again without preparing.
+     * must be called on main thread
+     */
+    void park() {
+        log("park");
+        parked = true;
+        //the VideoView is going to change its videoInfo for the next item,keep what this player plays
+        videoInfo = new VideoInfo(videoInfo).setUri(videoInfo.getUri()).setFingerprint(videoInfo.getFingerprint());
+        proxyListener.setVideoInfo(videoInfo);
+        targetState(STATE_PAUSED);
+        handler.sendEmptyMessage(MSG_CTRL_PARK);
+        //only the display of this player,the VideoView may show another player already
+        View displayGroup = displayGroupRef.get();
+        if (displayGroup != null && displayGroup.getParent() instanceof ViewGroup) {
+            ((ViewGroup) displayGroup.getParent()).removeView(displayGroup);
+        }
+        displayGroupRef = new WeakReference<>(null);
+        videoViewContainerRef = new WeakReference<>(null);
+    }
+
+    /**
+     * @return true if the player is parked and not bound to any VideoView
+     */
+    public boolean isParked() {
+        return parked;
+    }
+
+    /**
+     * @return true if the player is preloaded and not bound to any VideoView
+     */
+    public boolean isPreloading() {
+        return preloading;
+    }
+
+    /**
+     * @return the context the player is used in,null if it's gone
+     */
+    Context getOwner() {
+        return ownerRef.get();
+    }
 
+    /**
+     * @return one of STATE_*,the state of the media player on playback thread
+     */
+    int getCurrentState() {
+        return currentState;
+    }
+
+    private GiraffePlayer displayOn(final TextureView textureView) {
+        //全屏时会发生view的移动，SurfaceTexture由surfaceManager保留，不随view销毁
+        surfaceManager.bind(textureView, new DisplaySurfaceManager.Callback() {
+            @Override
+            public void onSurfaceAvailable(SurfaceTexture surfaceTexture) {
+                handler.obtainMessage(MSG_SET_DISPLAY, surfaceTexture).sendToTarget();
             }
+        });
+        return this;
+    }
 
+    private GiraffePlayer displayOn(final SurfaceView surfaceView) {
+        surfaceView.getHolder().addCallback(new SurfaceHolder.Callback() {
             @Override
-            public boolean onSurfaceTextureDestroyed(SurfaceTexture surface) {
-                return false;//全屏时会发生view的移动，会触发此回调，必须为false（true表示系统负责销毁，此view将不再可用）
+            public void surfaceCreated(SurfaceHolder holder) {
+                handler.obtainMessage(MSG_SET_DISPLAY, surfaceView).sendToTarget();
             }
 
             @Override
-            public void onSurfaceTextureUpdated(SurfaceTexture surface) {
+            public void surfaceChanged(SurfaceHolder holder, int format, int width, int height) {
 
             }
+
+            @Override
+            public void surfaceDestroyed(SurfaceHolder holder) {
+                //SurfaceView的surface随view销毁，回调返回后不能再使用，全屏移动后会重新创建
+                detachDisplay(surfaceView);
+            }
         });
         return this;
     }
 
+    /**
+     * called on main thread,the media player no longer renders to the display when return.
+     * the surface is cleared at once without waiting for the playback thread,
+     * which may be busy with other players sharing the looper
+     */
+    private void detachDisplay(final Object target) {
+        //not set yet,never set it
+        handler.removeMessages(MSG_SET_DISPLAY, target);
+        IMediaPlayer mediaPlayer = this.mediaPlayer;
+        if (display == target && mediaPlayer != null && !released) {
+            try {
+                mediaPlayer.setDisplay(null);
+            } catch (Exception e) {
+                //released by the playback thread meanwhile
+                log("detach display failed:" + e.getMessage());
+            }
+        }
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (display == target) {
+                    display = null;
+                }
+            }
+        });
+    }
+
     public PlayerListener getPlayerListener() {
         return this.proxyListener.getOuterListener();
     }
@@ -503,6 +1086,17 @@ public class GiraffePlayer implements MediaController.MediaPlayerControl {
         this.proxyListener.setOuterListener(playerListener);
     }
 
+    /**
+     * add a listener besides the one set by {@link #setPlayerListener(PlayerListener)}
+     */
+    public void addPlayerListener(PlayerListener playerListener) {
+        this.proxyListener.addOuterListener(playerListener);
+    }
+
+    public void removePlayerListener(PlayerListener playerListener) {
+        this.proxyListener.removeOuterListener(playerListener);
+    }
+
     /**
      * create video display controllerView
      *
@@ -523,6 +1117,12 @@ public class GiraffePlayer implements MediaController.MediaPlayerControl {
     }
 
     private void doCreateDisplay(ViewGroup container) {
+        View current = displayGroupRef.get();
+        if (current != null && current.getParent() == container) {
+            //still on the container,keep it without re-layout or black flash
+            log("reuse display");
+            return;
+        }
         log("doCreateDisplay");
         View old = container.findViewById(R.id.player_display_group);
         if (old != null) {
@@ -536,12 +1136,45 @@ public class GiraffePlayer implements MediaController.MediaPlayerControl {
                 ViewGroup.LayoutParams.MATCH_PARENT,
                 Gravity.CENTER
         );
-        ScalableTextureView textureView = new ScalableTextureView(container.getContext());
-        textureView.setAspectRatio(videoInfo.getAspectRatio());
-        textureView.setId(R.id.player_display);
-        displayGroup.addView(textureView, lp);
+        View displayView = usingSurfaceView()
+                ? new ScalableSurfaceView(container.getContext())
+                : new ScalableTextureView(container.getContext());
+        ScalableDisplay scalableDisplay = (ScalableDisplay) displayView;
+        scalableDisplay.setAspectRatio(videoInfo.getAspectRatio());
+        displayView.setId(R.id.player_display);
+        //the video size may be known already(eg. preloaded player or played before),no layout jump at the first frame
+        int videoWidth = mediaPlayer != null ? mediaPlayer.getVideoWidth() : 0;
+        int videoHeight = mediaPlayer != null ? mediaPlayer.getVideoHeight() : 0;
+        if (videoWidth <= 0 || videoHeight <= 0) {
+            StreamInfo streamInfo = streamInfo();
+            if (streamInfo != null) {
+                videoWidth = streamInfo.getVideoWidth();
+                videoHeight = streamInfo.getVideoHeight();
+            }
+        }
+        scalableDisplay.setVideoSize(videoWidth, videoHeight);
+        displayGroup.addView(displayView, lp);
         container.addView(displayGroup, 0, lp);
-        displayOn(textureView);
+        displayGroupRef = new WeakReference<View>(displayGroup);
+        if (displayView instanceof SurfaceView) {
+            displayOn((SurfaceView) displayView);
+        } else {
+            displayOn((TextureView) displayView);
+        }
+    }
+
+    private boolean usingSurfaceView() {
+        VideoView videoView = PlayerManager.getInstance().getVideoView(videoInfo);
+        return usingSurfaceView(videoInfo, videoView != null && videoView.inListView());
+    }
+
+    /**
+     * SurfaceView is a separate window,it can't be animated or scrolled with the list smoothly,
+     * TextureView is used for them
+     */
+    static boolean usingSurfaceView(VideoInfo videoInfo, boolean inListView) {
+        return VideoInfo.DISPLAY_BACKEND_SURFACE.equals(videoInfo.getDisplayBackend())
+                && !usingAnim(videoInfo) && !inListView;
     }
 
     private void log(String msg) {
@@ -556,13 +1189,27 @@ public class GiraffePlayer implements MediaController.MediaPlayerControl {
             return;
         }
         log("doRelease");
-        PlayerManager.getInstance().removePlayer(fingerprint);
-        //1. quit handler thread
-        internalPlaybackThread.quit();
+        PlayerManager.getInstance().removePlayer(fingerprint, this);
+        //1. give back the playback looper
+        looperReleased = true;
+        handler.removeCallbacksAndMessages(null);
+        PlaybackLooperPool.getInstance().release(internalPlaybackLooper);
         //2. remove display group
         removeDisplayGroupFromParent();
+        positionClock.release();
+        savePosition();
+        if (mediaPlayer instanceof IjkMediaPlayer) {
+            metrics.setDropFrameRate(((IjkMediaPlayer) mediaPlayer).getDropFrameRate());
+        }
         releaseMediaPlayer();
+        //after the display group is removed,see removeDisplayGroupFromParent()
+        display = null;
+        surfaceManager.release();
         released = true;
+        MetricsSink metricsSink = PlayerManager.getInstance().getMetricsSink();
+        if (metricsSink != null) {
+            metricsSink.onReport(videoInfo, metrics);
+        }
         //3. fire proxyListener
         proxyListener().onRelease(this);
     }
@@ -570,7 +1217,11 @@ public class GiraffePlayer implements MediaController.MediaPlayerControl {
     private void releaseMediaPlayer() {
         if (mediaPlayer != null) {
             log("releaseMediaPlayer");
-            mediaPlayer.release();
+            if (mediaPlayer instanceof IjkMediaPlayer) {
+                //a pooled player must not hold the surface of this player
+                mediaPlayer.setSurface(null);
+            }
+            PlayerManager.getInstance().getMediaPlayerPool().recycle(videoInfo, mediaPlayer, handler.getLooper());
             mediaPlayer = null;
         }
     }
@@ -578,7 +1229,7 @@ public class GiraffePlayer implements MediaController.MediaPlayerControl {
     public void release() {
         log("try release");
         String fingerprint = videoInfo.getFingerprint();
-        PlayerManager.getInstance().removePlayer(fingerprint);
+        PlayerManager.getInstance().removePlayer(fingerprint, this);
         handler.obtainMessage(MSG_CTRL_RELEASE, fingerprint).sendToTarget();
     }
 
@@ -741,6 +1392,10 @@ public class GiraffePlayer implements MediaController.MediaPlayerControl {
     }
 
     private boolean usingAnim() {
+        return usingAnim(videoInfo);
+    }
+
+    private static boolean usingAnim(VideoInfo videoInfo) {
         return videoInfo.isFullScreenAnimation() && !videoInfo.isPortraitWhenFullScreen() && Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT;
     }
 
@@ -0,0 +1,87 @@
+package tcking.github.com.giraffeplayer2;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * lock-free histogram of latencies(in ms) with fixed buckets
+ */
+
+public class LatencyHistogram {
+    //upper bounds (inclusive) of buckets,the last bucket holds everything larger
+    private static final long[] BOUNDS = {50, 100, 200, 500, 1000, 2000, 5000, 10000, Long.MAX_VALUE};
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BOUNDS.length);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long latency) {
+        if (latency < 0) {
+            return;
+        }
+        int i = 0;
+        while (latency > BOUNDS[i]) {
+            i++;
+        }
+        buckets.incrementAndGet(i);
+        count.incrementAndGet();
+        sum.addAndGet(latency);
+        long current;
+        while (latency > (current = max.get()) && !max.compareAndSet(current, latency)) {
+            //retry
+        }
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getSum() {
+        return sum.get();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public long getMean() {
+        long c = count.get();
+        return c == 0 ? 0 : sum.get() / c;
+    }
+
+    public int getBucketSize() {
+        return BOUNDS.length;
+    }
+
+    /**
+     * @return upper bound of the bucket in ms,Long.MAX_VALUE for the last one
+     */
+    public long getBucketBound(int index) {
+        return BOUNDS[index];
+    }
+
+    public long getBucketCount(int index) {
+        return buckets.get(index);
+    }
+
+    /**
+     * @param percentile 0~100
+     * @return upper bound of the bucket which the percentile falls in,0 if empty
+     */
+    public long getPercentile(int percentile) {
+        long total = count.get();
+        if (total == 0) {
+            return 0;
+        }
+        long target = (long) Math.ceil(total * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < BOUNDS.length; i++) {
+            seen += buckets.get(i);
+            if (seen >= target) {
+                return i == BOUNDS.length - 1 ? max.get() : BOUNDS[i];
+            }
+        }
+        return max.get();
+    }
+}
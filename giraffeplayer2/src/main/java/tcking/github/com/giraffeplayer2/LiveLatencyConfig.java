@@ -0,0 +1,161 @@
+package tcking.github.com.giraffeplayer2;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+/**
+ * the latency a live stream should be played at,see {@link LiveLatencyController}
+ */
+
+public class LiveLatencyConfig implements Parcelable {
+    private long targetLatency = 3000;
+    private long tolerance = 500;
+    private float minSpeed = 0.95f;
+    private float maxSpeed = 1.1f;
+    private float speedGain = 0.05f;
+    private long jumpThreshold = 10 * 1000;
+    private long sampleInterval = 1000;
+
+    public LiveLatencyConfig() {
+    }
+
+    public LiveLatencyConfig(LiveLatencyConfig other) {
+        targetLatency = other.targetLatency;
+        tolerance = other.tolerance;
+        minSpeed = other.minSpeed;
+        maxSpeed = other.maxSpeed;
+        speedGain = other.speedGain;
+        jumpThreshold = other.jumpThreshold;
+        sampleInterval = other.sampleInterval;
+    }
+
+    public long getTargetLatency() {
+        return targetLatency;
+    }
+
+    /**
+     * @param targetLatency ms behind the live edge to hold,measured by the buffered duration,default is 3000
+     * @return LiveLatencyConfig
+     */
+    public LiveLatencyConfig setTargetLatency(long targetLatency) {
+        this.targetLatency = targetLatency;
+        return this;
+    }
+
+    public long getTolerance() {
+        return tolerance;
+    }
+
+    /**
+     * @param tolerance ms around the target latency played at normal speed,default is 500
+     * @return LiveLatencyConfig
+     */
+    public LiveLatencyConfig setTolerance(long tolerance) {
+        this.tolerance = tolerance;
+        return this;
+    }
+
+    public float getMinSpeed() {
+        return minSpeed;
+    }
+
+    /**
+     * @param minSpeed the slowest speed to rebuild the buffer,1 to never slow down,default is 0.95
+     * @return LiveLatencyConfig
+     */
+    public LiveLatencyConfig setMinSpeed(float minSpeed) {
+        this.minSpeed = Math.min(1, minSpeed);
+        return this;
+    }
+
+    public float getMaxSpeed() {
+        return maxSpeed;
+    }
+
+    /**
+     * @param maxSpeed the fastest speed to catch up,1 to never speed up,default is 1.1
+     * @return LiveLatencyConfig
+     */
+    public LiveLatencyConfig setMaxSpeed(float maxSpeed) {
+        this.maxSpeed = Math.max(1, maxSpeed);
+        return this;
+    }
+
+    public float getSpeedGain() {
+        return speedGain;
+    }
+
+    /**
+     * @param speedGain speed change per second away from the target latency,default is 0.05
+     * @return LiveLatencyConfig
+     */
+    public LiveLatencyConfig setSpeedGain(float speedGain) {
+        this.speedGain = speedGain;
+        return this;
+    }
+
+    public long getJumpThreshold() {
+        return jumpThreshold;
+    }
+
+    /**
+     * @param jumpThreshold ms over the target latency to jump to the live edge instead of catching up,
+     *                      <=0 to never jump,default is 10000
+     * @return LiveLatencyConfig
+     */
+    public LiveLatencyConfig setJumpThreshold(long jumpThreshold) {
+        this.jumpThreshold = jumpThreshold;
+        return this;
+    }
+
+    public long getSampleInterval() {
+        return sampleInterval;
+    }
+
+    /**
+     * @param sampleInterval ms between two samples of the buffer level,default is 1000
+     * @return LiveLatencyConfig
+     */
+    public LiveLatencyConfig setSampleInterval(long sampleInterval) {
+        this.sampleInterval = Math.max(100, sampleInterval);
+        return this;
+    }
+
+    protected LiveLatencyConfig(Parcel in) {
+        targetLatency = in.readLong();
+        tolerance = in.readLong();
+        minSpeed = in.readFloat();
+        maxSpeed = in.readFloat();
+        speedGain = in.readFloat();
+        jumpThreshold = in.readLong();
+        sampleInterval = in.readLong();
+    }
+
+    @Override
+    public void writeToParcel(Parcel dest, int flags) {
+        dest.writeLong(targetLatency);
+        dest.writeLong(tolerance);
+        dest.writeFloat(minSpeed);
+        dest.writeFloat(maxSpeed);
+        dest.writeFloat(speedGain);
+        dest.writeLong(jumpThreshold);
+        dest.writeLong(sampleInterval);
+    }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    public static final Creator<LiveLatencyConfig> CREATOR = new Creator<LiveLatencyConfig>() {
+        @Override
+        public LiveLatencyConfig createFromParcel(Parcel in) {
+            return new LiveLatencyConfig(in);
+        }
+
+        @Override
+        public LiveLatencyConfig[] newArray(int size) {
+            return new LiveLatencyConfig[size];
+        }
+    };
+}
@@ -0,0 +1,131 @@
+package tcking.github.com.giraffeplayer2;
+
+import tv.danmaku.ijk.media.player.IMediaPlayer;
+import tv.danmaku.ijk.media.player.IjkMediaPlayer;
+
+/**
+ * hold a live stream at the target latency: the buffered duration is how far playback is behind the edge,
+ * play a little faster when it grows,a little slower when it shrinks,and jump to the edge when it is far behind.
+ * only accessed on playback thread
+ */
+
+public class LiveLatencyController {
+    public static final int ACTION_NONE = 0;
+    public static final int ACTION_SPEED = 1;
+    public static final int ACTION_JUMP = 2;
+
+    /**
+     * where the buffer level comes from,the media player or a fake one in tests
+     */
+    public interface Source {
+        /**
+         * @return ms buffered ahead of the playback position
+         */
+        long readBufferedDuration();
+    }
+
+    /**
+     * the media player under control,see {@link #playerOf(IMediaPlayer)}
+     */
+    public interface Player extends Source {
+        void setSpeed(float speed);
+    }
+
+    /**
+     * called on main thread when the controller changed the speed or jumped to the live edge
+     */
+    public interface OnLatencyActionListener {
+        void onLatencyAction(GiraffePlayer player, int action, long latency, float speed);
+    }
+
+    private final LiveLatencyConfig config;
+    private final Source source;
+    private long latency = -1;
+    private float speed = 1;
+
+    public LiveLatencyController(LiveLatencyConfig config, Source source) {
+        this.config = config;
+        this.source = source;
+    }
+
+    /**
+     * read the buffer level and decide
+     * @return ACTION_NONE,ACTION_SPEED if {@link #getSpeed()} changed,or ACTION_JUMP
+     */
+    public int sample() {
+        latency = source.readBufferedDuration();
+        long error = latency - config.getTargetLatency();
+        if (config.getJumpThreshold() > 0 && error > config.getJumpThreshold()) {
+            speed = 1;
+            return ACTION_JUMP;
+        }
+        float newSpeed;
+        if ((speed > 1 && error > 0) || (speed < 1 && error < 0) || Math.abs(error) > config.getTolerance()) {
+            //keep adjusting until the target is reached,not only back into the tolerance,or it would swing at the border
+            newSpeed = 1 + error / 1000f * config.getSpeedGain();
+            newSpeed = Math.max(config.getMinSpeed(), Math.min(config.getMaxSpeed(), newSpeed));
+            //steps of 0.01,small changes are not worth a speed change
+            newSpeed = Math.round(newSpeed * 100) / 100f;
+        } else {
+            newSpeed = 1;
+        }
+        if (newSpeed == speed) {
+            return ACTION_NONE;
+        }
+        speed = newSpeed;
+        return ACTION_SPEED;
+    }
+
+    /**
+     * start over at normal speed,eg: after the player is prepared again
+     */
+    public void reset() {
+        latency = -1;
+        speed = 1;
+    }
+
+    /**
+     * @return the speed playback should go at
+     */
+    public float getSpeed() {
+        return speed;
+    }
+
+    /**
+     * @return the latency of the last sample in ms,-1 if not sampled yet
+     */
+    public long getLatency() {
+        return latency;
+    }
+
+    public LiveLatencyConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * @return the media player itself if it is a Player(eg. a fake one in tests),
+     * an adapter of IjkMediaPlayer,or null if the speed of the media player can't be changed
+     */
+    static Player playerOf(IMediaPlayer mediaPlayer) {
+        if (mediaPlayer instanceof Player) {
+            return (Player) mediaPlayer;
+        }
+        if (mediaPlayer instanceof IjkMediaPlayer) {
+            final IjkMediaPlayer ijkMediaPlayer = (IjkMediaPlayer) mediaPlayer;
+            return new Player() {
+                @Override
+                public long readBufferedDuration() {
+                    long video = ijkMediaPlayer.getVideoCachedDuration();
+                    //audio only stream
+                    return video > 0 ? video : ijkMediaPlayer.getAudioCachedDuration();
+                }
+
+                @Override
+                public void setSpeed(float speed) {
+                    ijkMediaPlayer.setSpeed(speed);
+                }
+            };
+        }
+        return null;
+    }
+}
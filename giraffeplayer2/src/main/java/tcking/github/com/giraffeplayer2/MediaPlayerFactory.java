@@ -0,0 +1,16 @@
+package tcking.github.com.giraffeplayer2;
+
+import tv.danmaku.ijk.media.player.IMediaPlayer;
+
+/**
+ * create the media player for a video,set by {@link PlayerManager#setMediaPlayerFactory(MediaPlayerFactory)}
+ */
+
+public interface MediaPlayerFactory {
+    /**
+     * called on playback thread
+     * @param videoInfo video to play
+     * @return media player or null to use the default one
+     */
+    IMediaPlayer create(VideoInfo videoInfo);
+}
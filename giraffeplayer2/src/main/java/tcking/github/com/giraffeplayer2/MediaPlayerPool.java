@@ -0,0 +1,179 @@
+package tcking.github.com.giraffeplayer2;
+
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+
+import tv.danmaku.ijk.media.player.IMediaPlayer;
+import tv.danmaku.ijk.media.player.IjkMediaPlayer;
+
+/**
+ * a LRU pool of reset media players,reuse them instead of creating a new one in every init
+ * the pool key is the player impl,options are cleared by reset and applied again in every init.
+ * a media player posts its events to the looper it was created on,so it is only reused on that looper
+ * and released when the looper quits
+ */
+
+public class MediaPlayerPool {
+    private static final String TAG = "GiraffePlayerPool";
+    private final LinkedList<Entry> idle = new LinkedList<>();
+    private int maxSize = 2;
+
+    public synchronized int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * max idle media players in pool
+     * @param maxSize max size,<=0 will disable the pool
+     * @return MediaPlayerPool
+     */
+    public MediaPlayerPool setMaxSize(int maxSize) {
+        List<IMediaPlayer> evicted;
+        synchronized (this) {
+            this.maxSize = maxSize;
+            evicted = trim();
+        }
+        releaseAll(evicted);
+        return this;
+    }
+
+    public synchronized int size() {
+        return idle.size();
+    }
+
+    /**
+     * take an idle media player suitable for the videoInfo
+     * @param videoInfo videoInfo
+     * @param looper the looper the media player is used on
+     * @return media player or null if no idle one
+     */
+    public synchronized IMediaPlayer obtain(VideoInfo videoInfo, Looper looper) {
+        String key = keyOf(videoInfo);
+        //most recently used first
+        Iterator<Entry> iterator = idle.descendingIterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (entry.looper == looper && entry.key.equals(key)) {
+                iterator.remove();
+                log("reuse media player:" + key);
+                return entry.player;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * reset the media player and keep it for reuse, release it if can not be pooled
+     * @param videoInfo the videoInfo which the media player was created for
+     * @param mediaPlayer media player
+     * @param looper the looper the media player was created on
+     */
+    public void recycle(VideoInfo videoInfo, IMediaPlayer mediaPlayer, Looper looper) {
+        if (!(mediaPlayer instanceof IjkMediaPlayer) || looper == null || getMaxSize() <= 0) {
+            //AndroidMediaPlayer also takes the looper of the thread calling its methods,can't be shared
+            mediaPlayer.release();
+            return;
+        }
+        try {
+            detach(mediaPlayer);
+            mediaPlayer.reset();
+        } catch (Exception e) {
+            Log.w(TAG, "reset media player failed", e);
+            mediaPlayer.release();
+            return;
+        }
+        List<IMediaPlayer> evicted;
+        synchronized (this) {
+            idle.add(new Entry(keyOf(videoInfo), mediaPlayer, looper));
+            evicted = trim();
+        }
+        releaseAll(evicted);
+    }
+
+    /**
+     * release all idle media players
+     */
+    public void clear() {
+        List<IMediaPlayer> evicted;
+        synchronized (this) {
+            evicted = new ArrayList<>(idle.size());
+            for (Entry entry : idle) {
+                evicted.add(entry.player);
+            }
+            idle.clear();
+        }
+        releaseAll(evicted);
+    }
+
+    /**
+     * release the idle media players created on the looper,called before the looper quits
+     * @param looper looper
+     */
+    public void evict(Looper looper) {
+        List<IMediaPlayer> evicted = new ArrayList<>();
+        synchronized (this) {
+            Iterator<Entry> iterator = idle.iterator();
+            while (iterator.hasNext()) {
+                Entry entry = iterator.next();
+                if (entry.looper == looper) {
+                    iterator.remove();
+                    evicted.add(entry.player);
+                }
+            }
+        }
+        releaseAll(evicted);
+    }
+
+    private List<IMediaPlayer> trim() {
+        List<IMediaPlayer> evicted = new ArrayList<>();
+        while (idle.size() > Math.max(0, maxSize)) {
+            evicted.add(idle.removeFirst().player);
+        }
+        return evicted;
+    }
+
+    private void releaseAll(List<IMediaPlayer> players) {
+        for (IMediaPlayer player : players) {
+            log("evict media player");
+            player.release();
+        }
+    }
+
+    private void detach(IMediaPlayer mediaPlayer) {
+        mediaPlayer.setDisplay(null);
+        mediaPlayer.setOnPreparedListener(null);
+        mediaPlayer.setOnBufferingUpdateListener(null);
+        mediaPlayer.setOnInfoListener(null);
+        mediaPlayer.setOnCompletionListener(null);
+        mediaPlayer.setOnErrorListener(null);
+        mediaPlayer.setOnSeekCompleteListener(null);
+        mediaPlayer.setOnVideoSizeChangedListener(null);
+    }
+
+    private String keyOf(VideoInfo videoInfo) {
+        return String.valueOf(videoInfo.getPlayerImpl());
+    }
+
+    private void log(String msg) {
+        if (GiraffePlayer.debug) {
+            Log.d(TAG, msg);
+        }
+    }
+
+    private static class Entry {
+        private final String key;
+        private final IMediaPlayer player;
+        private final Looper looper;
+
+        Entry(String key, IMediaPlayer player, Looper looper) {
+            this.key = key;
+            this.player = player;
+            this.looper = looper;
+        }
+    }
+}
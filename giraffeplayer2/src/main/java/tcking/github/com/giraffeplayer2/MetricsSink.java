@@ -0,0 +1,14 @@
+package tcking.github.com.giraffeplayer2;
+
+/**
+ * receive playback metrics,set by {@link PlayerManager#setMetricsSink(MetricsSink)}
+ */
+
+public interface MetricsSink {
+    /**
+     * called on playback thread when a player is released
+     * @param videoInfo video of the player
+     * @param metrics metrics of the whole playback session
+     */
+    void onReport(VideoInfo videoInfo, PlayerMetrics metrics);
+}
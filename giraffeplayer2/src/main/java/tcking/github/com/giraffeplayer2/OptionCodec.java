@@ -0,0 +1,118 @@
+package tcking.github.com.giraffeplayer2;
+
+import android.os.Parcel;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashSet;
+
+/**
+ * a versioned binary encoding of options for parcel and disk,
+ * every option is written as category,name and a tagged value, no class descriptor or reflection.
+ * layout: version,count,[category,name,tag,value]... in the order of {@link OptionProfile}
+ */
+
+public class OptionCodec {
+    public static final int VERSION = 1;
+
+    //value tags,the same as the types of OptionProfile
+    private static final int TAG_NULL = OptionProfile.TYPE_NULL;
+    private static final int TAG_STRING = OptionProfile.TYPE_STRING;
+    private static final int TAG_LONG = OptionProfile.TYPE_LONG;
+
+    private OptionCodec() {
+    }
+
+    public static void writeToParcel(Collection<Option> options, Parcel dest) {
+        writeToParcel(OptionProfile.of(options), dest);
+    }
+
+    public static HashSet<Option> readFromParcel(Parcel in) {
+        return readProfileFromParcel(in).toOptions();
+    }
+
+    public static void writeToParcel(OptionProfile profile, Parcel dest) {
+        dest.writeInt(VERSION);
+        dest.writeInt(profile.size());
+        for (int i = 0; i < profile.size(); i++) {
+            dest.writeInt(profile.getCategory(i));
+            dest.writeString(profile.getName(i));
+            int tag = profile.getType(i);
+            dest.writeInt(tag);
+            if (tag == TAG_STRING) {
+                dest.writeString(profile.getString(i));
+            } else if (tag == TAG_LONG) {
+                dest.writeLong(profile.getLong(i));
+            }
+        }
+    }
+
+    public static OptionProfile readProfileFromParcel(Parcel in) {
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("unsupported option version " + version);
+        }
+        int count = in.readInt();
+        OptionProfile profile = OptionProfile.EMPTY;
+        for (int i = 0; i < count; i++) {
+            int category = in.readInt();
+            String name = in.readString();
+            byte tag = (byte) in.readInt();
+            profile = profile.with(category, name, tag, tag == TAG_LONG ? in.readLong() : 0,
+                    tag == TAG_STRING ? in.readString() : null);
+        }
+        return profile;
+    }
+
+    /**
+     * write options to a file or any stream
+     */
+    public static void write(Collection<Option> options, DataOutput out) throws IOException {
+        write(OptionProfile.of(options), out);
+    }
+
+    public static HashSet<Option> read(DataInput in) throws IOException {
+        return readProfile(in).toOptions();
+    }
+
+    public static void write(OptionProfile profile, DataOutput out) throws IOException {
+        out.writeByte(VERSION);
+        out.writeInt(profile.size());
+        for (int i = 0; i < profile.size(); i++) {
+            out.writeInt(profile.getCategory(i));
+            out.writeUTF(profile.getName(i) != null ? profile.getName(i) : "");
+            int tag = profile.getType(i);
+            out.writeByte(tag);
+            if (tag == TAG_STRING) {
+                out.writeUTF(profile.getString(i));
+            } else if (tag == TAG_LONG) {
+                out.writeLong(profile.getLong(i));
+            }
+        }
+    }
+
+    public static OptionProfile readProfile(DataInput in) throws IOException {
+        int version = in.readByte();
+        if (version != VERSION) {
+            throw new IOException("unsupported option version " + version);
+        }
+        int count = in.readInt();
+        if (count < 0) {
+            throw new IOException("bad option count " + count);
+        }
+        OptionProfile profile = OptionProfile.EMPTY;
+        for (int i = 0; i < count; i++) {
+            int category = in.readInt();
+            String name = in.readUTF();
+            byte tag = in.readByte();
+            if (tag != TAG_NULL && tag != TAG_STRING && tag != TAG_LONG) {
+                throw new IOException("bad option tag " + tag);
+            }
+            profile = profile.with(category, name, tag, tag == TAG_LONG ? in.readLong() : 0,
+                    tag == TAG_STRING ? in.readUTF() : null);
+        }
+        return profile;
+    }
+}
@@ -0,0 +1,256 @@
+package tcking.github.com.giraffeplayer2;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+
+import tv.danmaku.ijk.media.player.IjkMediaPlayer;
+
+/**
+ * an immutable,shareable set of player options compiled into typed arrays.
+ * entries are sorted by category and name,an option replaces the one with the same category and name,
+ * so options are always applied in the same order. VideoInfos copied from the default share one profile
+ */
+
+public final class OptionProfile {
+    static final byte TYPE_NULL = 0;
+    static final byte TYPE_STRING = 1;
+    static final byte TYPE_LONG = 2;
+
+    public static final OptionProfile EMPTY = new OptionProfile(new int[0], new String[0], new byte[0], new long[0], new String[0]);
+
+    private final int[] categories;
+    private final String[] names;
+    private final byte[] types;
+    private final long[] longValues;
+    private final String[] stringValues;
+    private final int hash;
+
+    private OptionProfile(int[] categories, String[] names, byte[] types, long[] longValues, String[] stringValues) {
+        this.categories = categories;
+        this.names = names;
+        this.types = types;
+        this.longValues = longValues;
+        this.stringValues = stringValues;
+        int hash = 0;
+        for (int i = 0; i < categories.length; i++) {
+            hash = 31 * hash + categories[i];
+            hash = 31 * hash + (names[i] != null ? names[i].hashCode() : 0);
+            hash = 31 * hash + types[i];
+            hash = 31 * hash + (int) (longValues[i] ^ (longValues[i] >>> 32));
+            hash = 31 * hash + (stringValues[i] != null ? stringValues[i].hashCode() : 0);
+        }
+        this.hash = hash;
+    }
+
+    public static OptionProfile of(Collection<Option> options) {
+        OptionProfile profile = EMPTY;
+        for (Option option : options) {
+            profile = profile.with(option);
+        }
+        return profile;
+    }
+
+    /**
+     * @return a new profile with the option added or replaced,this one is not changed
+     */
+    public OptionProfile with(Option option) {
+        Object value = option.getValue();
+        if (value instanceof String) {
+            return with(option.getCategory(), option.getName(), TYPE_STRING, 0, (String) value);
+        } else if (value instanceof Long) {
+            return with(option.getCategory(), option.getName(), TYPE_LONG, (Long) value, null);
+        }
+        return with(option.getCategory(), option.getName(), TYPE_NULL, 0, null);
+    }
+
+    /**
+     * @return a new profile with the options of other added or replaced,this one is not changed
+     */
+    public OptionProfile with(OptionProfile other) {
+        OptionProfile profile = this;
+        for (int i = 0; i < other.size(); i++) {
+            profile = profile.with(other.categories[i], other.names[i], other.types[i], other.longValues[i], other.stringValues[i]);
+        }
+        return profile;
+    }
+
+    OptionProfile with(int category, String name, byte type, long longValue, String stringValue) {
+        int index = indexOf(category, name);
+        int size = categories.length;
+        int[] categories;
+        String[] names;
+        byte[] types;
+        long[] longValues;
+        String[] stringValues;
+        if (index >= 0) {
+            if (this.types[index] == type && this.longValues[index] == longValue
+                    && equals(this.stringValues[index], stringValue)) {
+                return this;
+            }
+            //last write wins
+            categories = this.categories;
+            names = this.names;
+            types = Arrays.copyOf(this.types, size);
+            longValues = Arrays.copyOf(this.longValues, size);
+            stringValues = Arrays.copyOf(this.stringValues, size);
+        } else {
+            index = -index - 1;
+            int tail = size - index;
+            categories = new int[size + 1];
+            names = new String[size + 1];
+            types = new byte[size + 1];
+            longValues = new long[size + 1];
+            stringValues = new String[size + 1];
+            System.arraycopy(this.categories, 0, categories, 0, index);
+            System.arraycopy(this.categories, index, categories, index + 1, tail);
+            System.arraycopy(this.names, 0, names, 0, index);
+            System.arraycopy(this.names, index, names, index + 1, tail);
+            System.arraycopy(this.types, 0, types, 0, index);
+            System.arraycopy(this.types, index, types, index + 1, tail);
+            System.arraycopy(this.longValues, 0, longValues, 0, index);
+            System.arraycopy(this.longValues, index, longValues, index + 1, tail);
+            System.arraycopy(this.stringValues, 0, stringValues, 0, index);
+            System.arraycopy(this.stringValues, index, stringValues, index + 1, tail);
+            categories[index] = category;
+            names[index] = name;
+        }
+        types[index] = type;
+        longValues[index] = longValue;
+        stringValues[index] = stringValue;
+        return new OptionProfile(categories, names, types, longValues, stringValues);
+    }
+
+    /**
+     * binary search by category and name
+     * @return index,or -(insertion point)-1 if not found
+     */
+    private int indexOf(int category, String name) {
+        int low = 0;
+        int high = categories.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compare(categories[mid], names[mid], category, name);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private static int compare(int category1, String name1, int category2, String name2) {
+        if (category1 != category2) {
+            return category1 < category2 ? -1 : 1;
+        }
+        if (name1 == null) {
+            return name2 == null ? 0 : -1;
+        }
+        return name2 == null ? 1 : name1.compareTo(name2);
+    }
+
+    private static boolean equals(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    /**
+     * set every option to the player,options without value are skipped
+     */
+    public void applyTo(IjkMediaPlayer mediaPlayer) {
+        for (int i = 0; i < categories.length; i++) {
+            if (types[i] == TYPE_LONG) {
+                mediaPlayer.setOption(categories[i], names[i], longValues[i]);
+            } else if (types[i] == TYPE_STRING) {
+                mediaPlayer.setOption(categories[i], names[i], stringValues[i]);
+            }
+        }
+    }
+
+    public int size() {
+        return categories.length;
+    }
+
+    public int getCategory(int index) {
+        return categories[index];
+    }
+
+    public String getName(int index) {
+        return names[index];
+    }
+
+    byte getType(int index) {
+        return types[index];
+    }
+
+    public boolean isLong(int index) {
+        return types[index] == TYPE_LONG;
+    }
+
+    public long getLong(int index) {
+        return longValues[index];
+    }
+
+    /**
+     * @return the string value,null if the option is a long or has no value
+     */
+    public String getString(int index) {
+        return stringValues[index];
+    }
+
+    /**
+     * @return the value of the option,null if not found
+     */
+    public Object get(int category, String name) {
+        int index = indexOf(category, name);
+        if (index < 0) {
+            return null;
+        }
+        return types[index] == TYPE_LONG ? (Object) longValues[index] : stringValues[index];
+    }
+
+    /**
+     * @return a new set of the options
+     */
+    public HashSet<Option> toOptions() {
+        HashSet<Option> options = new HashSet<>(Math.max(4, categories.length * 2));
+        for (int i = 0; i < categories.length; i++) {
+            if (types[i] == TYPE_LONG) {
+                options.add(Option.create(categories[i], names[i], longValues[i]));
+            } else {
+                options.add(Option.create(categories[i], names[i], stringValues[i]));
+            }
+        }
+        return options;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        OptionProfile other = (OptionProfile) o;
+        return hash == other.hash && Arrays.equals(categories, other.categories) && Arrays.equals(names, other.names)
+                && Arrays.equals(types, other.types) && Arrays.equals(longValues, other.longValues)
+                && Arrays.equals(stringValues, other.stringValues);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("OptionProfile{");
+        for (int i = 0; i < categories.length; i++) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append(categories[i]).append(':').append(names[i]).append('=')
+                    .append(types[i] == TYPE_LONG ? (Object) longValues[i] : stringValues[i]);
+        }
+        return builder.append('}').toString();
+    }
+}
@@ -0,0 +1,154 @@
+package tcking.github.com.giraffeplayer2;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * a bounded pool of playback threads shared by all players.
+ * every player gets its own Handler on one of the pooled loopers, so messages of a player are
+ * still handled in order, but a list with many VideoViews no longer creates one thread per player.
+ * a thread without any player is quit after {@link #setKeepAliveTime(long)}
+ */
+
+public class PlaybackLooperPool {
+    private static final String TAG = "GiraffeLooperPool";
+    private static final PlaybackLooperPool instance = new PlaybackLooperPool();
+
+    private final List<Worker> workers = new ArrayList<>();
+    private int maxSize = Math.max(1, Runtime.getRuntime().availableProcessors());
+    private long keepAliveTime = 10 * 1000;
+    private int threadIndex;
+
+    public static PlaybackLooperPool getInstance() {
+        return instance;
+    }
+
+    public synchronized int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * max playback threads, default is the count of cpu cores
+     * @param maxSize max thread count,must >0
+     * @return PlaybackLooperPool
+     */
+    public synchronized PlaybackLooperPool setMaxSize(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must > 0");
+        }
+        this.maxSize = maxSize;
+        return this;
+    }
+
+    public synchronized long getKeepAliveTime() {
+        return keepAliveTime;
+    }
+
+    /**
+     * how long an idle playback thread is kept before quit
+     * @param keepAliveTime time in milliseconds
+     * @return PlaybackLooperPool
+     */
+    public synchronized PlaybackLooperPool setKeepAliveTime(long keepAliveTime) {
+        this.keepAliveTime = keepAliveTime;
+        return this;
+    }
+
+    /**
+     * @return count of alive playback threads
+     */
+    public synchronized int getThreadCount() {
+        return workers.size();
+    }
+
+    /**
+     * acquire a looper for a player,must call {@link #release(Looper)} when the player released
+     * @return the least loaded looper
+     */
+    public synchronized Looper acquire() {
+        //a thread died by an uncaught exception can't handle messages any more
+        for (int i = workers.size() - 1; i >= 0; i--) {
+            if (!workers.get(i).thread.isAlive()) {
+                log("drop dead playback thread:" + workers.get(i).thread.getName());
+                PlayerManager.getInstance().getMediaPlayerPool().evict(workers.remove(i).looper);
+            }
+        }
+        Worker worker = null;
+        for (Worker w : workers) {
+            if (worker == null || w.players < worker.players) {
+                worker = w;
+            }
+        }
+        if (worker == null || (worker.players > 0 && workers.size() < maxSize)) {
+            worker = new Worker("GiraffePlayerInternal:Handler-" + (threadIndex++));
+            workers.add(worker);
+            log("new playback thread,total:" + workers.size());
+        }
+        worker.players++;
+        worker.handler.removeCallbacks(worker.quitTask);
+        return worker.looper;
+    }
+
+    /**
+     * release a looper acquired by {@link #acquire()}
+     * @param looper looper
+     */
+    public synchronized void release(Looper looper) {
+        for (Worker worker : workers) {
+            if (worker.looper == looper) {
+                if (worker.players > 0) {
+                    worker.players--;
+                }
+                if (worker.players == 0) {
+                    worker.handler.removeCallbacks(worker.quitTask);
+                    worker.handler.postDelayed(worker.quitTask, keepAliveTime);
+                }
+                return;
+            }
+        }
+    }
+
+    private void quitIfIdle(Worker worker) {
+        synchronized (this) {
+            if (worker.players != 0 || !workers.remove(worker)) {
+                return;
+            }
+            log("quit idle playback thread,total:" + workers.size());
+        }
+        //pooled media players post their events to this looper,release them out of the lock
+        PlayerManager.getInstance().getMediaPlayerPool().evict(worker.looper);
+        worker.thread.quit();
+    }
+
+    private void log(String msg) {
+        if (GiraffePlayer.debug) {
+            Log.d(TAG, msg);
+        }
+    }
+
+    private class Worker {
+        private final HandlerThread thread;
+        private final Looper looper;
+        private final Handler handler;
+        private int players;
+        private final Runnable quitTask = new Runnable() {
+            @Override
+            public void run() {
+                quitIfIdle(Worker.this);
+            }
+        };
+
+        Worker(String name) {
+            thread = new HandlerThread(name, Process.THREAD_PRIORITY_AUDIO);
+            thread.start();
+            looper = thread.getLooper();
+            handler = new Handler(looper);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package tcking.github.com.giraffeplayer2;
+
+import android.content.Context;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * players which are not bound to any VideoView (keyed by fingerprint),
+ * the least recently used one is released when the size over the budget
+ */
+
+public class PlayerLruCache {
+    private final LinkedHashMap<String, GiraffePlayer> players = new LinkedHashMap<>(8, 0.75f, true);
+    private int maxSize;
+
+    public PlayerLruCache(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public synchronized int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @param maxSize max players to keep,<=0 will release all
+     */
+    public void setMaxSize(int maxSize) {
+        List<GiraffePlayer> evicted;
+        synchronized (this) {
+            this.maxSize = maxSize;
+            evicted = trim();
+        }
+        releaseAll(evicted);
+    }
+
+    public synchronized boolean contains(String fingerprint) {
+        return players.containsKey(fingerprint);
+    }
+
+    public synchronized int size() {
+        return players.size();
+    }
+
+    /**
+     * keep a player, the player is released at once if the budget is 0
+     */
+    public void put(String fingerprint, GiraffePlayer player) {
+        List<GiraffePlayer> evicted;
+        synchronized (this) {
+            GiraffePlayer old = players.put(fingerprint, player);
+            evicted = trim();
+            if (old != null && old != player) {
+                evicted.add(old);
+            }
+        }
+        releaseAll(evicted);
+    }
+
+    /**
+     * @return the kept player without taking it out,null if none
+     */
+    synchronized GiraffePlayer get(String fingerprint) {
+        return players.get(fingerprint);
+    }
+
+    /**
+     * take the player out of the cache
+     * @return player or null
+     */
+    public synchronized GiraffePlayer remove(String fingerprint) {
+        return players.remove(fingerprint);
+    }
+
+    public void clear() {
+        List<GiraffePlayer> evicted;
+        synchronized (this) {
+            evicted = new ArrayList<>(players.values());
+            players.clear();
+        }
+        releaseAll(evicted);
+    }
+
+    /**
+     * release the players used in the context,eg: the activity of their VideoViews is destroyed
+     * @param owner context
+     */
+    public void clear(Context owner) {
+        List<GiraffePlayer> evicted = new ArrayList<>();
+        synchronized (this) {
+            Iterator<GiraffePlayer> iterator = players.values().iterator();
+            while (iterator.hasNext()) {
+                GiraffePlayer player = iterator.next();
+                Context playerOwner = player.getOwner();
+                if (playerOwner == owner || playerOwner == null) {
+                    evicted.add(player);
+                    iterator.remove();
+                }
+            }
+        }
+        releaseAll(evicted);
+    }
+
+    private List<GiraffePlayer> trim() {
+        List<GiraffePlayer> evicted = new ArrayList<>();
+        Iterator<Map.Entry<String, GiraffePlayer>> iterator = players.entrySet().iterator();
+        while (players.size() > Math.max(0, maxSize) && iterator.hasNext()) {
+            evicted.add(iterator.next().getValue());
+            iterator.remove();
+        }
+        return evicted;
+    }
+
+    private void releaseAll(List<GiraffePlayer> evicted) {
+        for (GiraffePlayer player : evicted) {
+            player.release();
+        }
+    }
+}
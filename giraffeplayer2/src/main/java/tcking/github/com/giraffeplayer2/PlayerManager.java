@@ -2,12 +2,15 @@ package tcking.github.com.giraffeplayer2;
 
 import android.app.Activity;
 import android.app.Application;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
 import android.content.res.Configuration;
 import android.os.Bundle;
 import android.util.Log;
 
-import java.util.Map;
-import java.util.WeakHashMap;
+import tcking.github.com.giraffeplayer2.cache.CacheProxy;
+
+import java.io.File;
 import java.util.concurrent.ConcurrentHashMap;
 
 
@@ -18,6 +21,11 @@ import java.util.concurrent.ConcurrentHashMap;
 public class PlayerManager {
     public static final String TAG = "GiraffePlayerManager";
     private volatile String currentPlayerFingerprint;
+    private volatile int bindingVersion;
+    private volatile MetricsSink metricsSink;
+    private volatile MediaPlayerFactory mediaPlayerFactory;
+    private CacheProxy cacheProxy;
+    private ResumeStore resumeStore;
     private Application.ActivityLifecycleCallbacks activityLifecycleCallbacks;
 
     public VideoInfo getDefaultVideoInfo() {
@@ -29,8 +37,12 @@ public class PlayerManager {
      */
     private final VideoInfo defaultVideoInfo = new VideoInfo();
 
-    private WeakHashMap<String, VideoView> videoViewsRef = new WeakHashMap<>();
-    private Map<String, GiraffePlayer> playersRef = new ConcurrentHashMap<>();
+    private final ViewRegistry<VideoView> videoViews = new ViewRegistry<>();
+    private ConcurrentHashMap<String, GiraffePlayer> playersRef = new ConcurrentHashMap<>();
+    private final MediaPlayerPool mediaPlayerPool = new MediaPlayerPool();
+    private final PlayerLruCache preloadedPlayers = new PlayerLruCache(2);
+    private final PlayerLruCache parkedPlayers = new PlayerLruCache(2);
+    private final StreamInfoCache streamInfoCache = new StreamInfoCache();
 
 
 
@@ -41,6 +53,100 @@ public class PlayerManager {
         return instance;
     }
 
+    /**
+     * pool of reusable media players shared by all players
+     * @return MediaPlayerPool
+     */
+    public MediaPlayerPool getMediaPlayerPool() {
+        return mediaPlayerPool;
+    }
+
+    /**
+     * stream info of the recently played videos shared by all players
+     * @return StreamInfoCache
+     */
+    public StreamInfoCache getStreamInfoCache() {
+        return streamInfoCache;
+    }
+
+    /**
+     * the caching proxy used by videos which {@link VideoInfo#setCacheEnabled(boolean)},
+     * created in the cache dir of app with {@link CacheProxy#DEFAULT_MAX_SIZE} on first use
+     * @param context context
+     * @return CacheProxy
+     */
+    public synchronized CacheProxy getCacheProxy(Context context) {
+        if (cacheProxy == null) {
+            cacheProxy = new CacheProxy(new File(context.getCacheDir(), "giraffe-video"), CacheProxy.DEFAULT_MAX_SIZE);
+        }
+        return cacheProxy;
+    }
+
+    /**
+     * use a custom caching proxy,eg: another dir or max size
+     * @param cacheProxy cacheProxy
+     * @return PlayerManager
+     */
+    public synchronized PlayerManager setCacheProxy(CacheProxy cacheProxy) {
+        if (this.cacheProxy != null && this.cacheProxy != cacheProxy) {
+            this.cacheProxy.shutdown();
+        }
+        this.cacheProxy = cacheProxy;
+        return this;
+    }
+
+    /**
+     * store of resume positions,created in the files dir of app on first use
+     * @param context context
+     * @return ResumeStore
+     */
+    public synchronized ResumeStore getResumeStore(Context context) {
+        if (resumeStore == null) {
+            resumeStore = new ResumeStore(new File(context.getFilesDir(), "giraffe-resume.log"));
+        }
+        return resumeStore;
+    }
+
+    /**
+     * replace the default resume store,the old one is closed
+     * @param resumeStore resumeStore
+     */
+    public synchronized PlayerManager setResumeStore(ResumeStore resumeStore) {
+        if (this.resumeStore != null && this.resumeStore != resumeStore) {
+            this.resumeStore.close();
+        }
+        this.resumeStore = resumeStore;
+        return this;
+    }
+
+    public MetricsSink getMetricsSink() {
+        return metricsSink;
+    }
+
+    /**
+     * receive metrics of every player when it's released
+     * @param metricsSink sink,null to disable
+     * @return PlayerManager
+     */
+    public PlayerManager setMetricsSink(MetricsSink metricsSink) {
+        this.metricsSink = metricsSink;
+        return this;
+    }
+
+    public MediaPlayerFactory getMediaPlayerFactory() {
+        return mediaPlayerFactory;
+    }
+
+    /**
+     * create media players by the factory instead of ijk or system player,eg: a fake player in tests
+     * @param mediaPlayerFactory factory,null to use the default
+     * @return PlayerManager
+     */
+    public PlayerManager setMediaPlayerFactory(MediaPlayerFactory mediaPlayerFactory) {
+        this.mediaPlayerFactory = mediaPlayerFactory;
+        return this;
+    }
+
     public GiraffePlayer getCurrentPlayer() {
         return currentPlayerFingerprint == null ? null : playersRef.get(currentPlayerFingerprint);
     }
@@ -48,7 +154,8 @@ public class PlayerManager {
     private GiraffePlayer createPlayer(VideoView videoView) {
         VideoInfo videoInfo = videoView.getVideoInfo();
         log(videoInfo.getFingerprint(), "createPlayer");
-        videoViewsRef.put(videoInfo.getFingerprint(), videoView);
+        videoViews.bind(videoInfo.getFingerprint(), videoView);
+        notifyBindingChanged();
         registerActivityLifecycleCallbacks(((Activity) videoView.getContext()).getApplication());
         GiraffePlayer player = GiraffePlayer.createPlayer(videoView.getContext(), videoInfo);
         playersRef.put(videoInfo.getFingerprint(), player);
@@ -102,9 +209,28 @@ public class PlayerManager {
                 if (currentPlayer != null) {
                     currentPlayer.onActivityDestroyed();
                 }
+                releaseDetachedPlayers(activity);
+                mediaPlayerPool.clear();
             }
         };
         context.registerActivityLifecycleCallbacks(activityLifecycleCallbacks);
+        context.registerComponentCallbacks(new ComponentCallbacks2() {
+            @Override
+            public void onTrimMemory(int level) {
+                //idle media players hold native decoders and buffers
+                mediaPlayerPool.clear();
+            }
+
+            @Override
+            public void onConfigurationChanged(Configuration newConfig) {
+
+            }
+
+            @Override
+            public void onLowMemory() {
+                mediaPlayerPool.clear();
+            }
+        });
     }
 
     public void releaseCurrent() {
@@ -140,7 +266,27 @@ public class PlayerManager {
     }
 
     public VideoView getVideoView(VideoInfo videoInfo) {
-        return videoViewsRef.get(videoInfo.getFingerprint());
+        return videoViews.get(videoInfo.getFingerprint());
+    }
+
+    /**
+     * the videoView is going to show another video,forget its old binding
+     */
+    void unbindVideoView(String fingerprint, VideoView videoView) {
+        if (videoViews.unbind(fingerprint, videoView)) {
+            notifyBindingChanged();
+        }
+    }
+
+    /**
+     * changed whenever a VideoView is bound or its listeners changed,players cache their listeners until it changes
+     */
+    int getBindingVersion() {
+        return bindingVersion;
+    }
+
+    synchronized void notifyBindingChanged() {
+        bindingVersion++;
     }
 
 
@@ -167,12 +313,155 @@ public class PlayerManager {
     public GiraffePlayer getPlayer(VideoView videoView) {
         VideoInfo videoInfo=videoView.getVideoInfo();
         GiraffePlayer player = playersRef.get(videoInfo.getFingerprint());
+        if (player == null) {
+            player = takeDetachedPlayer(preloadedPlayers, videoView);
+        }
+        if (player == null) {
+            player = takeDetachedPlayer(parkedPlayers, videoView);
+        }
         if (player == null) {
             player = createPlayer(videoView);
         }
         return player;
     }
 
+    /**
+     * max players can be preloaded at the same time,the oldest preloaded one will be released
+     * @param budget max preloaded players,default is 2,<=0 will disable preload
+     * @return PlayerManager
+     */
+    public PlayerManager setPreloadBudget(int budget) {
+        preloadedPlayers.setMaxSize(budget);
+        return this;
+    }
+
+    public int getPreloadBudget() {
+        return preloadedPlayers.getMaxSize();
+    }
+
+    /**
+     * prepare players for the videos which will be played next(eg. the next items in list) without display,
+     * the prepared player is used by {@link #getPlayer(VideoView)} when a VideoView with the same fingerprint and uri bind.
+     * every videoInfo must have an unique fingerprint
+     * @param context context
+     * @param videoInfos videos to preload,the first one has the highest priority
+     */
+    public void preload(Context context, VideoInfo... videoInfos) {
+        int budget = preloadedPlayers.getMaxSize();
+        //keep the first ones when over budget
+        for (int i = Math.min(videoInfos.length, budget) - 1; i >= 0; i--) {
+            VideoInfo videoInfo = videoInfos[i];
+            String fingerprint = videoInfo.getFingerprint();
+            if (videoInfo.getUri() == null || playersRef.containsKey(fingerprint) || preloadedPlayers.contains(fingerprint)) {
+                continue;
+            }
+            log(fingerprint, "preload");
+            preloadedPlayers.put(fingerprint, GiraffePlayer.createPreloadPlayer(context, videoInfo));
+        }
+    }
+
+    /**
+     * release all preloaded players
+     */
+    public void clearPreload() {
+        preloadedPlayers.clear();
+    }
+
+    PlayerLruCache getPreloadedPlayers() {
+        return preloadedPlayers;
+    }
+
+    /**
+     * max players can be parked at the same time,the least recently parked one will be released
+     * @param budget max parked players,default is 2,<=0 will release players instead of parking
+     * @return PlayerManager
+     * @see #parkByFingerprint(String)
+     */
+    public PlayerManager setParkBudget(int budget) {
+        parkedPlayers.setMaxSize(budget);
+        return this;
+    }
+
+    public int getParkBudget() {
+        return parkedPlayers.getMaxSize();
+    }
+
+    /**
+     * detach the player from its VideoView without release,eg: a list item is rebound to another video.
+     * the player is paused and keeps its position,
+     * it is attached again by {@link #getPlayer(VideoView)} when a VideoView with the same fingerprint and uri bind
+     * @param fingerprint fingerprint
+     * @return PlayerManager
+     */
+    public PlayerManager parkByFingerprint(String fingerprint) {
+        GiraffePlayer player = playersRef.get(fingerprint);
+        if (player == null) {
+            return this;
+        }
+        if (parkedPlayers.getMaxSize() <= 0 || player.getDisplayModel() != GiraffePlayer.DISPLAY_NORMAL) {
+            player.release();
+            return this;
+        }
+        log(fingerprint, "park");
+        playersRef.remove(fingerprint, player);
+        if (isCurrentPlayer(fingerprint)) {
+            currentPlayerFingerprint = null;
+        }
+        player.park();
+        parkedPlayers.put(fingerprint, player);
+        return this;
+    }
+
+    /**
+     * release all parked players
+     */
+    public void clearParked() {
+        parkedPlayers.clear();
+    }
+
+    /**
+     * release the preloaded and parked players used in the activity,
+     * the ones of other activities are kept,eg: finishing a fullscreen activity keeps the ones of the list
+     */
+    void releaseDetachedPlayers(Context owner) {
+        preloadedPlayers.clear(owner);
+        parkedPlayers.clear(owner);
+    }
+
+    /**
+     * take a preloaded or parked player for the videoView
+     */
+    private GiraffePlayer takeDetachedPlayer(PlayerLruCache players, VideoView videoView) {
+        VideoInfo videoInfo = videoView.getVideoInfo();
+        GiraffePlayer player = takeDetachedPlayer(players, videoInfo);
+        if (player == null) {
+            return null;
+        }
+        log(videoInfo.getFingerprint(), player.isParked() ? "using parked player" : "using preloaded player");
+        videoViews.bind(videoInfo.getFingerprint(), videoView);
+        notifyBindingChanged();
+        registerActivityLifecycleCallbacks(((Activity) videoView.getContext()).getApplication());
+        playersRef.put(videoInfo.getFingerprint(), player);
+        player.attachVideoView(videoView);
+        return player;
+    }
+
+    /**
+     * take the player of the fingerprint out of the cache,the one released or playing another uri is released
+     * @return player can be attached to the VideoView of videoInfo,null if none
+     */
+    static GiraffePlayer takeDetachedPlayer(PlayerLruCache players, VideoInfo videoInfo) {
+        GiraffePlayer player = players.remove(videoInfo.getFingerprint());
+        if (player == null) {
+            return null;
+        }
+        if (player.isReleased() || !videoInfo.getUri().equals(player.getVideoInfo().getUri())) {
+            player.release();
+            return null;
+        }
+        return player;
+    }
+
     public GiraffePlayer getPlayerByFingerprint(String fingerprint) {
         return playersRef.get(fingerprint);
     }
@@ -189,6 +478,10 @@ public class PlayerManager {
         playersRef.remove(fingerprint);
     }
 
+    void removePlayer(String fingerprint, GiraffePlayer player) {
+        playersRef.remove(fingerprint, player);
+    }
+
     private void log(String fingerprint,String msg) {
         if (GiraffePlayer.debug) {
             Log.d(TAG, String.format("[setFingerprint:%s] %s",fingerprint,msg));
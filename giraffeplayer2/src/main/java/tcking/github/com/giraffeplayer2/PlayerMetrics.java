@@ -0,0 +1,186 @@
+package tcking.github.com.giraffeplayer2;
+
+import android.os.SystemClock;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * QoE metrics of a player: startup time,rebuffering,seek latency and dropped frames.
+ * recording only reads the clock and updates atomic fields,no lock and no allocation
+ */
+
+public class PlayerMetrics {
+    private volatile long initTime;
+    private volatile long preparedTime;
+    private volatile long firstFrameTime;
+    private volatile long firstAudioTime;
+    private volatile long bufferingStartTime;
+    private volatile long seekStartTime;
+    private volatile float dropFrameRate;
+
+    private final AtomicInteger retryCount = new AtomicInteger();
+    private final AtomicInteger errorCount = new AtomicInteger();
+    private final AtomicInteger rebufferCount = new AtomicInteger();
+    private final AtomicLong rebufferDuration = new AtomicLong();
+    private final LatencyHistogram rebufferHistogram = new LatencyHistogram();
+    private final LatencyHistogram seekHistogram = new LatencyHistogram();
+    private final LatencyHistogram liveLatencyHistogram = new LatencyHistogram();
+    private final AtomicInteger speedChangeCount = new AtomicInteger();
+    private final AtomicInteger liveEdgeJumpCount = new AtomicInteger();
+
+    void onInit() {
+        if (initTime == 0) {
+            initTime = SystemClock.elapsedRealtime();
+        }
+    }
+
+    /**
+     * a retry is scheduled after an error
+     */
+    void onRetry() {
+        retryCount.incrementAndGet();
+    }
+
+    void onPrepared() {
+        if (preparedTime == 0) {
+            preparedTime = SystemClock.elapsedRealtime();
+        }
+    }
+
+    void onFirstFrame() {
+        if (firstFrameTime == 0) {
+            firstFrameTime = SystemClock.elapsedRealtime();
+        }
+    }
+
+    void onFirstAudio() {
+        if (firstAudioTime == 0) {
+            firstAudioTime = SystemClock.elapsedRealtime();
+        }
+    }
+
+    void onBufferingStart() {
+        //buffering before the first frame(or audio of an audio only stream) is part of startup
+        if (firstFrameTime != 0 || firstAudioTime != 0) {
+            bufferingStartTime = SystemClock.elapsedRealtime();
+        }
+    }
+
+    void onBufferingEnd() {
+        long start = bufferingStartTime;
+        if (start != 0) {
+            bufferingStartTime = 0;
+            long duration = SystemClock.elapsedRealtime() - start;
+            rebufferCount.incrementAndGet();
+            rebufferDuration.addAndGet(duration);
+            rebufferHistogram.record(duration);
+        }
+    }
+
+    void onSeekStart() {
+        seekStartTime = SystemClock.elapsedRealtime();
+    }
+
+    void onSeekComplete() {
+        long start = seekStartTime;
+        if (start != 0) {
+            seekStartTime = 0;
+            seekHistogram.record(SystemClock.elapsedRealtime() - start);
+        }
+    }
+
+    void onError() {
+        errorCount.incrementAndGet();
+    }
+
+    void onLiveLatency(long latency, int action) {
+        liveLatencyHistogram.record(latency);
+        if (action == LiveLatencyController.ACTION_SPEED) {
+            speedChangeCount.incrementAndGet();
+        } else if (action == LiveLatencyController.ACTION_JUMP) {
+            liveEdgeJumpCount.incrementAndGet();
+        }
+    }
+
+    void setDropFrameRate(float dropFrameRate) {
+        this.dropFrameRate = dropFrameRate;
+    }
+
+    /**
+     * @return ms from the first init to prepared,-1 if not prepared yet
+     */
+    public long getPrepareLatency() {
+        return preparedTime == 0 ? -1 : preparedTime - initTime;
+    }
+
+    /**
+     * @return ms from the first init to the first video frame rendered,
+     * to the first audio rendered if no video frame yet(eg: audio only stream),-1 if not rendered yet
+     */
+    public long getStartupLatency() {
+        long first = firstFrameTime != 0 ? firstFrameTime : firstAudioTime;
+        return first == 0 ? -1 : first - initTime;
+    }
+
+    public int getRetryCount() {
+        return retryCount.get();
+    }
+
+    public int getErrorCount() {
+        return errorCount.get();
+    }
+
+    /**
+     * @return times of buffering after the first frame or audio
+     */
+    public int getRebufferCount() {
+        return rebufferCount.get();
+    }
+
+    /**
+     * @return total ms of buffering after the first frame or audio
+     */
+    public long getRebufferDuration() {
+        return rebufferDuration.get();
+    }
+
+    public LatencyHistogram getRebufferHistogram() {
+        return rebufferHistogram;
+    }
+
+    /**
+     * @return latency of seeks,from issued to onSeekComplete
+     */
+    public LatencyHistogram getSeekHistogram() {
+        return seekHistogram;
+    }
+
+    /**
+     * @return latency behind the live edge sampled by {@link LiveLatencyController}
+     */
+    public LatencyHistogram getLiveLatencyHistogram() {
+        return liveLatencyHistogram;
+    }
+
+    /**
+     * @return times the playback speed was changed to hold the live latency
+     */
+    public int getSpeedChangeCount() {
+        return speedChangeCount.get();
+    }
+
+    /**
+     * @return times playback jumped to the live edge
+     */
+    public int getLiveEdgeJumpCount() {
+        return liveEdgeJumpCount.get();
+    }
+
+    /**
+     * @return rate of dropped frames reported by ijkplayer when released,0 for system player
+     */
+    public float getDropFrameRate() {
+        return dropFrameRate;
+    }
+}
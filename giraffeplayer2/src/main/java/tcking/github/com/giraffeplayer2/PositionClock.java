@@ -0,0 +1,178 @@
+package tcking.github.com.giraffeplayer2;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import java.util.ArrayList;
+
+/**
+ * playback position extrapolated from the last known position,time and speed.
+ * the real position is read only when playback state changes (and every {@link #RESYNC_INTERVAL} ms to correct drift),
+ * listeners are notified on main thread only when the displayed second changes
+ */
+
+public class PositionClock {
+    public static final long RESYNC_INTERVAL = 5000;
+
+    public interface OnPositionChangeListener {
+        /**
+         * called on main thread
+         * @param position current position in ms
+         * @param duration duration in ms
+         */
+        void onPositionChange(long position, long duration);
+    }
+
+    interface Source {
+        long readPosition();
+
+        long readDuration();
+    }
+
+    private final Handler uiHandler = new Handler(Looper.getMainLooper());
+    private final Source source;
+    private final ArrayList<OnPositionChangeListener> listeners = new ArrayList<>();
+    private long anchorPosition;
+    private long anchorTime;
+    private long duration;
+    private float speed = 1f;
+    private boolean running;
+    private long lastNotifiedSecond = -1;
+
+    private final Runnable tick = new Runnable() {
+        @Override
+        public void run() {
+            onTick();
+        }
+    };
+
+    PositionClock(Source source) {
+        this.source = source;
+    }
+
+    /**
+     * read the real position and restart extrapolation, call it when playback state changed
+     * @param running true if the position is moving (playing and not buffering)
+     */
+    void sync(boolean running) {
+        long position = source.readPosition();
+        long duration = source.readDuration();
+        synchronized (this) {
+            this.anchorPosition = position;
+            this.anchorTime = SystemClock.uptimeMillis();
+            this.duration = duration;
+            this.running = running;
+            lastNotifiedSecond = -1;
+        }
+        uiHandler.removeCallbacks(tick);
+        uiHandler.post(tick);
+    }
+
+    synchronized void setSpeed(float speed) {
+        //re-anchor at current position before speed changed
+        long now = SystemClock.uptimeMillis();
+        anchorPosition = positionAt(now);
+        anchorTime = now;
+        this.speed = speed;
+    }
+
+    synchronized float getSpeed() {
+        return speed;
+    }
+
+    /**
+     * @return extrapolated position in ms
+     */
+    public synchronized long getPosition() {
+        return positionAt(SystemClock.uptimeMillis());
+    }
+
+    public synchronized long getDuration() {
+        return duration;
+    }
+
+    public synchronized boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * must be called on main thread
+     */
+    public void addListener(OnPositionChangeListener listener) {
+        if (!listeners.contains(listener)) {
+            listeners.add(listener);
+            synchronized (this) {
+                lastNotifiedSecond = -1;
+            }
+            uiHandler.removeCallbacks(tick);
+            uiHandler.post(tick);
+        }
+    }
+
+    /**
+     * must be called on main thread
+     */
+    public void removeListener(OnPositionChangeListener listener) {
+        listeners.remove(listener);
+        if (listeners.isEmpty()) {
+            uiHandler.removeCallbacks(tick);
+        }
+    }
+
+    void release() {
+        uiHandler.removeCallbacks(tick);
+    }
+
+    private long positionAt(long now) {
+        long position = anchorPosition;
+        if (running) {
+            position += (long) ((now - anchorTime) * speed);
+        }
+        if (duration > 0 && position > duration) {
+            position = duration;
+        }
+        return position;
+    }
+
+    private void onTick() {
+        if (listeners.isEmpty()) {
+            return;
+        }
+        boolean resync;
+        synchronized (this) {
+            resync = running && SystemClock.uptimeMillis() - anchorTime > RESYNC_INTERVAL;
+        }
+        if (resync) {
+            long position = source.readPosition();
+            synchronized (this) {
+                anchorPosition = position;
+                anchorTime = SystemClock.uptimeMillis();
+            }
+        }
+        long position;
+        long duration;
+        boolean notify;
+        long delay = -1;
+        synchronized (this) {
+            long now = SystemClock.uptimeMillis();
+            position = positionAt(now);
+            duration = this.duration;
+            long second = position / 1000;
+            notify = second != lastNotifiedSecond;
+            lastNotifiedSecond = second;
+            if (running && speed > 0) {
+                //wake up when the displayed second changes
+                delay = Math.max(1, (long) (((second + 1) * 1000 - position) / speed));
+            }
+        }
+        if (notify) {
+            for (int i = 0; i < listeners.size(); i++) {
+                listeners.get(i).onPositionChange(position, duration);
+            }
+        }
+        if (delay > 0) {
+            uiHandler.postDelayed(tick, delay);
+        }
+    }
+}
@@ -2,6 +2,8 @@ package tcking.github.com.giraffeplayer2;
 
 import android.util.Log;
 
+import java.lang.ref.WeakReference;
+
 
 /**
  * Created by tcking on 2017
@@ -9,49 +11,87 @@ import android.util.Log;
 
 public class ProxyPlayerListener implements PlayerListener {
     private static final String TAG = "GiraffeListener";
-    private VideoInfo videoInfo;
+    private static final PlayerListener[] NO_LISTENERS = new PlayerListener[0];
+    private volatile VideoInfo videoInfo;
+
+    //copy on write,iterate without lock and allocation
+    private volatile PlayerListener[] outerListeners = NO_LISTENERS;
+    //listeners of the bound VideoView,resolved again when PlayerManager binding version changed
+    private volatile Chain chain = new Chain(-1, null);
 
     public ProxyPlayerListener(VideoInfo videoInfo) {
         this.videoInfo = videoInfo;
     }
 
-    public PlayerListener getOuterListener() {
-        return outerListener;
+    /**
+     * the player is attached to another VideoView(eg. a preloaded or parked one),resolve the chain again
+     */
+    void setVideoInfo(VideoInfo videoInfo) {
+        this.videoInfo = videoInfo;
+        chain = new Chain(-1, null);
     }
 
-    private PlayerListener outerListener;
-
-
-
+    public PlayerListener getOuterListener() {
+        PlayerListener[] listeners = outerListeners;
+        return listeners.length > 0 ? listeners[0] : null;
+    }
 
-    public void setOuterListener(PlayerListener outerListener) {
-        this.outerListener = outerListener;
+    /**
+     * replace all outer listeners with this one
+     * @param outerListener listener,null to remove all
+     */
+    public synchronized void setOuterListener(PlayerListener outerListener) {
+        outerListeners = outerListener == null ? NO_LISTENERS : new PlayerListener[]{outerListener};
     }
 
-    private PlayerListener outerListener() {
-        if (outerListener != null) {
-            return outerListener;
+    public synchronized void addOuterListener(PlayerListener outerListener) {
+        PlayerListener[] old = outerListeners;
+        for (PlayerListener listener : old) {
+            if (listener == outerListener) {
+                return;
+            }
         }
-        VideoView videoView = PlayerManager.getInstance().getVideoView(videoInfo);
-        if (videoView != null && videoView.getPlayerListener() != null) {
-            return videoView.getPlayerListener();
+        PlayerListener[] listeners = new PlayerListener[old.length + 1];
+        System.arraycopy(old, 0, listeners, 0, old.length);
+        listeners[old.length] = outerListener;
+        outerListeners = listeners;
+    }
+
+    public synchronized void removeOuterListener(PlayerListener outerListener) {
+        PlayerListener[] old = outerListeners;
+        for (int i = 0; i < old.length; i++) {
+            if (old[i] == outerListener) {
+                PlayerListener[] listeners = new PlayerListener[old.length - 1];
+                System.arraycopy(old, 0, listeners, 0, i);
+                System.arraycopy(old, i + 1, listeners, i, old.length - i - 1);
+                outerListeners = listeners.length == 0 ? NO_LISTENERS : listeners;
+                return;
+            }
         }
-        return DefaultPlayerListener.INSTANCE;
     }
 
-    private PlayerListener listener() {
-        VideoView videoView = PlayerManager.getInstance().getVideoView(videoInfo);
-        if (videoView != null && videoView.getMediaController() != null) {
-            return videoView.getMediaController();
+    Chain chain() {
+        Chain chain = this.chain;
+        int version = PlayerManager.getInstance().getBindingVersion();
+        if (chain.version != version) {
+            chain = new Chain(version, PlayerManager.getInstance().getVideoView(videoInfo));
+            this.chain = chain;
         }
-        return DefaultPlayerListener.INSTANCE;
+        return chain;
     }
 
     @Override
     public void onPrepared(GiraffePlayer giraffePlayer) {
         log("onPrepared");
-        listener().onPrepared(giraffePlayer);
-        outerListener().onPrepared(giraffePlayer);
+        Chain chain = chain();
+        chain.listener().onPrepared(giraffePlayer);
+        PlayerListener[] listeners = outerListeners;
+        if (listeners.length == 0) {
+            chain.viewListener().onPrepared(giraffePlayer);
+        }
+        for (PlayerListener listener : listeners) {
+            listener.onPrepared(giraffePlayer);
+        }
     }
 
     @Override
@@ -59,8 +99,15 @@ public class ProxyPlayerListener implements PlayerListener {
 //        if (GiraffePlayer.debug) {
 //            log("onBufferingUpdate:"+percent);
 //        }
-        listener().onBufferingUpdate(giraffePlayer,percent);
-        outerListener().onBufferingUpdate(giraffePlayer,percent);
+        Chain chain = chain();
+        chain.listener().onBufferingUpdate(giraffePlayer, percent);
+        PlayerListener[] listeners = outerListeners;
+        if (listeners.length == 0) {
+            chain.viewListener().onBufferingUpdate(giraffePlayer, percent);
+        }
+        for (PlayerListener listener : listeners) {
+            listener.onBufferingUpdate(giraffePlayer, percent);
+        }
     }
 
     @Override
@@ -68,23 +115,45 @@ public class ProxyPlayerListener implements PlayerListener {
         if (GiraffePlayer.debug) {
             log("onInfo:"+what+","+extra);
         }
-        listener().onInfo(giraffePlayer,what,extra);
-        return outerListener().onInfo(giraffePlayer,what,extra);
+        Chain chain = chain();
+        chain.listener().onInfo(giraffePlayer, what, extra);
+        PlayerListener[] listeners = outerListeners;
+        if (listeners.length == 0) {
+            return chain.viewListener().onInfo(giraffePlayer, what, extra);
+        }
+        boolean handled = false;
+        for (PlayerListener listener : listeners) {
+            handled |= listener.onInfo(giraffePlayer, what, extra);
+        }
+        return handled;
     }
 
     @Override
     public void onCompletion(GiraffePlayer giraffePlayer) {
         log("onCompletion");
-        listener().onCompletion(giraffePlayer);
-        outerListener().onCompletion(giraffePlayer);
+        Chain chain = chain();
+        chain.listener().onCompletion(giraffePlayer);
+        PlayerListener[] listeners = outerListeners;
+        if (listeners.length == 0) {
+            chain.viewListener().onCompletion(giraffePlayer);
+        }
+        for (PlayerListener listener : listeners) {
+            listener.onCompletion(giraffePlayer);
+        }
     }
 
     @Override
     public void onSeekComplete(GiraffePlayer giraffePlayer) {
         log("onSeekComplete");
-        listener().onSeekComplete(giraffePlayer);
-        outerListener().onSeekComplete(giraffePlayer);
-
+        Chain chain = chain();
+        chain.listener().onSeekComplete(giraffePlayer);
+        PlayerListener[] listeners = outerListeners;
+        if (listeners.length == 0) {
+            chain.viewListener().onSeekComplete(giraffePlayer);
+        }
+        for (PlayerListener listener : listeners) {
+            listener.onSeekComplete(giraffePlayer);
+        }
     }
 
     @Override
@@ -92,30 +161,59 @@ public class ProxyPlayerListener implements PlayerListener {
         if (GiraffePlayer.debug) {
             log("onError:"+what+","+extra);
         }
-        listener().onError(giraffePlayer,what,extra);
-        return outerListener().onError(giraffePlayer,what,extra);
+        Chain chain = chain();
+        chain.listener().onError(giraffePlayer, what, extra);
+        PlayerListener[] listeners = outerListeners;
+        if (listeners.length == 0) {
+            return chain.viewListener().onError(giraffePlayer, what, extra);
+        }
+        boolean handled = false;
+        for (PlayerListener listener : listeners) {
+            handled |= listener.onError(giraffePlayer, what, extra);
+        }
+        return handled;
     }
 
     @Override
     public void onPause(GiraffePlayer giraffePlayer) {
         log("onPause");
-        listener().onPause(giraffePlayer);
-        outerListener().onPause(giraffePlayer);
+        Chain chain = chain();
+        chain.listener().onPause(giraffePlayer);
+        PlayerListener[] listeners = outerListeners;
+        if (listeners.length == 0) {
+            chain.viewListener().onPause(giraffePlayer);
+        }
+        for (PlayerListener listener : listeners) {
+            listener.onPause(giraffePlayer);
+        }
     }
 
     @Override
     public void onRelease(GiraffePlayer giraffePlayer) {
         log("onRelease");
-        listener().onRelease(giraffePlayer);
-        outerListener().onRelease(giraffePlayer);
-
+        Chain chain = chain();
+        chain.listener().onRelease(giraffePlayer);
+        PlayerListener[] listeners = outerListeners;
+        if (listeners.length == 0) {
+            chain.viewListener().onRelease(giraffePlayer);
+        }
+        for (PlayerListener listener : listeners) {
+            listener.onRelease(giraffePlayer);
+        }
     }
 
     @Override
     public void onStart(GiraffePlayer giraffePlayer) {
         log("onStart");
-        listener().onStart(giraffePlayer);
-        outerListener().onStart(giraffePlayer);
+        Chain chain = chain();
+        chain.listener().onStart(giraffePlayer);
+        PlayerListener[] listeners = outerListeners;
+        if (listeners.length == 0) {
+            chain.viewListener().onStart(giraffePlayer);
+        }
+        for (PlayerListener listener : listeners) {
+            listener.onStart(giraffePlayer);
+        }
     }
 
     @Override
@@ -123,8 +221,15 @@ public class ProxyPlayerListener implements PlayerListener {
         if (GiraffePlayer.debug) {
             log("onTargetStateChange:"+oldState+"->"+newState);
         }
-        listener().onTargetStateChange(oldState,newState);
-        outerListener().onTargetStateChange(oldState,newState);
+        Chain chain = chain();
+        chain.listener().onTargetStateChange(oldState, newState);
+        PlayerListener[] listeners = outerListeners;
+        if (listeners.length == 0) {
+            chain.viewListener().onTargetStateChange(oldState, newState);
+        }
+        for (PlayerListener listener : listeners) {
+            listener.onTargetStateChange(oldState, newState);
+        }
     }
 
     @Override
@@ -132,8 +237,15 @@ public class ProxyPlayerListener implements PlayerListener {
         if (GiraffePlayer.debug) {
             log("onCurrentStateChange:"+oldState+"->"+newState);
         }
-        listener().onCurrentStateChange(oldState,newState);
-        outerListener().onCurrentStateChange(oldState,newState);
+        Chain chain = chain();
+        chain.listener().onCurrentStateChange(oldState, newState);
+        PlayerListener[] listeners = outerListeners;
+        if (listeners.length == 0) {
+            chain.viewListener().onCurrentStateChange(oldState, newState);
+        }
+        for (PlayerListener listener : listeners) {
+            listener.onCurrentStateChange(oldState, newState);
+        }
     }
 
     @Override
@@ -141,14 +253,28 @@ public class ProxyPlayerListener implements PlayerListener {
         if (GiraffePlayer.debug) {
             log("onDisplayModelChange:"+oldModel+"->"+newModel);
         }
-        listener().onDisplayModelChange(oldModel,newModel);
-        outerListener().onDisplayModelChange(oldModel,newModel);
+        Chain chain = chain();
+        chain.listener().onDisplayModelChange(oldModel, newModel);
+        PlayerListener[] listeners = outerListeners;
+        if (listeners.length == 0) {
+            chain.viewListener().onDisplayModelChange(oldModel, newModel);
+        }
+        for (PlayerListener listener : listeners) {
+            listener.onDisplayModelChange(oldModel, newModel);
+        }
     }
 
     public void onPreparing(GiraffePlayer giraffePlayer) {
         log("onPreparing");
-        listener().onPreparing(giraffePlayer);
-        outerListener().onPreparing(giraffePlayer);
+        Chain chain = chain();
+        chain.listener().onPreparing(giraffePlayer);
+        PlayerListener[] listeners = outerListeners;
+        if (listeners.length == 0) {
+            chain.viewListener().onPreparing(giraffePlayer);
+        }
+        for (PlayerListener listener : listeners) {
+            listener.onPreparing(giraffePlayer);
+        }
     }
 
     private void log(String msg) {
@@ -156,4 +282,30 @@ public class ProxyPlayerListener implements PlayerListener {
             Log.d(TAG, String.format("[fingerprint:%s] %s", videoInfo.getFingerprint(), msg));
         }
     }
+
+    /**
+     * media controller and player listener of the bound VideoView,
+     * hold by weak reference so the cache never keeps a VideoView alive
+     */
+    static class Chain {
+        private final int version;
+        private final WeakReference<PlayerListener> controllerRef;
+        private final WeakReference<PlayerListener> viewListenerRef;
+
+        Chain(int version, VideoView videoView) {
+            this.version = version;
+            controllerRef = new WeakReference<PlayerListener>(videoView != null ? videoView.getMediaController() : null);
+            viewListenerRef = new WeakReference<>(videoView != null ? videoView.getPlayerListener() : null);
+        }
+
+        PlayerListener listener() {
+            PlayerListener listener = controllerRef.get();
+            return listener != null ? listener : DefaultPlayerListener.INSTANCE;
+        }
+
+        PlayerListener viewListener() {
+            PlayerListener listener = viewListenerRef.get();
+            return listener != null ? listener : DefaultPlayerListener.INSTANCE;
+        }
+    }
 }
@@ -0,0 +1,345 @@
+package tcking.github.com.giraffeplayer2;
+
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * remember where the user stopped watching a video.
+ * positions are kept in memory and appended to a log file in batches on a background thread,
+ * the log is rewritten with only the live entries when it grows too large
+ */
+
+public class ResumeStore {
+    private static final String TAG = "GiraffeResumeStore";
+    private static final int MAGIC = 0x47505231;//GPR1
+    private static final byte OP_PUT = 1;
+    private static final byte OP_REMOVE = 2;
+    public static final int DEFAULT_MAX_ENTRIES = 500;
+    //a position near the start or the end is not worth resuming
+    public static final long MIN_POSITION = 5000;
+    public static final long MIN_REMAINING = 5000;
+    static final long FLUSH_DELAY = 2000;
+
+    private final File file;
+    private final ScheduledExecutorService writer;
+    //key->position,access order
+    private final LinkedHashMap<String, Long> index = new LinkedHashMap<>(16, 0.75f, true);
+    //key->position,null to remove
+    private HashMap<String, Long> pending = new HashMap<>();
+    private int maxEntries = DEFAULT_MAX_ENTRIES;
+    private int logRecords;
+    private boolean loaded;
+    private boolean flushScheduled;
+
+    private final Runnable flushTask = new Runnable() {
+        @Override
+        public void run() {
+            flushPending();
+        }
+    };
+
+    /**
+     * @param file the log file,created if not exists
+     */
+    public ResumeStore(File file) {
+        this.file = file;
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "giraffe-resume");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(true);
+        writer = executor;
+        //read the log before the first player asks for it
+        writer.execute(new Runnable() {
+            @Override
+            public void run() {
+                ensureLoaded();
+            }
+        });
+    }
+
+    /**
+     * key of a video,the uri is stable across sessions while a fingerprint may be a list position
+     */
+    public static String keyOf(VideoInfo videoInfo) {
+        return videoInfo.getUri() != null ? videoInfo.getUri().toString() : videoInfo.getFingerprint();
+    }
+
+    /**
+     * @return saved position in ms,0 if none.
+     * may block on reading the log for the first call,don't call it on main thread
+     */
+    public long get(String key) {
+        synchronized (this) {
+            ensureLoaded();
+            Long position = index.get(key);
+            return position != null ? position : 0;
+        }
+    }
+
+    /**
+     * remember the position,written to disk later in a batch
+     * @param position position in ms
+     * @param duration duration in ms,<=0 if unknown
+     */
+    public void put(String key, long position, long duration) {
+        if (position < MIN_POSITION || (duration > 0 && duration - position < MIN_REMAINING)) {
+            remove(key);
+            return;
+        }
+        synchronized (this) {
+            ensureLoaded();
+            Long old = index.put(key, position);
+            if (old != null && old == position) {
+                return;
+            }
+            pending.put(key, position);
+            trimToMaxEntries();
+            scheduleFlush(FLUSH_DELAY);
+        }
+    }
+
+    public void remove(String key) {
+        synchronized (this) {
+            ensureLoaded();
+            if (index.remove(key) == null) {
+                return;
+            }
+            pending.put(key, null);
+            scheduleFlush(FLUSH_DELAY);
+        }
+    }
+
+    public synchronized int size() {
+        ensureLoaded();
+        return index.size();
+    }
+
+    public synchronized ResumeStore setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+        ensureLoaded();
+        trimToMaxEntries();
+        scheduleFlush(FLUSH_DELAY);
+        return this;
+    }
+
+    /**
+     * write pending positions without waiting for the batch delay,
+     * the write still happens on the background thread
+     */
+    public synchronized void flush() {
+        scheduleFlush(0);
+    }
+
+    /**
+     * flush and stop the background thread
+     */
+    public void close() {
+        flush();
+        writer.shutdown();
+    }
+
+    /**
+     * wait until the pending positions are written,for tests
+     */
+    boolean awaitFlushed(long timeout) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeout;
+        synchronized (this) {
+            while ((flushScheduled || !pending.isEmpty()) && System.currentTimeMillis() < deadline) {
+                wait(Math.max(1, deadline - System.currentTimeMillis()));
+            }
+            return !flushScheduled && pending.isEmpty();
+        }
+    }
+
+    private void scheduleFlush(long delay) {
+        if (pending.isEmpty()) {
+            return;
+        }
+        if (flushScheduled && delay > 0) {
+            //batched with the scheduled one
+            return;
+        }
+        flushScheduled = true;
+        try {
+            writer.schedule(flushTask, delay, TimeUnit.MILLISECONDS);
+        } catch (RuntimeException e) {
+            //closed
+            flushScheduled = false;
+        }
+    }
+
+    private void trimToMaxEntries() {
+        Iterator<String> keys = index.keySet().iterator();
+        while (index.size() > maxEntries && keys.hasNext()) {
+            pending.put(keys.next(), null);
+            keys.remove();
+        }
+    }
+
+    /**
+     * on the writer thread
+     */
+    private void flushPending() {
+        HashMap<String, Long> batch;
+        boolean compact;
+        HashMap<String, Long> snapshot = null;
+        synchronized (this) {
+            batch = pending;
+            if (batch.isEmpty()) {
+                flushScheduled = false;
+                notifyAll();
+                return;
+            }
+            pending = new HashMap<>();
+            //the log holds more dead records than live ones
+            compact = logRecords + batch.size() > Math.max(2 * index.size(), 64);
+            if (compact) {
+                snapshot = new HashMap<>(index);
+            }
+        }
+        try {
+            if (compact) {
+                writeSnapshot(snapshot);
+            } else {
+                append(batch);
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "write resume log failed:" + e.getMessage());
+        }
+        synchronized (this) {
+            logRecords = compact ? snapshot.size() : logRecords + batch.size();
+            flushScheduled = false;
+            //more positions may come while writing
+            scheduleFlush(FLUSH_DELAY);
+            notifyAll();
+        }
+    }
+
+    private void append(Map<String, Long> batch) throws IOException {
+        boolean exists = file.length() > 0;
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+        try {
+            if (!exists) {
+                out.writeInt(MAGIC);
+            }
+            writeRecords(out, batch);
+        } finally {
+            out.close();
+        }
+    }
+
+    private void writeSnapshot(Map<String, Long> snapshot) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+        try {
+            out.writeInt(MAGIC);
+            writeRecords(out, snapshot);
+        } finally {
+            out.close();
+        }
+        if (!tmp.renameTo(file)) {
+            throw new IOException("rename " + tmp + " failed");
+        }
+        log("compacted,records:" + snapshot.size());
+    }
+
+    private static void writeRecords(DataOutputStream out, Map<String, Long> records) throws IOException {
+        for (Map.Entry<String, Long> record : records.entrySet()) {
+            if (record.getValue() == null) {
+                out.writeByte(OP_REMOVE);
+                out.writeUTF(record.getKey());
+            } else {
+                out.writeByte(OP_PUT);
+                out.writeUTF(record.getKey());
+                out.writeLong(record.getValue());
+            }
+        }
+    }
+
+    /**
+     * replay the log into the index once
+     */
+    private synchronized void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        if (!file.exists()) {
+            return;
+        }
+        int records = 0;
+        boolean broken = false;
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (in.readInt() != MAGIC) {
+                throw new IOException("bad magic");
+            }
+            while (true) {
+                byte op;
+                try {
+                    op = in.readByte();
+                } catch (EOFException e) {
+                    break;
+                }
+                String key = in.readUTF();
+                if (op == OP_PUT) {
+                    index.put(key, in.readLong());
+                } else if (op == OP_REMOVE) {
+                    index.remove(key);
+                } else {
+                    throw new IOException("bad record");
+                }
+                records++;
+            }
+        } catch (IOException e) {
+            //a record cut by a crash,the good ones are kept
+            log("resume log broken:" + e.getMessage());
+            broken = true;
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    //ignore
+                }
+            }
+        }
+        Iterator<String> keys = index.keySet().iterator();
+        while (index.size() > maxEntries && keys.hasNext()) {
+            keys.next();
+            keys.remove();
+        }
+        //a broken tail must be rewritten before appending
+        logRecords = broken ? Integer.MAX_VALUE / 2 : records;
+        log("loaded,entries:" + index.size() + ",records:" + records);
+    }
+
+    private static void log(String msg) {
+        if (GiraffePlayer.debug) {
+            Log.d(TAG, msg);
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package tcking.github.com.giraffeplayer2;
+
+import android.os.Parcel;
+import android.os.Parcelable;
+
+import java.util.Random;
+
+import tv.danmaku.ijk.media.player.IMediaPlayer;
+
+/**
+ * when to retry after a player error: exponential backoff with jitter,
+ * so clients which failed together don't come back together
+ */
+
+public class RetryPolicy implements Parcelable {
+    public static final int ERROR_NETWORK = 1;
+    public static final int ERROR_SERVER_DIED = 1 << 1;
+    //malformed or unsupported media,retry won't help
+    public static final int ERROR_FORMAT = 1 << 2;
+    public static final int ERROR_OTHER = 1 << 3;
+    public static final int ERROR_ALL = ERROR_NETWORK | ERROR_SERVER_DIED | ERROR_FORMAT | ERROR_OTHER;
+
+    private long initialDelay = 1000;
+    private long maxDelay = 30 * 1000;
+    private float multiplier = 2f;
+    private float jitter = 0.5f;
+    private int maxAttempts = 5;
+    private int retryOn = ERROR_NETWORK | ERROR_SERVER_DIED | ERROR_OTHER;
+
+    public RetryPolicy() {
+    }
+
+    public RetryPolicy(RetryPolicy other) {
+        initialDelay = other.initialDelay;
+        maxDelay = other.maxDelay;
+        multiplier = other.multiplier;
+        jitter = other.jitter;
+        maxAttempts = other.maxAttempts;
+        retryOn = other.retryOn;
+    }
+
+    /**
+     * retry every interval ms on any error without limit,the same as {@link VideoInfo#setRetryInterval(int)}
+     */
+    public static RetryPolicy fixed(long interval) {
+        return new RetryPolicy().setInitialDelay(interval).setMultiplier(1).setJitter(0)
+                .setMaxAttempts(0).setRetryOn(ERROR_ALL);
+    }
+
+    /**
+     * @return one of ERROR_NETWORK,ERROR_SERVER_DIED,ERROR_FORMAT,ERROR_OTHER
+     */
+    public static int classify(int what, int extra) {
+        if (what == IMediaPlayer.MEDIA_ERROR_SERVER_DIED) {
+            return ERROR_SERVER_DIED;
+        }
+        if (isNetworkError(what) || isNetworkError(extra)) {
+            return ERROR_NETWORK;
+        }
+        if (isFormatError(what) || isFormatError(extra)) {
+            return ERROR_FORMAT;
+        }
+        return ERROR_OTHER;
+    }
+
+    private static boolean isNetworkError(int code) {
+        return code == IMediaPlayer.MEDIA_ERROR_IO || code == IMediaPlayer.MEDIA_ERROR_TIMED_OUT;
+    }
+
+    private static boolean isFormatError(int code) {
+        return code == IMediaPlayer.MEDIA_ERROR_MALFORMED || code == IMediaPlayer.MEDIA_ERROR_UNSUPPORTED
+                || code == IMediaPlayer.MEDIA_ERROR_NOT_VALID_FOR_PROGRESSIVE_PLAYBACK;
+    }
+
+    /**
+     * @param attempt retries done since the last successful prepare
+     * @return true if the error should be retried
+     */
+    public boolean shouldRetry(int what, int extra, int attempt) {
+        if (maxAttempts > 0 && attempt >= maxAttempts) {
+            return false;
+        }
+        return (retryOn & classify(what, extra)) != 0;
+    }
+
+    /**
+     * initialDelay * multiplier^attempt capped by maxDelay,
+     * then a random part of it (the jitter) is taken off
+     * @param attempt retries done since the last successful prepare
+     * @return delay in ms
+     */
+    public long getDelay(int attempt, Random random) {
+        double delay = initialDelay;
+        for (int i = 0; i < attempt && delay < maxDelay; i++) {
+            delay *= multiplier;
+        }
+        delay = Math.min(delay, maxDelay);
+        delay -= delay * jitter * random.nextDouble();
+        return Math.max(0, (long) delay);
+    }
+
+    public long getInitialDelay() {
+        return initialDelay;
+    }
+
+    /**
+     * @param initialDelay delay before the first retry in ms,default is 1000
+     * @return RetryPolicy
+     */
+    public RetryPolicy setInitialDelay(long initialDelay) {
+        this.initialDelay = initialDelay;
+        return this;
+    }
+
+    public long getMaxDelay() {
+        return maxDelay;
+    }
+
+    /**
+     * @param maxDelay cap of the delay in ms,default is 30000
+     * @return RetryPolicy
+     */
+    public RetryPolicy setMaxDelay(long maxDelay) {
+        this.maxDelay = maxDelay;
+        return this;
+    }
+
+    public float getMultiplier() {
+        return multiplier;
+    }
+
+    /**
+     * @param multiplier growth of the delay after every retry,default is 2
+     * @return RetryPolicy
+     */
+    public RetryPolicy setMultiplier(float multiplier) {
+        this.multiplier = multiplier;
+        return this;
+    }
+
+    public float getJitter() {
+        return jitter;
+    }
+
+    /**
+     * @param jitter 0~1,up to this part of the delay is taken off randomly,default is 0.5
+     * @return RetryPolicy
+     */
+    public RetryPolicy setJitter(float jitter) {
+        this.jitter = Math.max(0, Math.min(1, jitter));
+        return this;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * @param maxAttempts retries before giving up,<=0 for unlimited,default is 5
+     * @return RetryPolicy
+     */
+    public RetryPolicy setMaxAttempts(int maxAttempts) {
+        this.maxAttempts = maxAttempts;
+        return this;
+    }
+
+    public int getRetryOn() {
+        return retryOn;
+    }
+
+    /**
+     * @param retryOn error classes to retry,eg: ERROR_NETWORK|ERROR_SERVER_DIED,
+     *                default is all but ERROR_FORMAT
+     * @return RetryPolicy
+     */
+    public RetryPolicy setRetryOn(int retryOn) {
+        this.retryOn = retryOn;
+        return this;
+    }
+
+    protected RetryPolicy(Parcel in) {
+        initialDelay = in.readLong();
+        maxDelay = in.readLong();
+        multiplier = in.readFloat();
+        jitter = in.readFloat();
+        maxAttempts = in.readInt();
+        retryOn = in.readInt();
+    }
+
+    @Override
+    public void writeToParcel(Parcel dest, int flags) {
+        dest.writeLong(initialDelay);
+        dest.writeLong(maxDelay);
+        dest.writeFloat(multiplier);
+        dest.writeFloat(jitter);
+        dest.writeInt(maxAttempts);
+        dest.writeInt(retryOn);
+    }
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    public static final Creator<RetryPolicy> CREATOR = new Creator<RetryPolicy>() {
+        @Override
+        public RetryPolicy createFromParcel(Parcel in) {
+            return new RetryPolicy(in);
+        }
+
+        @Override
+        public RetryPolicy[] newArray(int size) {
+            return new RetryPolicy[size];
+        }
+    };
+}
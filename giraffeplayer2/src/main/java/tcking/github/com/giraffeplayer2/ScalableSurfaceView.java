@@ -0,0 +1,54 @@
+package tcking.github.com.giraffeplayer2;
+
+import android.content.Context;
+import android.util.AttributeSet;
+import android.view.SurfaceView;
+
+/**
+ * SurfaceView counterpart of {@link ScalableTextureView},the surface buffer is sized to the video
+ */
+
+public class ScalableSurfaceView extends SurfaceView implements ScalableDisplay {
+    private MeasureHelper measureHelper;
+
+    public ScalableSurfaceView(Context context) {
+        super(context);
+        init();
+    }
+
+    public ScalableSurfaceView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        init();
+    }
+
+    public ScalableSurfaceView(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+        init();
+    }
+
+    @Override
+    public void setAspectRatio(int aspectRatio) {
+        measureHelper.setAspectRatio(aspectRatio);
+        requestLayout();
+    }
+
+    @Override
+    public void setVideoSize(int videoWidth, int videoHeight) {
+        if (videoWidth > 0 && videoHeight > 0) {
+            measureHelper.setVideoSize(videoWidth, videoHeight);
+            //the buffer follows the video,the view is scaled by measureHelper
+            getHolder().setFixedSize(videoWidth, videoHeight);
+            requestLayout();
+        }
+    }
+
+    private void init() {
+        measureHelper = new MeasureHelper(this);
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        measureHelper.doMeasure(widthMeasureSpec, heightMeasureSpec);
+        setMeasuredDimension(measureHelper.getMeasuredWidth(), measureHelper.getMeasuredHeight());
+    }
+}
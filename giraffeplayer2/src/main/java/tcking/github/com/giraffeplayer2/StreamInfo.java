@@ -0,0 +1,150 @@
+package tcking.github.com.giraffeplayer2;
+
+import java.util.Arrays;
+
+import tv.danmaku.ijk.media.player.IMediaPlayer;
+import tv.danmaku.ijk.media.player.IjkMediaMeta;
+import tv.danmaku.ijk.media.player.IjkMediaPlayer;
+import tv.danmaku.ijk.media.player.MediaInfo;
+import tv.danmaku.ijk.media.player.misc.ITrackInfo;
+
+/**
+ * metadata of a stream found by probing: format,codecs,duration,tracks and video size.
+ * immutable,captured when prepared and kept in {@link StreamInfoCache}
+ */
+
+public final class StreamInfo {
+    //probe options when the stream has been probed before,the tracks are known to be there
+    static final long FAST_PROBE_SIZE = 64 * 1024;
+    static final long FAST_ANALYZE_DURATION = 500 * 1000;//in microseconds
+
+    private final String format;
+    private final String videoCodec;
+    private final String audioCodec;
+    private final long duration;
+    private final int videoWidth;
+    private final int videoHeight;
+    private final int[] trackTypes;
+    private final String[] trackLanguages;
+
+    StreamInfo(String format, String videoCodec, String audioCodec, long duration, int videoWidth, int videoHeight,
+               int[] trackTypes, String[] trackLanguages) {
+        this.format = format;
+        this.videoCodec = videoCodec;
+        this.audioCodec = audioCodec;
+        this.duration = duration;
+        this.videoWidth = videoWidth;
+        this.videoHeight = videoHeight;
+        this.trackTypes = trackTypes;
+        this.trackLanguages = trackLanguages;
+    }
+
+    /**
+     * read the stream info of a prepared media player
+     */
+    static StreamInfo of(IMediaPlayer mediaPlayer) {
+        String format = null;
+        String videoCodec = null;
+        String audioCodec = null;
+        MediaInfo mediaInfo = mediaPlayer.getMediaInfo();
+        if (mediaInfo != null && mediaInfo.mMeta != null) {
+            format = mediaInfo.mMeta.mFormat;
+            if (mediaInfo.mMeta.mStreams != null) {
+                for (IjkMediaMeta.IjkStreamMeta stream : mediaInfo.mMeta.mStreams) {
+                    if (videoCodec == null && IjkMediaMeta.IJKM_VAL_TYPE__VIDEO.equals(stream.mType)) {
+                        videoCodec = stream.mCodecName;
+                    } else if (audioCodec == null && IjkMediaMeta.IJKM_VAL_TYPE__AUDIO.equals(stream.mType)) {
+                        audioCodec = stream.mCodecName;
+                    }
+                }
+            }
+        }
+        ITrackInfo[] tracks = mediaPlayer.getTrackInfo();
+        if (tracks == null) {
+            tracks = new ITrackInfo[0];
+        }
+        int[] trackTypes = new int[tracks.length];
+        String[] trackLanguages = new String[tracks.length];
+        for (int i = 0; i < tracks.length; i++) {
+            trackTypes[i] = tracks[i].getTrackType();
+            trackLanguages[i] = tracks[i].getLanguage();
+        }
+        return new StreamInfo(format, videoCodec, audioCodec, mediaPlayer.getDuration(),
+                mediaPlayer.getVideoWidth(), mediaPlayer.getVideoHeight(), trackTypes, trackLanguages);
+    }
+
+    /**
+     * @return true if the other one has the same tracks in the same order,
+     * false means a quick probe missed a track or the stream changed
+     */
+    boolean hasSameTracks(StreamInfo other) {
+        return Arrays.equals(trackTypes, other.trackTypes) && Arrays.equals(trackLanguages, other.trackLanguages);
+    }
+
+    /**
+     * @return options for a quick probe,options of the video take precedence over them
+     */
+    OptionProfile probeOptions() {
+        return OptionProfile.EMPTY
+                .with(Option.create(IjkMediaPlayer.OPT_CATEGORY_FORMAT, "probesize", FAST_PROBE_SIZE))
+                .with(Option.create(IjkMediaPlayer.OPT_CATEGORY_FORMAT, "analyzeduration", FAST_ANALYZE_DURATION));
+    }
+
+    /**
+     * @return container format,eg: mov,mp4,m4a,3gp,3g2,mj2,null if unknown
+     */
+    public String getFormat() {
+        return format;
+    }
+
+    public String getVideoCodec() {
+        return videoCodec;
+    }
+
+    public String getAudioCodec() {
+        return audioCodec;
+    }
+
+    /**
+     * @return duration in ms,0 for live streams
+     */
+    public long getDuration() {
+        return duration;
+    }
+
+    public int getVideoWidth() {
+        return videoWidth;
+    }
+
+    public int getVideoHeight() {
+        return videoHeight;
+    }
+
+    public int getTrackCount() {
+        return trackTypes.length;
+    }
+
+    /**
+     * @return one of ITrackInfo.MEDIA_TRACK_TYPE_*
+     */
+    public int getTrackType(int index) {
+        return trackTypes[index];
+    }
+
+    public String getTrackLanguage(int index) {
+        return trackLanguages[index];
+    }
+
+    @Override
+    public String toString() {
+        return "StreamInfo{" +
+                "format='" + format + '\'' +
+                ", videoCodec='" + videoCodec + '\'' +
+                ", audioCodec='" + audioCodec + '\'' +
+                ", duration=" + duration +
+                ", videoWidth=" + videoWidth +
+                ", videoHeight=" + videoHeight +
+                ", trackTypes=" + Arrays.toString(trackTypes) +
+                '}';
+    }
+}
@@ -0,0 +1,81 @@
+package tcking.github.com.giraffeplayer2;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * stream info of the recently played videos (keyed by uri),
+ * a video played again is probed quickly and its display is sized before the first frame
+ */
+
+public class StreamInfoCache {
+    public static final int DEFAULT_MAX_SIZE = 100;
+
+    private final LinkedHashMap<String, StreamInfo> infos = new LinkedHashMap<>(16, 0.75f, true);
+    private int maxSize;
+
+    public StreamInfoCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    public StreamInfoCache(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @return the key of the video,null if it has no uri
+     */
+    public static String keyOf(VideoInfo videoInfo) {
+        return videoInfo.getUri() == null ? null : videoInfo.getUri().toString();
+    }
+
+    public synchronized int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @param maxSize max videos to keep,<=0 will disable the cache
+     * @return StreamInfoCache
+     */
+    public synchronized StreamInfoCache setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+        trim();
+        return this;
+    }
+
+    /**
+     * @return stream info or null if the video is not probed before
+     */
+    public synchronized StreamInfo get(String key) {
+        return key == null ? null : infos.get(key);
+    }
+
+    public synchronized void put(String key, StreamInfo info) {
+        if (key == null || info == null) {
+            return;
+        }
+        infos.put(key, info);
+        trim();
+    }
+
+    public synchronized StreamInfo remove(String key) {
+        return infos.remove(key);
+    }
+
+    public synchronized void clear() {
+        infos.clear();
+    }
+
+    public synchronized int size() {
+        return infos.size();
+    }
+
+    private void trim() {
+        Iterator<Map.Entry<String, StreamInfo>> iterator = infos.entrySet().iterator();
+        while (infos.size() > Math.max(0, maxSize) && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+}
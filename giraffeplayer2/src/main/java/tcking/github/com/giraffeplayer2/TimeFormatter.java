@@ -0,0 +1,76 @@
+package tcking.github.com.giraffeplayer2;
+
+/**
+ * format time as mm:ss or hh:mm:ss without String.format,
+ * labels of the first {@link #INTERNED_SECONDS} seconds are cached and shared,
+ * so a progress update or seek bar drag allocates nothing after warm up
+ */
+
+public class TimeFormatter {
+    public static final int INTERNED_SECONDS = 2 * 3600;
+    private static final String[] interned = new String[INTERNED_SECONDS];
+
+    //hhhhhh:mm:ss
+    private final char[] buffer = new char[16];
+
+    /**
+     * @param time time in ms,a negative time is shown as 00:00
+     * @return label,eg: 01:05 or 01:01:05
+     */
+    public String format(long time) {
+        int totalSeconds = toSeconds(time);
+        if (totalSeconds < INTERNED_SECONDS) {
+            String label = interned[totalSeconds];
+            if (label == null) {
+                label = new String(buffer, 0, write(totalSeconds, buffer));
+                interned[totalSeconds] = label;
+            }
+            return label;
+        }
+        return new String(buffer, 0, write(totalSeconds, buffer));
+    }
+
+    /**
+     * write label into the given buffer
+     * @param time time in ms
+     * @param out buffer,at least 16 chars
+     * @return length of the label
+     */
+    public int format(long time, char[] out) {
+        return write(toSeconds(time), out);
+    }
+
+    private static int toSeconds(long time) {
+        if (time <= 0) {
+            return 0;
+        }
+        return (int) Math.min(Integer.MAX_VALUE, time / 1000);
+    }
+
+    private static int write(int totalSeconds, char[] out) {
+        int seconds = totalSeconds % 60;
+        int minutes = (totalSeconds / 60) % 60;
+        int hours = totalSeconds / 3600;
+        int length = 0;
+        if (hours > 0) {
+            length = writeNumber(hours, out, length);
+            out[length++] = ':';
+        }
+        length = writeNumber(minutes, out, length);
+        out[length++] = ':';
+        return writeNumber(seconds, out, length);
+    }
+
+    //at least two digits
+    private static int writeNumber(int value, char[] out, int offset) {
+        int digits = 2;
+        for (int v = value / 100; v > 0; v /= 10) {
+            digits++;
+        }
+        for (int i = offset + digits - 1; i >= offset; i--) {
+            out[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        return offset + digits;
+    }
+}
@@ -0,0 +1,140 @@
+package tcking.github.com.giraffeplayer2;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.ArrayList;
+
+import tv.danmaku.ijk.media.player.IMediaPlayer;
+
+/**
+ * collect player events from any thread and deliver them on main thread in one pass,
+ * redundant state changes and buffering updates are collapsed before delivered.
+ * event objects are pooled, no allocation after warm up
+ */
+
+class UIEventBatcher implements Runnable {
+    static final int EVENT_TARGET_STATE = 1;
+    static final int EVENT_CURRENT_STATE = 2;
+    static final int EVENT_BUFFERING_UPDATE = 3;
+    static final int EVENT_INFO = 4;
+    static final int EVENT_PREPARING = 5;
+    static final int EVENT_ERROR = 6;
+
+    private static final int MAX_POOL_SIZE = 16;
+
+    interface Target {
+        /**
+         * called on main thread
+         */
+        void onEvent(int type, int arg1, int arg2);
+    }
+
+    private final Handler uiHandler = new Handler(Looper.getMainLooper());
+    private final Target target;
+    private ArrayList<Event> pending = new ArrayList<>(MAX_POOL_SIZE);
+    private ArrayList<Event> dispatching = new ArrayList<>(MAX_POOL_SIZE);
+    private final ArrayList<Event> pool = new ArrayList<>(MAX_POOL_SIZE);
+    private Event pendingBuffering;
+    private boolean scheduled;
+
+    UIEventBatcher(Target target) {
+        this.target = target;
+    }
+
+    /**
+     * @param type EVENT_TARGET_STATE or EVENT_CURRENT_STATE
+     */
+    synchronized void postStateChange(int type, int oldState, int newState) {
+        Event tail = tail();
+        if (tail != null && tail.type == type) {
+            //A->B,B->C => A->C
+            tail.arg2 = newState;
+            if (tail.arg1 == tail.arg2) {
+                //A->B,B->A => nothing
+                recycle(pending.remove(pending.size() - 1));
+            }
+            return;
+        }
+        if (oldState != newState) {
+            append(type, oldState, newState);
+        }
+    }
+
+    synchronized void postBufferingUpdate(int percent) {
+        //only the latest percent matters
+        if (pendingBuffering != null) {
+            pendingBuffering.arg1 = percent;
+            return;
+        }
+        pendingBuffering = append(EVENT_BUFFERING_UPDATE, percent, 0);
+    }
+
+    synchronized void postInfo(int what, int extra) {
+        Event tail = tail();
+        if (what == IMediaPlayer.MEDIA_INFO_NETWORK_BANDWIDTH && tail != null
+                && tail.type == EVENT_INFO && tail.arg1 == what) {
+            tail.arg2 = extra;
+            return;
+        }
+        append(EVENT_INFO, what, extra);
+    }
+
+    synchronized void post(int type, int arg1, int arg2) {
+        append(type, arg1, arg2);
+    }
+
+    @Override
+    public void run() {
+        ArrayList<Event> events;
+        synchronized (this) {
+            events = pending;
+            pending = dispatching;
+            dispatching = events;
+            pendingBuffering = null;
+            scheduled = false;
+        }
+        for (int i = 0; i < events.size(); i++) {
+            Event event = events.get(i);
+            target.onEvent(event.type, event.arg1, event.arg2);
+        }
+        synchronized (this) {
+            for (int i = 0; i < events.size(); i++) {
+                recycle(events.get(i));
+            }
+            events.clear();
+        }
+    }
+
+    private Event tail() {
+        return pending.isEmpty() ? null : pending.get(pending.size() - 1);
+    }
+
+    private Event append(int type, int arg1, int arg2) {
+        Event event = pool.isEmpty() ? new Event() : pool.remove(pool.size() - 1);
+        event.type = type;
+        event.arg1 = arg1;
+        event.arg2 = arg2;
+        pending.add(event);
+        if (!scheduled) {
+            scheduled = true;
+            uiHandler.post(this);
+        }
+        return event;
+    }
+
+    private void recycle(Event event) {
+        if (event == pendingBuffering) {
+            pendingBuffering = null;
+        }
+        if (pool.size() < MAX_POOL_SIZE) {
+            pool.add(event);
+        }
+    }
+
+    private static class Event {
+        private int type;
+        private int arg1;
+        private int arg2;
+    }
+}
@@ -22,8 +22,14 @@ public class VideoInfo implements Parcelable {
     public static final String DEFAULT_FINGERPRINT = "-1";
     public static final String PLAYER_IMPL_IJK = "ijk";
     public static final String PLAYER_IMPL_SYSTEM = "system";
-
-    private HashSet<Option> options = new HashSet<>();
+    public static final String DISPLAY_BACKEND_TEXTURE = "texture";
+    public static final String DISPLAY_BACKEND_SURFACE = "surface";
+    public static final long DEFAULT_LOOK_AHEAD_WINDOW = 2 * 1024 * 1024;
+
+    //copy on write,shared with the VideoInfo copied from
+    private OptionProfile optionProfile = OptionProfile.EMPTY;
+    private BufferConfig bufferConfig;
+    private LiveLatencyConfig liveLatency;
     private boolean showTopBar = false;
     private Uri uri;
     private String fingerprint = DEFAULT_FINGERPRINT;
@@ -33,26 +39,34 @@ public class VideoInfo implements Parcelable {
     private String lastFingerprint;
     private Uri lastUri;
     private int retryInterval=0;
+    private RetryPolicy retryPolicy;
     private int bgColor = Color.DKGRAY;
     private String playerImpl = PLAYER_IMPL_IJK;
+    private String displayBackend = DISPLAY_BACKEND_TEXTURE;
     private boolean fullScreenAnimation = true;
+    private boolean cacheEnabled = false;
+    private int parallelFetch = 1;
+    private long lookAheadWindow = DEFAULT_LOOK_AHEAD_WINDOW;
+    private boolean resumeEnabled = false;
 
     public VideoInfo(VideoInfo defaultVideoInfo) {
         title = defaultVideoInfo.title;
         portraitWhenFullScreen = defaultVideoInfo.portraitWhenFullScreen;
         aspectRatio = defaultVideoInfo.aspectRatio;
-        for (Option op : defaultVideoInfo.options) {
-            try {
-                options.add(op.clone());
-            } catch (CloneNotSupportedException e) {
-                e.printStackTrace();
-            }
-        }
+        optionProfile = defaultVideoInfo.optionProfile;
+        bufferConfig = defaultVideoInfo.bufferConfig == null ? null : new BufferConfig(defaultVideoInfo.bufferConfig);
+        liveLatency = defaultVideoInfo.liveLatency == null ? null : new LiveLatencyConfig(defaultVideoInfo.liveLatency);
         showTopBar = defaultVideoInfo.showTopBar;
         retryInterval = defaultVideoInfo.retryInterval;
+        retryPolicy = defaultVideoInfo.retryPolicy == null ? null : new RetryPolicy(defaultVideoInfo.retryPolicy);
         bgColor = defaultVideoInfo.bgColor;
         playerImpl = defaultVideoInfo.playerImpl;
+        displayBackend = defaultVideoInfo.displayBackend;
         fullScreenAnimation = defaultVideoInfo.fullScreenAnimation;
+        cacheEnabled = defaultVideoInfo.cacheEnabled;
+        parallelFetch = defaultVideoInfo.parallelFetch;
+        lookAheadWindow = defaultVideoInfo.lookAheadWindow;
+        resumeEnabled = defaultVideoInfo.resumeEnabled;
     }
 
     public boolean isFullScreenAnimation() {
@@ -64,6 +78,63 @@ public class VideoInfo implements Parcelable {
         return this;
     }
 
+    public boolean isCacheEnabled() {
+        return cacheEnabled;
+    }
+
+    /**
+     * play http(s) video through the local caching proxy,replay or seek back costs no network
+     * @param cacheEnabled true to cache,default is false
+     * @return VideoInfo
+     */
+    public VideoInfo setCacheEnabled(boolean cacheEnabled) {
+        this.cacheEnabled = cacheEnabled;
+        return this;
+    }
+
+    public int getParallelFetch() {
+        return parallelFetch;
+    }
+
+    /**
+     * fetch the look-ahead window of http(s) video by several range requests at the same time,
+     * faster startup on high latency links. data goes through the caching proxy
+     * @param connections concurrent connections,<=1 will disable,default is 1
+     * @return VideoInfo
+     */
+    public VideoInfo setParallelFetch(int connections) {
+        this.parallelFetch = connections;
+        return this;
+    }
+
+    public long getLookAheadWindow() {
+        return lookAheadWindow;
+    }
+
+    /**
+     * bytes fetched by parallel connections from the start or seek position,default is 2MB
+     * @param lookAheadWindow bytes
+     * @return VideoInfo
+     */
+    public VideoInfo setLookAheadWindow(long lookAheadWindow) {
+        this.lookAheadWindow = lookAheadWindow;
+        return this;
+    }
+
+    public boolean isResumeEnabled() {
+        return resumeEnabled;
+    }
+
+    /**
+     * remember the position while playing and seek to it when prepared next time,even after app restarted
+     * @param resumeEnabled true to resume,default is false
+     * @return VideoInfo
+     */
+    public VideoInfo setResumeEnabled(boolean resumeEnabled) {
+        this.resumeEnabled = resumeEnabled;
+        return this;
+    }
+
     public String getPlayerImpl() {
         return playerImpl;
     }
@@ -73,6 +144,22 @@ public class VideoInfo implements Parcelable {
         return this;
     }
 
+    public String getDisplayBackend() {
+        return displayBackend;
+    }
+
+    /**
+     * the view the video is rendered to,SurfaceView is composited by the system without an extra GPU copy,
+     * cheaper for fullscreen playback. TextureView is used anyway when the display is animated or moved
+     * (fullscreen animation,in ListView/RecyclerView)
+     * @param displayBackend DISPLAY_BACKEND_TEXTURE(default) or DISPLAY_BACKEND_SURFACE
+     * @return VideoInfo
+     */
+    public VideoInfo setDisplayBackend(String displayBackend) {
+        this.displayBackend = displayBackend;
+        return this;
+    }
+
     public int getBgColor() {
         return bgColor;
     }
@@ -97,27 +184,103 @@ public class VideoInfo implements Parcelable {
      * retry to play again interval (in second)
      * @param retryInterval interval in second <=0 will disable retry
      * @return VideoInfo
+     * @see #setRetryPolicy(RetryPolicy)
      */
     public VideoInfo setRetryInterval(int retryInterval) {
         this.retryInterval = retryInterval;
         return this;
     }
 
+    /**
+     * @return the policy set,or a fixed interval one if only retry interval is set,null if no retry
+     */
+    public RetryPolicy getRetryPolicy() {
+        if (retryPolicy == null && retryInterval > 0) {
+            return RetryPolicy.fixed(retryInterval * 1000L);
+        }
+        return retryPolicy;
+    }
+
+    /**
+     * retry with backoff and jitter,the playback goes on from where the error happened.
+     * it takes precedence over {@link #setRetryInterval(int)}
+     * @param retryPolicy policy,null to use retry interval
+     * @return VideoInfo
+     */
+    public VideoInfo setRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+        return this;
+    }
+
 
+    /**
+     * @return a copy of the options,changing it takes no effect,use {@link #addOption(Option)} instead
+     */
     public HashSet<Option> getOptions() {
-        return options;
+        return optionProfile.toOptions();
     }
 
     /**
-     * add player init option
+     * add player init option,it replaces the option with the same category and name
      * @param option option
      * @return VideoInfo
      */
     public VideoInfo addOption(Option option) {
-        this.options.add(option);
+        this.optionProfile = optionProfile.with(option);
+        return this;
+    }
+
+    public OptionProfile getOptionProfile() {
+        return optionProfile;
+    }
+
+    /**
+     * replace all player init options,a profile can be shared by many VideoInfos
+     * @param optionProfile profile
+     * @return VideoInfo
+     */
+    public VideoInfo setOptionProfile(OptionProfile optionProfile) {
+        this.optionProfile = optionProfile == null ? OptionProfile.EMPTY : optionProfile;
         return this;
     }
 
+    public BufferConfig getBufferConfig() {
+        return bufferConfig;
+    }
+
+    /**
+     * buffering and latency of ijkplayer,eg: setBufferConfig(BufferConfig.lowLatencyLive()),
+     * options added by {@link #addOption(Option)} take precedence over it
+     * @param bufferConfig config,null to keep the ijkplayer defaults
+     * @return VideoInfo
+     */
+    public VideoInfo setBufferConfig(BufferConfig bufferConfig) {
+        this.bufferConfig = bufferConfig;
+        return this;
+    }
+
+    public LiveLatencyConfig getLiveLatency() {
+        return liveLatency;
+    }
+
+    /**
+     * hold a live stream at a target latency by playback speed,only for ijkplayer
+     * @param liveLatency config,null to disable
+     * @return VideoInfo
+     * @see LiveLatencyController
+     */
+    public VideoInfo setLiveLatency(LiveLatencyConfig liveLatency) {
+        this.liveLatency = liveLatency;
+        return this;
+    }
+
+    /**
+     * @return the options set to the player,the buffer config with the added options on top
+     */
+    OptionProfile playerOptions() {
+        return bufferConfig == null ? optionProfile : bufferConfig.toOptionProfile().with(optionProfile);
+    }
+
     public boolean isShowTopBar() {
         return showTopBar;
     }
@@ -184,12 +347,20 @@ public class VideoInfo implements Parcelable {
         aspectRatio = in.readInt();
         lastFingerprint = in.readString();
         lastUri = in.readParcelable(Uri.class.getClassLoader());
-        options = (HashSet<Option>) in.readSerializable();
+        optionProfile = OptionCodec.readProfileFromParcel(in);
+        bufferConfig = in.readParcelable(BufferConfig.class.getClassLoader());
+        liveLatency = in.readParcelable(LiveLatencyConfig.class.getClassLoader());
         showTopBar = in.readByte() != 0;
         retryInterval = in.readInt();
+        retryPolicy = in.readParcelable(RetryPolicy.class.getClassLoader());
         bgColor = in.readInt();
         playerImpl = in.readString();
+        displayBackend = in.readString();
         fullScreenAnimation = in.readByte() != 0;
+        cacheEnabled = in.readByte() != 0;
+        parallelFetch = in.readInt();
+        lookAheadWindow = in.readLong();
+        resumeEnabled = in.readByte() != 0;
     }
 
     public static final Creator<VideoInfo> CREATOR = new Creator<VideoInfo>() {
@@ -207,8 +378,8 @@ public class VideoInfo implements Parcelable {
 
     public VideoInfo setFingerprint(Object fingerprint) {
         if (lastFingerprint!=null && !lastFingerprint.equals(fingerprint)) {
-            //different from last setFingerprint, release last
-            PlayerManager.getInstance().releaseByFingerprint(lastFingerprint);
+            //different from last setFingerprint, park last,it may be bound again
+            PlayerManager.getInstance().parkByFingerprint(lastFingerprint);
         }
         this.fingerprint = ""+fingerprint;
         lastFingerprint = this.fingerprint;
@@ -234,8 +405,8 @@ public class VideoInfo implements Parcelable {
      */
     public VideoInfo setUri(Uri uri) {
         if (lastUri!=null && !lastUri.equals(uri)) {
-            //different from last uri, release last
-            PlayerManager.getInstance().releaseByFingerprint(lastFingerprint);
+            //different from last uri, park last,it may be bound again
+            PlayerManager.getInstance().parkByFingerprint(lastFingerprint);
         }
         this.uri = uri;
         this.lastUri = this.uri;
@@ -258,12 +429,20 @@ public class VideoInfo implements Parcelable {
         dest.writeInt(aspectRatio);
         dest.writeString(lastFingerprint);
         dest.writeParcelable(lastUri, flags);
-        dest.writeSerializable(options);
+        OptionCodec.writeToParcel(optionProfile, dest);
+        dest.writeParcelable(bufferConfig, flags);
+        dest.writeParcelable(liveLatency, flags);
         dest.writeByte((byte) (showTopBar ? 1 : 0));
         dest.writeInt(retryInterval);
+        dest.writeParcelable(retryPolicy, flags);
         dest.writeInt(bgColor);
         dest.writeString(playerImpl);
+        dest.writeString(displayBackend);
         dest.writeByte((byte) (fullScreenAnimation ? 1 : 0));
+        dest.writeByte((byte) (cacheEnabled ? 1 : 0));
+        dest.writeInt(parallelFetch);
+        dest.writeLong(lookAheadWindow);
+        dest.writeByte((byte) (resumeEnabled ? 1 : 0));
     }
 
     public static VideoInfo createFromDefault(){
@@ -27,6 +27,10 @@ public class VideoView extends FrameLayout{
     private MediaController mediaController;
     private PlayerListener playerListener;
     private ViewGroup container;
+    //found when attached to window,the parents don't change until detached
+    private AutoPlayCoordinator autoPlayCoordinator;
+    private Boolean inListView;
+    private boolean attached;
 
     public PlayerListener getPlayerListener() {
         return playerListener;
@@ -34,6 +38,7 @@ public class VideoView extends FrameLayout{
 
     public VideoView setPlayerListener(PlayerListener playerListener) {
         this.playerListener = playerListener;
+        PlayerManager.getInstance().notifyBindingChanged();
         return this;
     }
 
@@ -43,9 +48,11 @@ public class VideoView extends FrameLayout{
 
     public VideoView videoInfo(VideoInfo videoInfo) {
         if (this.videoInfo.getUri() != null && !this.videoInfo.getUri().equals(videoInfo.getUri())) {
-            PlayerManager.getInstance().releaseByFingerprint(this.videoInfo.getFingerprint());
+            PlayerManager.getInstance().parkByFingerprint(this.videoInfo.getFingerprint());
         }
+        String oldFingerprint = this.videoInfo.getFingerprint();
         this.videoInfo = videoInfo;
+        unbindIfChanged(oldFingerprint);
         return this;
     }
 
@@ -87,14 +94,26 @@ public class VideoView extends FrameLayout{
     private void initMediaController() {
         mediaController = new DefaultMediaController(getContext());
         mediaController.bind(this);
+        PlayerManager.getInstance().notifyBindingChanged();
     }
 
 
     public VideoView setFingerprint(Object fingerprint) {
+        String oldFingerprint = videoInfo.getFingerprint();
         videoInfo.setFingerprint(fingerprint);
+        unbindIfChanged(oldFingerprint);
         return this;
     }
 
+    /**
+     * a recycled view(eg. in list) shows another video,players of the old fingerprint must not find it any more
+     */
+    private void unbindIfChanged(String oldFingerprint) {
+        if (oldFingerprint != null && !oldFingerprint.equals(videoInfo.getFingerprint())) {
+            PlayerManager.getInstance().unbindVideoView(oldFingerprint, this);
+        }
+    }
+
     public VideoView setVideoPath(String uri) {
         videoInfo.setUri(Uri.parse(uri));
         return this;
@@ -124,6 +143,17 @@ public class VideoView extends FrameLayout{
      * @return
      */
     public boolean inListView() {
+        Boolean inListView = this.inListView;
+        if (inListView == null) {
+            inListView = findListView();
+            if (attached) {
+                this.inListView = inListView;
+            }
+        }
+        return inListView;
+    }
+
+    private boolean findListView() {
         for (ViewParent vp = getParent(); vp != null; vp = vp.getParent()) {
             if (vp instanceof AbsListView || vp instanceof ScrollingView) {
                 return true;
@@ -132,6 +162,28 @@ public class VideoView extends FrameLayout{
         return false;
     }
 
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        attached = true;
+        inListView = null;
+        autoPlayCoordinator = AutoPlayCoordinator.find(this);
+        if (autoPlayCoordinator != null) {
+            autoPlayCoordinator.register(this);
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        attached = false;
+        inListView = null;
+        if (autoPlayCoordinator != null) {
+            autoPlayCoordinator.unregister(this);
+            autoPlayCoordinator = null;
+        }
+    }
+
     public ViewGroup getContainer() {
         return container;
     }
@@ -0,0 +1,103 @@
+package tcking.github.com.giraffeplayer2;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * views bound to players (keyed by fingerprint),read by the playback threads and written on main thread.
+ * a view is weakly held and its entry is removed once it is collected,the key is held strongly.
+ * reads take no lock,writes lock one of STRIPES locks by the key
+ */
+
+public class ViewRegistry<V> {
+    private static final int STRIPES = 16;
+
+    private final ConcurrentHashMap<String, ViewRef<V>> views = new ConcurrentHashMap<>();
+    private final ReferenceQueue<V> queue = new ReferenceQueue<>();
+    private final Object[] locks = new Object[STRIPES];
+
+    private static class ViewRef<V> extends WeakReference<V> {
+        private final String key;
+
+        ViewRef(String key, V view, ReferenceQueue<V> queue) {
+            super(view, queue);
+            this.key = key;
+        }
+    }
+
+    public ViewRegistry() {
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    private Object lockOf(String key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return locks[h & (STRIPES - 1)];
+    }
+
+    /**
+     * @return the view bound to the key,null if not bound or collected
+     */
+    public V get(String key) {
+        if (key == null) {
+            return null;
+        }
+        ViewRef<V> ref = views.get(key);
+        return ref == null ? null : ref.get();
+    }
+
+    /**
+     * bind the view to the key,replace the view bound before
+     */
+    public void bind(String key, V view) {
+        expunge();
+        synchronized (lockOf(key)) {
+            ViewRef<V> ref = views.get(key);
+            if (ref == null || ref.get() != view) {
+                views.put(key, new ViewRef<>(key, view, queue));
+            }
+        }
+    }
+
+    /**
+     * unbind the key only if it is bound to the view,a view bound later to the same key is kept
+     * @return true if unbound
+     */
+    public boolean unbind(String key, V view) {
+        expunge();
+        synchronized (lockOf(key)) {
+            ViewRef<V> ref = views.get(key);
+            if (ref != null && ref.get() == view) {
+                views.remove(key);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return number of keys bound to a view which is not collected yet
+     */
+    public int size() {
+        expunge();
+        return views.size();
+    }
+
+    public void clear() {
+        views.clear();
+    }
+
+    /**
+     * remove the entries of collected views,the entry is kept if the key has been bound again
+     */
+    @SuppressWarnings("unchecked")
+    private void expunge() {
+        ViewRef<V> ref;
+        while ((ref = (ViewRef<V>) queue.poll()) != null) {
+            views.remove(ref.key, ref);
+        }
+    }
+}
@@ -0,0 +1,298 @@
+package tcking.github.com.giraffeplayer2.cache;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+
+/**
+ * byte ranges of a remote file, stored at their own offsets in a sparse local file.
+ * the ranges,length and mime type are kept in a small index file next to it
+ */
+
+class CacheEntry {
+    private static final int INDEX_MAGIC = 0x47504331;//GPC1
+
+    final String key;
+    private final File dataFile;
+    private final File indexFile;
+    //sorted and not overlapped,[start,end)
+    private final ArrayList<long[]> ranges = new ArrayList<>();
+    private long length = -1;
+    private String mime;
+    private RandomAccessFile file;
+    private FileChannel channel;
+    private boolean dirty;
+    //faststart view of a mp4 whose moov is at the end,not persisted
+    final Object layoutLock = new Object();
+    private boolean layoutResolved;
+    private Mp4Layout layout;
+    //guarded by DiskRangeCache
+    int refCount;
+    private boolean deleted;
+
+    CacheEntry(File dir, String key) {
+        this.key = key;
+        this.dataFile = new File(dir, key + ".data");
+        this.indexFile = new File(dir, key + ".idx");
+    }
+
+    synchronized long getLength() {
+        return length;
+    }
+
+    synchronized String getMime() {
+        return mime;
+    }
+
+    synchronized void setInfo(long length, String mime) {
+        if (this.length != length) {
+            //the remote file changed,cached bytes are useless
+            ranges.clear();
+            layoutResolved = false;
+            layout = null;
+        }
+        this.length = length;
+        this.mime = mime;
+        dirty = true;
+    }
+
+    synchronized boolean isLayoutResolved() {
+        return layoutResolved;
+    }
+
+    synchronized Mp4Layout getLayout() {
+        return layout;
+    }
+
+    /**
+     * @param layout faststart view or null to serve the file as it is
+     */
+    synchronized void setLayout(Mp4Layout layout) {
+        this.layout = layout;
+        this.layoutResolved = true;
+    }
+
+    synchronized long getCachedBytes() {
+        long bytes = 0;
+        for (long[] range : ranges) {
+            bytes += range[1] - range[0];
+        }
+        return bytes;
+    }
+
+    /**
+     * @return end(exclusive) of the cached range which contains the position,-1 if not cached
+     */
+    synchronized long cachedEnd(long position) {
+        for (long[] range : ranges) {
+            if (range[0] > position) {
+                break;
+            }
+            if (position < range[1]) {
+                return range[1];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return start of the first cached range after the position,Long.MAX_VALUE if none
+     */
+    synchronized long nextCachedStart(long position) {
+        for (long[] range : ranges) {
+            if (range[0] > position) {
+                return range[0];
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    synchronized boolean isCompleted() {
+        return length > 0 && ranges.size() == 1 && ranges.get(0)[0] == 0 && ranges.get(0)[1] >= length;
+    }
+
+    /**
+     * mark [start,end) as cached,merge with the adjacent ranges
+     */
+    synchronized void addRange(long start, long end) {
+        if (end <= start) {
+            return;
+        }
+        int i = 0;
+        while (i < ranges.size() && ranges.get(i)[1] < start) {
+            i++;
+        }
+        long newStart = start;
+        long newEnd = end;
+        while (i < ranges.size() && ranges.get(i)[0] <= end) {
+            long[] range = ranges.remove(i);
+            newStart = Math.min(newStart, range[0]);
+            newEnd = Math.max(newEnd, range[1]);
+        }
+        ranges.add(i, new long[]{newStart, newEnd});
+        dirty = true;
+        notifyAll();
+    }
+
+    /**
+     * wait until the position is cached,{@link #signal()} or timeout
+     * @return end(exclusive) of the cached range which contains the position,-1 if not cached
+     */
+    synchronized long awaitCached(long position, long timeout) throws InterruptedException {
+        long cachedEnd = cachedEnd(position);
+        if (cachedEnd < 0 && timeout > 0) {
+            wait(timeout);
+            cachedEnd = cachedEnd(position);
+        }
+        return cachedEnd;
+    }
+
+    /**
+     * wake up the threads waiting in {@link #awaitCached(long, long)}
+     */
+    synchronized void signal() {
+        notifyAll();
+    }
+
+    /**
+     * @return channel of the data file,opened on first use
+     */
+    synchronized FileChannel channel() throws IOException {
+        if (channel == null) {
+            file = new RandomAccessFile(dataFile, "rw");
+            channel = file.getChannel();
+        }
+        return channel;
+    }
+
+    /**
+     * close the data file and write the index if changed
+     */
+    synchronized void close() {
+        if (channel != null) {
+            try {
+                file.close();
+            } catch (IOException e) {
+                //ignore
+            }
+            channel = null;
+            file = null;
+        }
+        if (dirty) {
+            try {
+                writeIndex();
+                dirty = false;
+            } catch (IOException e) {
+                indexFile.delete();
+            }
+        }
+    }
+
+    synchronized void delete() {
+        dirty = false;
+        close();
+        ranges.clear();
+        dataFile.delete();
+        indexFile.delete();
+    }
+
+    /**
+     * the entry is evicted and its files are deleted,wake up the acquires of the same url
+     */
+    synchronized void signalDeleted() {
+        deleted = true;
+        notifyAll();
+    }
+
+    /**
+     * wait until the evicted entry's files are deleted
+     */
+    synchronized void awaitDeleted() {
+        boolean interrupted = false;
+        while (!deleted) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                //deleting is short,keep the interrupt for the caller
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    long lastModified() {
+        return indexFile.lastModified();
+    }
+
+    /**
+     * read the index written before
+     * @return false if no valid index
+     */
+    synchronized boolean load() {
+        if (!indexFile.exists() || !dataFile.exists()) {
+            return false;
+        }
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new FileInputStream(indexFile));
+            if (in.readInt() != INDEX_MAGIC) {
+                return false;
+            }
+            length = in.readLong();
+            mime = in.readBoolean() ? in.readUTF() : null;
+            int count = in.readInt();
+            long fileLength = dataFile.length();
+            for (int i = 0; i < count; i++) {
+                long start = in.readLong();
+                long end = Math.min(in.readLong(), fileLength);
+                if (end > start) {
+                    ranges.add(new long[]{start, end});
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            ranges.clear();
+            return false;
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    private void writeIndex() throws IOException {
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new FileOutputStream(indexFile));
+            out.writeInt(INDEX_MAGIC);
+            out.writeLong(length);
+            out.writeBoolean(mime != null);
+            if (mime != null) {
+                out.writeUTF(mime);
+            }
+            out.writeInt(ranges.size());
+            for (long[] range : ranges) {
+                out.writeLong(range[0]);
+                out.writeLong(range[1]);
+            }
+        } finally {
+            closeQuietly(out);
+        }
+    }
+
+    private static void closeQuietly(java.io.Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                //ignore
+            }
+        }
+    }
+}
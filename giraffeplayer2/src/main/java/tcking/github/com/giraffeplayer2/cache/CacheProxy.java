@@ -0,0 +1,205 @@
+package tcking.github.com.giraffeplayer2.cache;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLEncoder;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import tcking.github.com.giraffeplayer2.GiraffePlayer;
+
+/**
+ * a localhost http proxy which caches the bytes of progressive videos on disk,
+ * replay or seek back to a cached range costs no network.
+ * usage: mediaPlayer.setDataSource(cacheProxy.getProxyUrl(url))
+ */
+
+public class CacheProxy {
+    private static final String TAG = "GiraffeCacheProxy";
+    public static final long DEFAULT_MAX_SIZE = 256 * 1024 * 1024;
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 4;
+
+    private final DiskRangeCache cache;
+    private final ExecutorService executor;
+    private final HostLimiter hostLimiter = new HostLimiter(DEFAULT_MAX_CONNECTIONS_PER_HOST);
+    private final ThroughputMeter throughputMeter = new ThroughputMeter();
+    private ServerSocketChannel serverChannel;
+    private Thread acceptThread;
+    private int port;
+
+    /**
+     * @param dir directory of cached files
+     * @param maxSize max bytes on disk
+     */
+    public CacheProxy(File dir, long maxSize) {
+        this.cache = new DiskRangeCache(dir, maxSize);
+        this.executor = Executors.newCachedThreadPool(new ThreadFactory() {
+            private final AtomicInteger index = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "GiraffeCacheProxy-" + index.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * @param url http(s) url of the video
+     * @return url of the local proxy which serves the video
+     * @throws IOException if the proxy can't start
+     */
+    public String getProxyUrl(String url) throws IOException {
+        return getProxyUrl(url, 1, 0);
+    }
+
+    /**
+     * @param url http(s) url of the video
+     * @param connections concurrent range requests for the look-ahead window of every request,<=1 to disable
+     * @param lookAheadWindow bytes fetched by parallel connections from the requested position
+     * @return url of the local proxy which serves the video
+     * @throws IOException if the proxy can't start
+     */
+    public String getProxyUrl(String url, int connections, long lookAheadWindow) throws IOException {
+        int port = start();
+        try {
+            String proxyUrl = "http://127.0.0.1:" + port + "/" + URLEncoder.encode(url, "UTF-8");
+            if (connections > 1 && lookAheadWindow > 0) {
+                proxyUrl += "?connections=" + connections + "&window=" + lookAheadWindow;
+            }
+            return proxyUrl;
+        } catch (UnsupportedEncodingException e) {
+            throw new IOException(e);
+        }
+    }
+
+    public int getMaxConnectionsPerHost() {
+        return hostLimiter.getMaxPerHost();
+    }
+
+    /**
+     * cap the parallel range requests to one host,default is {@link #DEFAULT_MAX_CONNECTIONS_PER_HOST}
+     * @param maxConnectionsPerHost max connections
+     * @return CacheProxy
+     */
+    public CacheProxy setMaxConnectionsPerHost(int maxConnectionsPerHost) {
+        hostLimiter.setMaxPerHost(maxConnectionsPerHost);
+        return this;
+    }
+
+    /**
+     * @return bytes downloaded from origin servers and the recent rate
+     */
+    public ThroughputMeter getThroughputMeter() {
+        return throughputMeter;
+    }
+
+    DiskRangeCache cache() {
+        return cache;
+    }
+
+    ExecutorService executor() {
+        return executor;
+    }
+
+    HostLimiter hostLimiter() {
+        return hostLimiter;
+    }
+
+    public long getMaxSize() {
+        return cache.getMaxSize();
+    }
+
+    /**
+     * @param maxSize max bytes on disk,least recently used videos are deleted when over
+     * @return CacheProxy
+     */
+    public CacheProxy setMaxSize(long maxSize) {
+        cache.setMaxSize(maxSize);
+        return this;
+    }
+
+    /**
+     * @return bytes cached on disk
+     */
+    public long getCacheSize() {
+        return cache.size();
+    }
+
+    /**
+     * delete all cached videos which are not playing
+     */
+    public void clear() {
+        cache.clear();
+    }
+
+    /**
+     * stop accepting requests,cached files are kept
+     */
+    public synchronized void shutdown() {
+        if (serverChannel != null) {
+            try {
+                serverChannel.close();
+            } catch (IOException e) {
+                //ignore
+            }
+            serverChannel = null;
+            acceptThread = null;
+        }
+    }
+
+    private synchronized int start() throws IOException {
+        if (serverChannel != null) {
+            return port;
+        }
+        final ServerSocketChannel channel = ServerSocketChannel.open();
+        channel.socket().bind(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 0));
+        serverChannel = channel;
+        port = channel.socket().getLocalPort();
+        acceptThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                accept(channel);
+            }
+        }, "GiraffeCacheProxy-accept");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+        log("started on port:" + port);
+        return port;
+    }
+
+    private void accept(ServerSocketChannel channel) {
+        while (channel.isOpen()) {
+            try {
+                SocketChannel client = channel.accept();
+                executor.execute(new ProxyConnection(this, client));
+            } catch (IOException e) {
+                log("accept stopped:" + e.getMessage());
+                break;
+            }
+        }
+        synchronized (this) {
+            if (serverChannel == channel) {
+                //start again on next request
+                serverChannel = null;
+                acceptThread = null;
+            }
+        }
+    }
+
+    private void log(String msg) {
+        if (GiraffePlayer.debug) {
+            Log.d(TAG, msg);
+        }
+    }
+}
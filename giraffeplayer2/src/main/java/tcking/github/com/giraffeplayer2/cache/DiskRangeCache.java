@@ -0,0 +1,190 @@
+package tcking.github.com.giraffeplayer2.cache;
+
+import java.io.File;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * size bounded LRU of cache entries in a directory,entries in use are never evicted
+ */
+
+class DiskRangeCache {
+    private final File dir;
+    private final LinkedHashMap<String, CacheEntry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    //evicted entries whose files are being deleted out of the lock
+    private final HashMap<String, CacheEntry> deleting = new HashMap<>();
+    private long maxSize;
+
+    DiskRangeCache(File dir, long maxSize) {
+        this.dir = dir;
+        this.maxSize = maxSize;
+        load();
+    }
+
+    synchronized long getMaxSize() {
+        return maxSize;
+    }
+
+    void setMaxSize(long maxSize) {
+        synchronized (this) {
+            this.maxSize = maxSize;
+        }
+        trim();
+    }
+
+    /**
+     * @return bytes cached on disk
+     */
+    synchronized long size() {
+        long size = 0;
+        for (CacheEntry entry : entries.values()) {
+            size += entry.getCachedBytes();
+        }
+        return size;
+    }
+
+    /**
+     * get or create the entry of the url,must call {@link #release(CacheEntry)} after used.
+     * waits if the files of the url are being deleted,acquires of other urls don't
+     */
+    CacheEntry acquire(String url) {
+        String key = keyOf(url);
+        while (true) {
+            CacheEntry evicted;
+            synchronized (this) {
+                evicted = deleting.get(key);
+                if (evicted == null) {
+                    CacheEntry entry = entries.get(key);
+                    if (entry == null) {
+                        dir.mkdirs();
+                        entry = new CacheEntry(dir, key);
+                        entries.put(key, entry);
+                    }
+                    entry.refCount++;
+                    return entry;
+                }
+            }
+            evicted.awaitDeleted();
+        }
+    }
+
+    void release(CacheEntry entry) {
+        synchronized (this) {
+            entry.refCount--;
+            if (entry.refCount <= 0) {
+                //under the lock,an acquire() can't get the channel being closed
+                entry.close();
+            }
+        }
+        trim();
+    }
+
+    /**
+     * evict the least recently used entries until the size is under the max size
+     */
+    void trim() {
+        List<CacheEntry> evicted = new ArrayList<>();
+        synchronized (this) {
+            long size = size();
+            Iterator<CacheEntry> iterator = entries.values().iterator();
+            while (size > maxSize && iterator.hasNext()) {
+                CacheEntry entry = iterator.next();
+                if (entry.refCount > 0) {
+                    continue;
+                }
+                size -= entry.getCachedBytes();
+                iterator.remove();
+                deleting.put(entry.key, entry);
+                evicted.add(entry);
+            }
+        }
+        deleteAll(evicted);
+    }
+
+    /**
+     * delete all entries not in use
+     */
+    void clear() {
+        List<CacheEntry> evicted = new ArrayList<>();
+        synchronized (this) {
+            Iterator<CacheEntry> iterator = entries.values().iterator();
+            while (iterator.hasNext()) {
+                CacheEntry entry = iterator.next();
+                if (entry.refCount <= 0) {
+                    iterator.remove();
+                    deleting.put(entry.key, entry);
+                    evicted.add(entry);
+                }
+            }
+        }
+        deleteAll(evicted);
+    }
+
+    /**
+     * delete the files of evicted entries out of the lock,
+     * an acquire() of the same url waits for it and never gets the files deleted under it
+     */
+    private void deleteAll(List<CacheEntry> evicted) {
+        for (CacheEntry entry : evicted) {
+            entry.delete();
+            synchronized (this) {
+                deleting.remove(entry.key);
+            }
+            entry.signalDeleted();
+        }
+    }
+
+    private void load() {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        List<CacheEntry> loaded = new ArrayList<>();
+        for (File file : files) {
+            String name = file.getName();
+            if (name.endsWith(".idx")) {
+                CacheEntry entry = new CacheEntry(dir, name.substring(0, name.length() - 4));
+                if (entry.load()) {
+                    loaded.add(entry);
+                } else {
+                    entry.delete();
+                }
+            }
+        }
+        //least recently used first
+        Collections.sort(loaded, new Comparator<CacheEntry>() {
+            @Override
+            public int compare(CacheEntry o1, CacheEntry o2) {
+                long l1 = o1.lastModified();
+                long l2 = o2.lastModified();
+                return l1 < l2 ? -1 : (l1 == l2 ? 0 : 1);
+            }
+        });
+        synchronized (this) {
+            for (CacheEntry entry : loaded) {
+                entries.put(entry.key, entry);
+            }
+        }
+        trim();
+    }
+
+    static String keyOf(String url) {
+        try {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(url.getBytes("UTF-8"));
+            StringBuilder sb = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException | java.io.UnsupportedEncodingException e) {
+            return String.valueOf(url.hashCode() & 0xffffffffL);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package tcking.github.com.giraffeplayer2.cache;
+
+import java.util.HashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * cap the parallel connections to one host
+ */
+
+class HostLimiter {
+    private final HashMap<String, HostSemaphore> semaphores = new HashMap<>();
+    private volatile int maxPerHost;
+
+    HostLimiter(int maxPerHost) {
+        this.maxPerHost = maxPerHost;
+    }
+
+    int getMaxPerHost() {
+        return maxPerHost;
+    }
+
+    /**
+     * also resize the hosts which have connections,
+     * a host over the new max gets no more connection until enough of its connections are released
+     */
+    synchronized void setMaxPerHost(int maxPerHost) {
+        int delta = Math.max(1, maxPerHost) - Math.max(1, this.maxPerHost);
+        this.maxPerHost = maxPerHost;
+        for (HostSemaphore semaphore : semaphores.values()) {
+            semaphore.resize(delta);
+        }
+    }
+
+    private synchronized Semaphore semaphore(String host) {
+        HostSemaphore semaphore = semaphores.get(host);
+        if (semaphore == null) {
+            semaphore = new HostSemaphore(Math.max(1, maxPerHost));
+            semaphores.put(host, semaphore);
+        }
+        return semaphore;
+    }
+
+    /**
+     * @return a permit token to release or null if none available
+     */
+    Semaphore tryAcquire(String host) {
+        Semaphore semaphore = semaphore(host);
+        return semaphore.tryAcquire() ? semaphore : null;
+    }
+
+    Semaphore tryAcquire(String host, long timeout) {
+        Semaphore semaphore = semaphore(host);
+        try {
+            return semaphore.tryAcquire(timeout, TimeUnit.MILLISECONDS) ? semaphore : null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private static class HostSemaphore extends Semaphore {
+        HostSemaphore(int permits) {
+            super(permits);
+        }
+
+        /**
+         * the available permits may go negative,the permits held are still released later
+         */
+        void resize(int delta) {
+            if (delta > 0) {
+                release(delta);
+            } else if (delta < 0) {
+                reducePermits(-delta);
+            }
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package tcking.github.com.giraffeplayer2.cache;
+
+import java.io.IOException;
+
+/**
+ * walk the top level boxes of a mp4 to find a moov behind mdat,
+ * read only box headers and the moov itself
+ */
+
+class Mp4BoxScanner {
+    static final int MAX_MOOV_SIZE = 16 * 1024 * 1024;
+
+    interface Source {
+        /**
+         * read exactly length bytes at offset of the original file
+         */
+        void read(long offset, byte[] buffer, int length) throws IOException;
+    }
+
+    /**
+     * @param length length of the file
+     * @return layout to serve as faststart,null if not a mp4 or already faststart
+     */
+    static Mp4Layout scan(Source source, long length) throws IOException {
+        byte[] header = new byte[16];
+        long offset = 0;
+        long mdatStart = -1;
+        while (offset + 8 <= length) {
+            source.read(offset, header, 8);
+            long size = readUInt32(header, 0);
+            String type = typeOf(header, 4);
+            if (offset == 0 && !"ftyp".equals(type)) {
+                return null;
+            }
+            if (size == 1) {
+                //64 bit size
+                if (offset + 16 > length) {
+                    return null;
+                }
+                source.read(offset + 8, header, 8);
+                size = readInt64(header, 0);
+            } else if (size == 0) {
+                size = length - offset;
+            }
+            if (size < 8 || offset + size > length) {
+                return null;
+            }
+            if ("mdat".equals(type) && mdatStart < 0) {
+                mdatStart = offset;
+            } else if ("moov".equals(type)) {
+                if (mdatStart < 0 || size > MAX_MOOV_SIZE) {
+                    //faststart already or too large to keep in memory
+                    return null;
+                }
+                byte[] moov = new byte[(int) size];
+                source.read(offset, moov, moov.length);
+                if (!patchChunkOffsets(moov, 0, moov.length, mdatStart, offset, moov.length)) {
+                    return null;
+                }
+                return new Mp4Layout(mdatStart, offset, moov);
+            }
+            offset += size;
+        }
+        return null;
+    }
+
+    //boxes which contain stco/co64
+    private static boolean isContainer(String type) {
+        return "moov".equals(type) || "trak".equals(type) || "mdia".equals(type)
+                || "minf".equals(type) || "stbl".equals(type);
+    }
+
+    /**
+     * add delta to the chunk offsets which point into [from,to) of the original file
+     * @return false if the boxes are broken or an offset overflows stco
+     */
+    static boolean patchChunkOffsets(byte[] data, int start, int end, long from, long to, long delta) {
+        int offset = start;
+        while (offset + 8 <= end) {
+            long size = readUInt32(data, offset);
+            String type = typeOf(data, offset + 4);
+            int headerSize = 8;
+            if (size == 1) {
+                size = readInt64(data, offset + 8);
+                headerSize = 16;
+            } else if (size == 0) {
+                size = end - offset;
+            }
+            if (size < headerSize || offset + size > end) {
+                return false;
+            }
+            int boxEnd = (int) (offset + size);
+            if (isContainer(type)) {
+                if (!patchChunkOffsets(data, offset + headerSize, boxEnd, from, to, delta)) {
+                    return false;
+                }
+            } else if ("stco".equals(type) || "co64".equals(type)) {
+                boolean wide = "co64".equals(type);
+                //version(1) flags(3) entry_count(4)
+                int entries = (int) readUInt32(data, offset + headerSize + 4);
+                int entry = offset + headerSize + 8;
+                int entrySize = wide ? 8 : 4;
+                if (entry + (long) entries * entrySize > boxEnd) {
+                    return false;
+                }
+                for (int i = 0; i < entries; i++, entry += entrySize) {
+                    long chunkOffset = wide ? readInt64(data, entry) : readUInt32(data, entry);
+                    if (chunkOffset < from || chunkOffset >= to) {
+                        continue;
+                    }
+                    chunkOffset += delta;
+                    if (wide) {
+                        writeInt64(data, entry, chunkOffset);
+                    } else if (chunkOffset > 0xffffffffL) {
+                        return false;
+                    } else {
+                        writeUInt32(data, entry, chunkOffset);
+                    }
+                }
+            }
+            offset = boxEnd;
+        }
+        return true;
+    }
+
+    private static String typeOf(byte[] data, int offset) {
+        char[] type = new char[4];
+        for (int i = 0; i < 4; i++) {
+            type[i] = (char) (data[offset + i] & 0xff);
+        }
+        return new String(type);
+    }
+
+    static long readUInt32(byte[] data, int offset) {
+        return ((data[offset] & 0xffL) << 24) | ((data[offset + 1] & 0xffL) << 16)
+                | ((data[offset + 2] & 0xffL) << 8) | (data[offset + 3] & 0xffL);
+    }
+
+    static long readInt64(byte[] data, int offset) {
+        return (readUInt32(data, offset) << 32) | readUInt32(data, offset + 4);
+    }
+
+    static void writeUInt32(byte[] data, int offset, long value) {
+        data[offset] = (byte) (value >>> 24);
+        data[offset + 1] = (byte) (value >>> 16);
+        data[offset + 2] = (byte) (value >>> 8);
+        data[offset + 3] = (byte) value;
+    }
+
+    static void writeInt64(byte[] data, int offset, long value) {
+        writeUInt32(data, offset, value >>> 32);
+        writeUInt32(data, offset + 4, value);
+    }
+}
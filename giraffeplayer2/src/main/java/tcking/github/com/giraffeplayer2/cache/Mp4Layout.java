@@ -0,0 +1,55 @@
+package tcking.github.com.giraffeplayer2.cache;
+
+/**
+ * a virtual faststart view of a mp4 whose moov is behind mdat:
+ * <pre>
+ * original: [head][mdat ... ][moov][tail]
+ * virtual:  [head][moov'][mdat ... ][tail]
+ * </pre>
+ * moov' is the moov with chunk offsets shifted by its size, the length and the tail don't change
+ */
+
+class Mp4Layout {
+    //offset of the first mdat,where moov' is inserted
+    final long mdatStart;
+    final long moovStart;
+    final byte[] moov;
+
+    Mp4Layout(long mdatStart, long moovStart, byte[] moov) {
+        this.mdatStart = mdatStart;
+        this.moovStart = moovStart;
+        this.moov = moov;
+    }
+
+    /**
+     * @param position position in the virtual file
+     * @return end(exclusive) of the piece which contains the position
+     */
+    long pieceEnd(long position, long length) {
+        if (position < mdatStart) {
+            return mdatStart;
+        }
+        if (position < mdatStart + moov.length) {
+            return mdatStart + moov.length;
+        }
+        if (position < moovStart + moov.length) {
+            return moovStart + moov.length;
+        }
+        return length;
+    }
+
+    boolean isMoov(long position) {
+        return position >= mdatStart && position < mdatStart + moov.length;
+    }
+
+    /**
+     * @param position position in the virtual file,not in moov'
+     * @return position in the original file
+     */
+    long toOriginal(long position) {
+        if (position >= mdatStart + moov.length && position < moovStart + moov.length) {
+            return position - moov.length;
+        }
+        return position;
+    }
+}
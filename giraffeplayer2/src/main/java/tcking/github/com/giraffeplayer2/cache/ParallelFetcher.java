@@ -0,0 +1,161 @@
+package tcking.github.com.giraffeplayer2.cache;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * download [start,end) of a file by several range requests at the same time,
+ * chunks are written into the cache entry and become readable as soon as they arrive,
+ * the reader reassembles them in order by waiting on {@link CacheEntry#awaitCached(long, long)}
+ */
+
+class ParallelFetcher {
+    private static final int MIN_CHUNK_SIZE = 128 * 1024;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final String url;
+    private final String host;
+    private final CacheEntry entry;
+    private final long start;
+    private final long end;
+    private final long chunkSize;
+    private final int chunkCount;
+    private final int connections;
+    private final HostLimiter hostLimiter;
+    private final ThroughputMeter meter;
+    private final AtomicInteger nextChunk = new AtomicInteger();
+    private final AtomicInteger runningWorkers = new AtomicInteger();
+    private volatile boolean cancelled;
+    private volatile IOException error;
+
+    ParallelFetcher(String url, CacheEntry entry, long start, long end, int connections,
+                    HostLimiter hostLimiter, ThroughputMeter meter) throws IOException {
+        this.url = url;
+        this.host = new URL(url).getHost();
+        this.entry = entry;
+        this.start = start;
+        this.end = end;
+        this.connections = connections;
+        this.hostLimiter = hostLimiter;
+        this.meter = meter;
+        this.chunkSize = chunkSize(end - start, connections);
+        this.chunkCount = (int) ((end - start + chunkSize - 1) / chunkSize);
+    }
+
+    /**
+     * more chunks than connections,so the first bytes arrive early and a slow connection blocks less
+     */
+    static long chunkSize(long length, int connections) {
+        return Math.max(MIN_CHUNK_SIZE, (length + connections * 2 - 1) / (connections * 2));
+    }
+
+    /**
+     * @param first an opened upstream for the first chunk or null
+     */
+    void start(Executor executor, final Upstream first) {
+        int workers = Math.min(connections, chunkCount);
+        for (int i = 0; i < workers; i++) {
+            final int index = i;
+            runningWorkers.incrementAndGet();
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    work(index, index == 0 ? first : null);
+                }
+            });
+        }
+    }
+
+    boolean isFailed() {
+        return error != null;
+    }
+
+    IOException getError() {
+        return error;
+    }
+
+    void cancel() {
+        cancelled = true;
+    }
+
+    private void work(int index, Upstream first) {
+        //the first worker waits for a permit,the others only help when the host has free permits
+        Semaphore permit = index == 0
+                ? hostLimiter.tryAcquire(host, Upstream.CONNECT_TIMEOUT)
+                : hostLimiter.tryAcquire(host);
+        try {
+            if (permit == null) {
+                if (index == 0) {
+                    fail(new IOException("too many connections to " + host));
+                }
+                return;
+            }
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int chunk;
+            while (!cancelled && error == null && (chunk = nextChunk.getAndIncrement()) < chunkCount) {
+                long chunkStart = start + chunk * chunkSize;
+                long chunkEnd = Math.min(end, chunkStart + chunkSize);
+                Upstream upstream;
+                if (first != null && first.position == chunkStart && first.end >= chunkEnd) {
+                    upstream = first;
+                } else {
+                    upstream = Upstream.open(url, chunkStart, chunkEnd - 1);
+                }
+                if (upstream == first) {
+                    first = null;
+                }
+                try {
+                    fetch(upstream, chunkStart, chunkEnd, buffer);
+                } finally {
+                    upstream.close();
+                }
+            }
+        } catch (IOException e) {
+            fail(e);
+        } finally {
+            if (first != null) {
+                first.close();
+            }
+            if (permit != null) {
+                permit.release();
+            }
+            if (runningWorkers.decrementAndGet() == 0 && nextChunk.get() < chunkCount && error == null && !cancelled) {
+                //no worker got a permit to finish the rest
+                fail(new IOException("fetch stopped"));
+            }
+        }
+    }
+
+    private void fetch(Upstream upstream, long chunkStart, long chunkEnd, byte[] buffer) throws IOException {
+        if (upstream.position != chunkStart) {
+            throw new IOException("range not supported by " + host);
+        }
+        FileChannel channel = entry.channel();
+        while (upstream.position < chunkEnd && !cancelled) {
+            int read = upstream.read(buffer, 0, (int) Math.min(buffer.length, chunkEnd - upstream.position));
+            if (read < 0) {
+                throw new IOException("unexpected end of stream at " + upstream.position);
+            }
+            long offset = upstream.position;
+            ByteBuffer data = ByteBuffer.wrap(buffer, 0, read);
+            while (data.hasRemaining()) {
+                channel.write(data, offset + data.position());
+            }
+            upstream.position += read;
+            meter.record(read);
+            entry.addRange(offset, offset + read);
+        }
+    }
+
+    private void fail(IOException e) {
+        if (error == null) {
+            error = e;
+        }
+        entry.signal();
+    }
+}
@@ -0,0 +1,455 @@
+package tcking.github.com.giraffeplayer2.cache;
+
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+
+import tcking.github.com.giraffeplayer2.GiraffePlayer;
+
+/**
+ * serve one request of the player: cached ranges are sent from disk by FileChannel.transferTo,
+ * missing ranges are fetched from the origin, written to the cache and sent at the same time
+ */
+
+class ProxyConnection implements Runnable {
+    private static final String TAG = "GiraffeCacheProxy";
+    private static final int MAX_HEADER_SIZE = 8 * 1024;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    //least bytes to fetch when reading box headers,usually covers the whole moov
+    private static final int MIN_SCAN_FETCH = 64 * 1024;
+
+    private final CacheProxy proxy;
+    private final DiskRangeCache cache;
+    private final SocketChannel client;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+
+    //request
+    private String method;
+    private String url;
+    private long rangeStart = -1;
+    private long rangeEnd = -1;
+    private long suffixLength = -1;
+    private int connections = 1;
+    private long lookAheadWindow;
+    private boolean parallelFetched;
+    //the upstream opened to learn the length,the mp4 scan reads the head from it
+    private Upstream probe;
+
+    ProxyConnection(CacheProxy proxy, SocketChannel client) {
+        this.proxy = proxy;
+        this.cache = proxy.cache();
+        this.client = client;
+    }
+
+    @Override
+    public void run() {
+        try {
+            readRequest(new BufferedInputStream(client.socket().getInputStream()));
+            CacheEntry entry = cache.acquire(url);
+            try {
+                serve(entry);
+            } finally {
+                cache.release(entry);
+            }
+        } catch (IOException e) {
+            //the player closes the connection when seeking,that's normal
+            log("connection closed:" + e.getMessage());
+        } finally {
+            try {
+                client.close();
+            } catch (IOException e) {
+                //ignore
+            }
+        }
+    }
+
+    private void readRequest(InputStream in) throws IOException {
+        StringBuilder header = new StringBuilder();
+        //read until \r\n\r\n
+        while (true) {
+            int b = in.read();
+            if (b < 0 || header.length() > MAX_HEADER_SIZE) {
+                throw new IOException("bad request");
+            }
+            header.append((char) b);
+            int length = header.length();
+            if (b == '\n' && length >= 4 && header.charAt(length - 2) == '\r'
+                    && header.charAt(length - 3) == '\n' && header.charAt(length - 4) == '\r') {
+                break;
+            }
+        }
+        String[] lines = header.toString().split("\r\n");
+        String[] requestLine = lines[0].split(" ");
+        if (requestLine.length < 2 || requestLine[1].length() < 2) {
+            throw new IOException("bad request:" + lines[0]);
+        }
+        method = requestLine[0];
+        //  /<encoded url>?connections=4&window=2097152
+        String path = requestLine[1];
+        int query = path.indexOf('?');
+        if (query > 0) {
+            parseQuery(path.substring(query + 1));
+            path = path.substring(0, query);
+        }
+        url = URLDecoder.decode(path.substring(1), "UTF-8");
+        for (int i = 1; i < lines.length; i++) {
+            String line = lines[i];
+            int colon = line.indexOf(':');
+            if (colon > 0 && "range".equalsIgnoreCase(line.substring(0, colon).trim())) {
+                parseRange(line.substring(colon + 1).trim());
+            }
+        }
+    }
+
+    private void parseQuery(String query) {
+        for (String param : query.split("&")) {
+            int eq = param.indexOf('=');
+            if (eq <= 0) {
+                continue;
+            }
+            String name = param.substring(0, eq);
+            try {
+                if ("connections".equals(name)) {
+                    connections = Integer.parseInt(param.substring(eq + 1));
+                } else if ("window".equals(name)) {
+                    lookAheadWindow = Long.parseLong(param.substring(eq + 1));
+                }
+            } catch (NumberFormatException e) {
+                connections = 1;
+            }
+        }
+    }
+
+    private boolean isParallel() {
+        return connections > 1 && lookAheadWindow > 0;
+    }
+
+    private void parseRange(String range) {
+        //bytes=100-,bytes=100-199,bytes=-500
+        if (!range.startsWith("bytes=")) {
+            return;
+        }
+        String spec = range.substring(6);
+        int comma = spec.indexOf(',');
+        if (comma > 0) {
+            //only the first range is served
+            spec = spec.substring(0, comma);
+        }
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return;
+        }
+        try {
+            String start = spec.substring(0, dash).trim();
+            String end = spec.substring(dash + 1).trim();
+            if (start.isEmpty()) {
+                suffixLength = Long.parseLong(end);
+            } else {
+                rangeStart = Long.parseLong(start);
+                rangeEnd = end.isEmpty() ? -1 : Long.parseLong(end);
+            }
+        } catch (NumberFormatException e) {
+            rangeStart = -1;
+            rangeEnd = -1;
+            suffixLength = -1;
+        }
+    }
+
+    private void serve(CacheEntry entry) throws IOException {
+        boolean partial = rangeStart >= 0 || suffixLength >= 0;
+        long start = Math.max(0, rangeStart);
+        Upstream upstream = null;
+        try {
+            if (entry.getLength() < 0) {
+                long probeStart = suffixLength >= 0 ? 0 : start;
+                long probeEnd = suffixLength >= 0 ? -1 : rangeEnd;
+                if (isParallel() && suffixLength < 0) {
+                    //only the first chunk,the others are fetched in parallel
+                    long chunkEnd = probeStart + ParallelFetcher.chunkSize(lookAheadWindow, connections) - 1;
+                    probeEnd = probeEnd >= 0 ? Math.min(probeEnd, chunkEnd) : chunkEnd;
+                }
+                upstream = Upstream.open(url, probeStart, probeEnd);
+                if (upstream.total < 0) {
+                    //length unknown,can't be cached by ranges
+                    if (probeEnd != (suffixLength >= 0 ? -1 : rangeEnd)) {
+                        upstream.close();
+                        upstream = Upstream.open(url, probeStart, suffixLength >= 0 ? -1 : rangeEnd);
+                    }
+                    passThrough(upstream);
+                    return;
+                }
+                entry.setInfo(upstream.total, upstream.mime);
+            }
+            long length = entry.getLength();
+            probe = upstream;
+            Mp4Layout layout = resolveLayout(entry);
+            probe = null;
+            if (layout != null && upstream != null) {
+                //the upstream is at a position of the original file
+                upstream.close();
+                upstream = null;
+            }
+            if (suffixLength >= 0) {
+                start = Math.max(0, length - suffixLength);
+            }
+            if (start >= length) {
+                writeHeaders("HTTP/1.1 416 Range Not Satisfiable\r\nContent-Range: bytes */" + length + "\r\nContent-Length: 0\r\n");
+                return;
+            }
+            long end = rangeEnd < 0 || rangeEnd >= length ? length - 1 : rangeEnd;
+            StringBuilder headers = new StringBuilder(partial ? "HTTP/1.1 206 Partial Content\r\n" : "HTTP/1.1 200 OK\r\n");
+            if (entry.getMime() != null) {
+                headers.append("Content-Type: ").append(entry.getMime()).append("\r\n");
+            }
+            headers.append("Accept-Ranges: bytes\r\n");
+            headers.append("Content-Length: ").append(end - start + 1).append("\r\n");
+            if (partial) {
+                headers.append("Content-Range: bytes ").append(start).append('-').append(end).append('/').append(length).append("\r\n");
+            }
+            writeHeaders(headers.toString());
+            if ("HEAD".equals(method)) {
+                return;
+            }
+            parallelFetched = !isParallel();
+            if (layout == null) {
+                sendRange(entry, upstream, start, end + 1);
+                upstream = null;
+                return;
+            }
+            //faststart view
+            long position = start;
+            while (position <= end) {
+                long pieceEnd = Math.min(layout.pieceEnd(position, length), end + 1);
+                if (layout.isMoov(position)) {
+                    int offset = (int) (position - layout.mdatStart);
+                    writeFully(ByteBuffer.wrap(layout.moov, offset, (int) (pieceEnd - position)));
+                } else {
+                    long original = layout.toOriginal(position);
+                    sendRange(entry, null, original, original + pieceEnd - position);
+                }
+                position = pieceEnd;
+            }
+        } finally {
+            if (upstream != null) {
+                upstream.close();
+            }
+        }
+    }
+
+    /**
+     * send [position,end) of the original file,from the cache or the origin
+     * @param upstream an opened upstream or null,closed after sent
+     */
+    private void sendRange(CacheEntry entry, Upstream upstream, long position, long end) throws IOException {
+        try {
+            while (position < end) {
+                long cachedEnd = entry.cachedEnd(position);
+                if (cachedEnd > position) {
+                    long count = Math.min(cachedEnd, end) - position;
+                    transfer(entry.channel(), position, count);
+                    position += count;
+                    continue;
+                }
+                long segmentEnd = Math.min(entry.nextCachedStart(position), end);
+                if (upstream != null && upstream.position != position) {
+                    upstream.close();
+                    upstream = null;
+                }
+                if (!parallelFetched) {
+                    //only the look-ahead window from the requested position
+                    parallelFetched = true;
+                    long windowEnd = Math.min(segmentEnd, position + lookAheadWindow);
+                    position = fetchInParallel(entry, upstream, position, windowEnd);
+                    upstream = null;
+                    cache.trim();
+                    continue;
+                }
+                if (upstream == null) {
+                    upstream = Upstream.open(url, position, segmentEnd - 1);
+                }
+                position = download(entry, upstream, position, segmentEnd, true);
+                upstream.close();
+                upstream = null;
+                cache.trim();
+            }
+        } finally {
+            if (upstream != null) {
+                upstream.close();
+            }
+        }
+    }
+
+    /**
+     * find out whether the file is a mp4 with moov at the end,only once for an entry
+     * @return faststart view or null
+     */
+    private Mp4Layout resolveLayout(final CacheEntry entry) throws IOException {
+        synchronized (entry.layoutLock) {
+            if (!entry.isLayoutResolved()) {
+                Mp4Layout layout = Mp4BoxScanner.scan(new Mp4BoxScanner.Source() {
+                    @Override
+                    public void read(long offset, byte[] buffer, int length) throws IOException {
+                        readOriginal(entry, offset, buffer, length);
+                    }
+                }, entry.getLength());
+                if (layout != null) {
+                    log("moov at the end,serve as faststart,moov size:" + layout.moov.length);
+                }
+                entry.setLayout(layout);
+            }
+            return entry.getLayout();
+        }
+    }
+
+    /**
+     * read bytes of the original file,fetch them into the cache first if missing
+     */
+    private void readOriginal(CacheEntry entry, long offset, byte[] buffer, int length) throws IOException {
+        long position = offset;
+        long end = offset + length;
+        while (position < end) {
+            long cachedEnd = entry.cachedEnd(position);
+            if (cachedEnd > position) {
+                position = cachedEnd;
+                continue;
+            }
+            long segmentEnd = Math.min(end, entry.nextCachedStart(position));
+            if (probe != null && probe.position == position && probe.end >= segmentEnd) {
+                //no extra request,the rest of the probe is sent as usual
+                position = download(entry, probe, position, segmentEnd, false);
+                continue;
+            }
+            //the player reads the head by itself,fetch more only for boxes after it
+            long fetchEnd = position == 0 ? end : Math.min(entry.getLength(), Math.max(end, position + MIN_SCAN_FETCH));
+            fetchEnd = Math.min(fetchEnd, entry.nextCachedStart(position));
+            Upstream upstream = Upstream.open(url, position, fetchEnd - 1);
+            try {
+                position = download(entry, upstream, position, fetchEnd, false);
+            } finally {
+                upstream.close();
+            }
+        }
+        FileChannel channel = entry.channel();
+        ByteBuffer data = ByteBuffer.wrap(buffer, 0, length);
+        while (data.hasRemaining()) {
+            if (channel.read(data, offset + data.position()) < 0) {
+                throw new IOException("cache file truncated");
+            }
+        }
+    }
+
+    /**
+     * fetch [position,windowEnd) by parallel connections and send bytes in order as soon as they arrive
+     * @param first an opened upstream at position or null,owned by the fetcher after called
+     * @return the position sent to,less than windowEnd if the parallel fetch failed
+     */
+    private long fetchInParallel(CacheEntry entry, Upstream first, long position, long windowEnd) throws IOException {
+        ParallelFetcher fetcher = new ParallelFetcher(url, entry, position, windowEnd, connections,
+                proxy.hostLimiter(), proxy.getThroughputMeter());
+        fetcher.start(proxy.executor(), first);
+        try {
+            long lastProgress = System.currentTimeMillis();
+            while (position < windowEnd) {
+                long cachedEnd;
+                try {
+                    cachedEnd = entry.awaitCached(position, 200);
+                } catch (InterruptedException e) {
+                    throw new IOException("interrupted");
+                }
+                if (cachedEnd > position) {
+                    long count = Math.min(cachedEnd, windowEnd) - position;
+                    transfer(entry.channel(), position, count);
+                    position += count;
+                    lastProgress = System.currentTimeMillis();
+                } else if (fetcher.isFailed()) {
+                    //go on with a single connection
+                    log("parallel fetch failed:" + fetcher.getError().getMessage());
+                    break;
+                } else if (System.currentTimeMillis() - lastProgress > Upstream.READ_TIMEOUT) {
+                    throw new IOException("parallel fetch timeout");
+                }
+            }
+        } finally {
+            fetcher.cancel();
+        }
+        return position;
+    }
+
+    /**
+     * zero copy from the cache file to the socket
+     */
+    private void transfer(FileChannel channel, long position, long count) throws IOException {
+        while (count > 0) {
+            long sent = channel.transferTo(position, count, client);
+            if (sent <= 0) {
+                throw new IOException("cache file truncated");
+            }
+            position += sent;
+            count -= sent;
+        }
+    }
+
+    /**
+     * read the upstream until segmentEnd,write every byte to the cache and the bytes from position to the client
+     * @param send false to cache only
+     * @return segmentEnd
+     */
+    private long download(CacheEntry entry, Upstream upstream, long position, long segmentEnd, boolean send) throws IOException {
+        FileChannel channel = entry.channel();
+        while (upstream.position < segmentEnd) {
+            int read = upstream.read(buffer, 0, (int) Math.min(buffer.length, segmentEnd - upstream.position));
+            if (read < 0) {
+                throw new IOException("unexpected end of stream at " + upstream.position);
+            }
+            long offset = upstream.position;
+            ByteBuffer data = ByteBuffer.wrap(buffer, 0, read);
+            while (data.hasRemaining()) {
+                channel.write(data, offset + data.position());
+            }
+            proxy.getThroughputMeter().record(read);
+            entry.addRange(offset, offset + read);
+            upstream.position += read;
+            if (send && upstream.position > position) {
+                //skip the bytes before position when the origin ignored the range
+                int skip = (int) Math.max(0, position - offset);
+                writeFully(ByteBuffer.wrap(buffer, skip, read - skip));
+                position = upstream.position;
+            }
+        }
+        return segmentEnd;
+    }
+
+    private void passThrough(Upstream upstream) throws IOException {
+        StringBuilder headers = new StringBuilder("HTTP/1.1 200 OK\r\n");
+        if (upstream.mime != null) {
+            headers.append("Content-Type: ").append(upstream.mime).append("\r\n");
+        }
+        writeHeaders(headers.toString());
+        int read;
+        while ((read = upstream.read(buffer, 0, buffer.length)) >= 0) {
+            writeFully(ByteBuffer.wrap(buffer, 0, read));
+        }
+    }
+
+    private void writeHeaders(String headers) throws IOException {
+        writeFully(ByteBuffer.wrap((headers + "Connection: close\r\n\r\n").getBytes("US-ASCII")));
+    }
+
+    private void writeFully(ByteBuffer data) throws IOException {
+        while (data.hasRemaining()) {
+            client.write(data);
+        }
+    }
+
+    private void log(String msg) {
+        if (GiraffePlayer.debug) {
+            Log.d(TAG, msg);
+        }
+    }
+}
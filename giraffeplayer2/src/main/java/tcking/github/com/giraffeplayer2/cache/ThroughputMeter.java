@@ -0,0 +1,57 @@
+package tcking.github.com.giraffeplayer2.cache;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * bytes downloaded from origin servers,the rate is smoothed per second
+ */
+
+public class ThroughputMeter {
+    private static final long SECOND = 1000 * 1000 * 1000L;
+    private static final double SMOOTHING = 0.5;
+
+    private final AtomicLong totalBytes = new AtomicLong();
+    private long bucketStart = System.nanoTime();
+    private long bucketBytes;
+    private double bytesPerSecond = -1;
+
+    void record(long bytes) {
+        totalBytes.addAndGet(bytes);
+        synchronized (this) {
+            bucketBytes += bytes;
+            roll(System.nanoTime());
+        }
+    }
+
+    private void roll(long now) {
+        long elapsed = now - bucketStart;
+        if (elapsed < SECOND) {
+            return;
+        }
+        double rate = bucketBytes * (double) SECOND / elapsed;
+        bytesPerSecond = bytesPerSecond < 0 ? rate : SMOOTHING * rate + (1 - SMOOTHING) * bytesPerSecond;
+        bucketStart = now;
+        bucketBytes = 0;
+    }
+
+    /**
+     * @return total bytes downloaded
+     */
+    public long getTotalBytes() {
+        return totalBytes.get();
+    }
+
+    /**
+     * @return recent download rate,0 if nothing downloaded
+     */
+    public synchronized long getBytesPerSecond() {
+        long now = System.nanoTime();
+        roll(now);
+        if (bytesPerSecond < 0) {
+            //less than a second since the first byte
+            long elapsed = now - bucketStart;
+            return elapsed <= 0 ? 0 : (long) (bucketBytes * (double) SECOND / elapsed);
+        }
+        return (long) bytesPerSecond;
+    }
+}
@@ -0,0 +1,96 @@
+package tcking.github.com.giraffeplayer2.cache;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * a ranged GET to the origin server
+ */
+
+class Upstream {
+    static final int CONNECT_TIMEOUT = 10 * 1000;
+    static final int READ_TIMEOUT = 15 * 1000;
+
+    private final HttpURLConnection connection;
+    private final InputStream in;
+    //offset of the next byte of the stream in the remote file
+    long position;
+    //end(exclusive) of the response,-1 if unknown
+    final long end;
+    //length of the remote file,-1 if unknown
+    final long total;
+    final String mime;
+
+    private Upstream(HttpURLConnection connection, long position, long end, long total) throws IOException {
+        this.connection = connection;
+        this.in = connection.getInputStream();
+        this.position = position;
+        this.end = end;
+        this.total = total;
+        this.mime = connection.getContentType();
+    }
+
+    /**
+     * @param start first byte
+     * @param end last byte(inclusive),-1 means to the end of file
+     */
+    static Upstream open(String url, long start, long end) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setConnectTimeout(CONNECT_TIMEOUT);
+        connection.setReadTimeout(READ_TIMEOUT);
+        if (start > 0 || end >= 0) {
+            connection.setRequestProperty("Range", "bytes=" + start + "-" + (end >= 0 ? end : ""));
+        }
+        int code = connection.getResponseCode();
+        if (code == HttpURLConnection.HTTP_PARTIAL) {
+            //Content-Range: bytes 100-199/1000
+            String contentRange = connection.getHeaderField("Content-Range");
+            long position = start;
+            long total = -1;
+            long last = -2;
+            if (contentRange != null) {
+                int space = contentRange.indexOf(' ');
+                int dash = contentRange.indexOf('-', space);
+                int slash = contentRange.indexOf('/', dash);
+                if (space > 0 && dash > space && slash > dash) {
+                    position = parseLong(contentRange.substring(space + 1, dash), start);
+                    last = parseLong(contentRange.substring(dash + 1, slash), -2);
+                    total = parseLong(contentRange.substring(slash + 1), -1);
+                }
+            }
+            return new Upstream(connection, position, last + 1, total);
+        } else if (code == HttpURLConnection.HTTP_OK) {
+            //range not supported,the whole file from 0
+            long total = parseLong(connection.getHeaderField("Content-Length"), -1);
+            return new Upstream(connection, 0, total, total);
+        }
+        connection.disconnect();
+        throw new IOException("unexpected response " + code + " for " + url);
+    }
+
+    int read(byte[] buffer, int offset, int length) throws IOException {
+        return in.read(buffer, offset, length);
+    }
+
+    void close() {
+        try {
+            in.close();
+        } catch (IOException e) {
+            //ignore
+        }
+        connection.disconnect();
+    }
+
+    private static long parseLong(String value, long defaultValue) {
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package tcking.github.com.giraffeplayer2;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * visibility,selection and fling detection of AutoPlayCoordinator
+ */
+public class AutoPlayCoordinatorTest {
+    private static final float DELTA = 0.001f;
+    private static final float MIN_VISIBLE = 0.6f;
+
+    @Test
+    public void visibleFractionIsClippedByContainer() {
+        //container 1080x1920,items 1080x600
+        assertEquals(1f, AutoPlayCoordinator.visibleFraction(0, 0, 1080, 600, 1080, 1920), DELTA);
+        assertEquals(0.5f, AutoPlayCoordinator.visibleFraction(0, -300, 1080, 600, 1080, 1920), DELTA);
+        assertEquals(0.25f, AutoPlayCoordinator.visibleFraction(0, 1770, 1080, 600, 1080, 1920), DELTA);
+        assertEquals(0f, AutoPlayCoordinator.visibleFraction(0, 1920, 1080, 600, 1080, 1920), DELTA);
+        assertEquals(0f, AutoPlayCoordinator.visibleFraction(0, -600, 1080, 600, 1080, 1920), DELTA);
+        //horizontal list
+        assertEquals(0.5f, AutoPlayCoordinator.visibleFraction(540, 0, 1080, 600, 1080, 1920), DELTA);
+        assertEquals(0f, AutoPlayCoordinator.visibleFraction(0, 0, 0, 0, 1080, 1920), DELTA);
+    }
+
+    @Test
+    public void mostVisibleItemIsPicked() {
+        float[] fractions = {0.3f, 1f, 0.7f};
+        int[] tops = {-400, 200, 1400};
+        assertEquals(1, AutoPlayCoordinator.pick(fractions, tops, 3, -1, MIN_VISIBLE));
+        //the upper one on a tie
+        float[] tie = {1f, 1f};
+        assertEquals(0, AutoPlayCoordinator.pick(tie, new int[]{100, 800}, 2, -1, MIN_VISIBLE));
+        assertEquals(1, AutoPlayCoordinator.pick(tie, new int[]{800, 100}, 2, -1, MIN_VISIBLE));
+    }
+
+    @Test
+    public void nothingIsPickedIfNotVisibleEnough() {
+        float[] fractions = {0.5f, 0.4f};
+        assertEquals(-1, AutoPlayCoordinator.pick(fractions, new int[]{-300, 1600}, 2, 0, MIN_VISIBLE));
+        assertEquals(-1, AutoPlayCoordinator.pick(new float[0], new int[0], 0, -1, MIN_VISIBLE));
+    }
+
+    @Test
+    public void currentItemIsKeptUnlessAnotherIsClearlyMoreVisible() {
+        int[] tops = {-100, 500};
+        assertEquals(0, AutoPlayCoordinator.pick(new float[]{0.85f, 0.9f}, tops, 2, 0, MIN_VISIBLE));
+        assertEquals(1, AutoPlayCoordinator.pick(new float[]{0.8f, 1f}, tops, 2, 0, MIN_VISIBLE));
+        //the current one scrolled out
+        assertEquals(1, AutoPlayCoordinator.pick(new float[]{0.5f, 0.65f}, tops, 2, 0, MIN_VISIBLE));
+    }
+
+    @Test
+    public void flingIsDetectedByVelocity() {
+        //1000dp/s on a density 3 screen is 3000px/s,48px in a 16ms frame
+        assertFalse(AutoPlayCoordinator.isFling(40, 16, 3, 1000));
+        assertTrue(AutoPlayCoordinator.isFling(60, 16, 3, 1000));
+        assertFalse(AutoPlayCoordinator.isFling(60, 0, 3, 1000));
+    }
+}
@@ -0,0 +1,79 @@
+package tcking.github.com.giraffeplayer2;
+
+import org.junit.Test;
+
+import tv.danmaku.ijk.media.player.IjkMediaPlayer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * ijkplayer options generated by BufferConfig and its presets
+ */
+public class BufferConfigTest {
+    private static final int FORMAT = IjkMediaPlayer.OPT_CATEGORY_FORMAT;
+    private static final int PLAYER = IjkMediaPlayer.OPT_CATEGORY_PLAYER;
+
+    @Test
+    public void unsetValuesGenerateNothing() {
+        assertEquals(0, new BufferConfig().toOptionProfile().size());
+        OptionProfile profile = new BufferConfig().setMinFrames(10).toOptionProfile();
+        assertEquals(1, profile.size());
+        assertEquals(10L, profile.get(PLAYER, "min-frames"));
+    }
+
+    @Test
+    public void lowLatencyLive() {
+        OptionProfile expected = OptionProfile.EMPTY
+                .with(Option.create(PLAYER, "max-buffer-size", 1024 * 1024L))
+                .with(Option.create(PLAYER, "min-frames", 2L))
+                .with(Option.create(FORMAT, "probesize", 32 * 1024L))
+                .with(Option.create(FORMAT, "analyzeduration", 100 * 1000L))
+                .with(Option.create(PLAYER, "packet-buffering", 0L))
+                .with(Option.create(PLAYER, "framedrop", 5L))
+                .with(Option.create(PLAYER, "infbuf", 1L));
+        assertEquals(expected, BufferConfig.lowLatencyLive().toOptionProfile());
+    }
+
+    @Test
+    public void vodQuality() {
+        OptionProfile expected = OptionProfile.EMPTY
+                .with(Option.create(PLAYER, "max-buffer-size", 15 * 1024 * 1024L))
+                .with(Option.create(PLAYER, "min-frames", 50000L))
+                .with(Option.create(PLAYER, "packet-buffering", 1L))
+                .with(Option.create(PLAYER, "framedrop", 0L))
+                .with(Option.create(PLAYER, "infbuf", 0L));
+        assertEquals(expected, BufferConfig.vodQuality().toOptionProfile());
+    }
+
+    @Test
+    public void feedPreview() {
+        OptionProfile expected = OptionProfile.EMPTY
+                .with(Option.create(PLAYER, "max-buffer-size", 2 * 1024 * 1024L))
+                .with(Option.create(PLAYER, "min-frames", 25L))
+                .with(Option.create(FORMAT, "probesize", 64 * 1024L))
+                .with(Option.create(FORMAT, "analyzeduration", 500 * 1000L))
+                .with(Option.create(PLAYER, "packet-buffering", 1L))
+                .with(Option.create(PLAYER, "framedrop", 1L))
+                .with(Option.create(PLAYER, "infbuf", 0L));
+        assertEquals(expected, BufferConfig.feedPreview().toOptionProfile());
+    }
+
+    @Test
+    public void addedOptionsTakePrecedence() {
+        VideoInfo videoInfo = new VideoInfo()
+                .setBufferConfig(BufferConfig.lowLatencyLive())
+                .addOption(Option.create(PLAYER, "framedrop", 1L))
+                .addOption(Option.create(PLAYER, "mediacodec", 1L));
+        OptionProfile options = videoInfo.playerOptions();
+        assertEquals(1L, options.get(PLAYER, "framedrop"));
+        assertEquals(1L, options.get(PLAYER, "mediacodec"));
+        assertEquals(0L, options.get(PLAYER, "packet-buffering"));
+        assertEquals(8, options.size());
+
+        VideoInfo plain = new VideoInfo().addOption(Option.create(PLAYER, "mediacodec", 1L));
+        assertSame(plain.getOptionProfile(), plain.playerOptions());
+        assertNull(plain.playerOptions().get(PLAYER, "framedrop"));
+    }
+}
@@ -0,0 +1,86 @@
+package tcking.github.com.giraffeplayer2;
+
+import android.graphics.SurfaceTexture;
+import android.view.Surface;
+import android.view.TextureView;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * one SurfaceTexture and one Surface for all the TextureViews of a player
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 23)
+public class DisplaySurfaceManagerTest {
+
+    private static class RecordingCallback implements DisplaySurfaceManager.Callback {
+        SurfaceTexture available;
+
+        @Override
+        public void onSurfaceAvailable(SurfaceTexture surfaceTexture) {
+            available = surfaceTexture;
+        }
+    }
+
+    @Test
+    public void laterViewsGetTheKeptSurfaceTexture() {
+        DisplaySurfaceManager manager = new DisplaySurfaceManager();
+        RecordingCallback callback = new RecordingCallback();
+
+        TextureView first = new TextureView(RuntimeEnvironment.application);
+        manager.bind(first, callback);
+        SurfaceTexture kept = new SurfaceTexture(0);
+        first.getSurfaceTextureListener().onSurfaceTextureAvailable(kept, 100, 100);
+        assertSame(kept, callback.available);
+        //moved to another view,must not be released by the TextureView
+        assertFalse(first.getSurfaceTextureListener().onSurfaceTextureDestroyed(kept));
+
+        TextureView second = new TextureView(RuntimeEnvironment.application);
+        manager.bind(second, callback);
+        SurfaceTexture other = new SurfaceTexture(0);
+        second.getSurfaceTextureListener().onSurfaceTextureAvailable(other, 100, 100);
+        assertSame(kept, callback.available);
+        assertTrue(second.getSurfaceTextureListener().onSurfaceTextureDestroyed(other));
+    }
+
+    @Test
+    public void surfaceIsCreatedOnce() {
+        DisplaySurfaceManager manager = new DisplaySurfaceManager();
+        TextureView view = new TextureView(RuntimeEnvironment.application);
+        manager.bind(view, new RecordingCallback());
+        SurfaceTexture kept = new SurfaceTexture(0);
+        view.getSurfaceTextureListener().onSurfaceTextureAvailable(kept, 100, 100);
+
+        Surface surface = manager.getSurface(kept);
+        assertNotNull(surface);
+        assertSame(surface, manager.getSurface(kept));
+        assertNull(manager.getSurface(new SurfaceTexture(0)));
+        assertNull(manager.getSurface(null));
+    }
+
+    @Test
+    public void releaseForgetsTheSurfaceTexture() {
+        DisplaySurfaceManager manager = new DisplaySurfaceManager();
+        TextureView view = new TextureView(RuntimeEnvironment.application);
+        manager.bind(view, new RecordingCallback());
+        SurfaceTexture kept = new SurfaceTexture(0);
+        view.getSurfaceTextureListener().onSurfaceTextureAvailable(kept, 100, 100);
+        manager.getSurface(kept);
+
+        manager.release();
+        ShadowLooper.idleMainLooper();
+        assertNull(manager.getSurface(kept));
+        assertTrue(view.getSurfaceTextureListener().onSurfaceTextureDestroyed(kept));
+    }
+}
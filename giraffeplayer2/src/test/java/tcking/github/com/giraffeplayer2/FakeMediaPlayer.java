@@ -0,0 +1,409 @@
+package tcking.github.com.giraffeplayer2;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Surface;
+import android.view.SurfaceHolder;
+
+import java.io.FileDescriptor;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import tv.danmaku.ijk.media.player.AbstractMediaPlayer;
+import tv.danmaku.ijk.media.player.IMediaPlayer;
+import tv.danmaku.ijk.media.player.MediaInfo;
+import tv.danmaku.ijk.media.player.misc.IMediaDataSource;
+import tv.danmaku.ijk.media.player.misc.ITrackInfo;
+
+/**
+ * a scriptable media player without decoder,events are posted to main thread like IjkMediaPlayer does
+ */
+
+public class FakeMediaPlayer extends AbstractMediaPlayer implements LiveLatencyController.Player, GiraffePlayer.SeekMode {
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    //script
+    private long prepareDelay;
+    private long seekDelay;
+    private int prepareErrorWhat;
+    private int prepareErrorExtra;
+    private boolean failReset;
+    private long duration = 60 * 1000;
+    private int videoWidth = 1280;
+    private int videoHeight = 720;
+    private long bufferedDuration;
+
+    //state
+    private String dataSource;
+    private boolean prepared;
+    private boolean playing;
+    private boolean renderedFirstFrame;
+    private boolean released;
+    private boolean looping;
+    private long position;
+    private float speed = 1;
+    private int prepareCount;
+    private int startCount;
+    private int pauseCount;
+    private int resetCount;
+    private final List<Long> seeks = new ArrayList<>();
+    private final List<Boolean> accurateSeeks = new ArrayList<>();
+    private boolean accurateSeek;
+
+    public FakeMediaPlayer setPrepareDelay(long prepareDelay) {
+        this.prepareDelay = prepareDelay;
+        return this;
+    }
+
+    public FakeMediaPlayer setSeekDelay(long seekDelay) {
+        this.seekDelay = seekDelay;
+        return this;
+    }
+
+    /**
+     * report an error instead of onPrepared
+     */
+    public FakeMediaPlayer failPrepare(int what, int extra) {
+        this.prepareErrorWhat = what;
+        this.prepareErrorExtra = extra;
+        return this;
+    }
+
+    /**
+     * throw from reset(),like a native player in a bad state
+     */
+    public FakeMediaPlayer failReset(boolean failReset) {
+        this.failReset = failReset;
+        return this;
+    }
+
+    public FakeMediaPlayer setDuration(long duration) {
+        this.duration = duration;
+        return this;
+    }
+
+    /**
+     * synthetic buffer level,how far a live stream is behind the edge
+     */
+    public FakeMediaPlayer setBufferedDuration(long bufferedDuration) {
+        this.bufferedDuration = bufferedDuration;
+        return this;
+    }
+
+    public FakeMediaPlayer setVideoSize(int videoWidth, int videoHeight) {
+        this.videoWidth = videoWidth;
+        this.videoHeight = videoHeight;
+        return this;
+    }
+
+    /**
+     * must be called on main thread
+     */
+    public void bufferingStart() {
+        notifyOnInfo(MEDIA_INFO_BUFFERING_START, 0);
+    }
+
+    /**
+     * must be called on main thread
+     */
+    public void bufferingEnd() {
+        notifyOnInfo(MEDIA_INFO_BUFFERING_END, 0);
+    }
+
+    /**
+     * must be called on main thread
+     */
+    public void bufferingUpdate(int percent) {
+        notifyOnBufferingUpdate(percent);
+    }
+
+    /**
+     * must be called on main thread
+     */
+    public void error(int what, int extra) {
+        playing = false;
+        notifyOnError(what, extra);
+    }
+
+    /**
+     * must be called on main thread
+     */
+    public void complete() {
+        playing = false;
+        position = duration;
+        notifyOnCompletion();
+    }
+
+    public boolean isPrepared() {
+        return prepared;
+    }
+
+    public boolean isReleased() {
+        return released;
+    }
+
+    @Override
+    public void setAccurateSeek(boolean accurate) {
+        this.accurateSeek = accurate;
+    }
+
+    /**
+     * @return whether each seek of {@link #getSeeks()} was an accurate one
+     */
+    public List<Boolean> getAccurateSeeks() {
+        return accurateSeeks;
+    }
+
+    public float getSpeed() {
+        return speed;
+    }
+
+    public int getPrepareCount() {
+        return prepareCount;
+    }
+
+    public int getStartCount() {
+        return startCount;
+    }
+
+    public int getPauseCount() {
+        return pauseCount;
+    }
+
+    public int getResetCount() {
+        return resetCount;
+    }
+
+    /**
+     * @return positions of every seekTo in order
+     */
+    public List<Long> getSeeks() {
+        return seeks;
+    }
+
+    @Override
+    public void setDisplay(SurfaceHolder sh) {
+    }
+
+    @Override
+    public void setDataSource(Context context, Uri uri) {
+        dataSource = String.valueOf(uri);
+    }
+
+    @Override
+    public void setDataSource(Context context, Uri uri, Map<String, String> headers) {
+        dataSource = String.valueOf(uri);
+    }
+
+    @Override
+    public void setDataSource(FileDescriptor fd) {
+        dataSource = String.valueOf(fd);
+    }
+
+    @Override
+    public void setDataSource(String path) {
+        dataSource = path;
+    }
+
+    @Override
+    public void setDataSource(IMediaDataSource mediaDataSource) {
+        dataSource = String.valueOf(mediaDataSource);
+    }
+
+    @Override
+    public String getDataSource() {
+        return dataSource;
+    }
+
+    @Override
+    public void prepareAsync() throws IllegalStateException {
+        if (dataSource == null) {
+            throw new IllegalStateException("no data source");
+        }
+        prepareCount++;
+        handler.postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                if (prepareErrorWhat != 0) {
+                    notifyOnError(prepareErrorWhat, prepareErrorExtra);
+                    return;
+                }
+                prepared = true;
+                notifyOnVideoSizeChanged(videoWidth, videoHeight, 1, 1);
+                notifyOnPrepared();
+            }
+        }, prepareDelay);
+    }
+
+    @Override
+    public void start() throws IllegalStateException {
+        if (!prepared) {
+            throw new IllegalStateException("not prepared");
+        }
+        startCount++;
+        playing = true;
+        if (!renderedFirstFrame) {
+            renderedFirstFrame = true;
+            handler.post(new Runnable() {
+                @Override
+                public void run() {
+                    //an audio only stream has no video size
+                    notifyOnInfo(videoWidth > 0 ? MEDIA_INFO_VIDEO_RENDERING_START : MEDIA_INFO_AUDIO_RENDERING_START, 0);
+                }
+            });
+        }
+    }
+
+    @Override
+    public void stop() throws IllegalStateException {
+        playing = false;
+    }
+
+    @Override
+    public void pause() throws IllegalStateException {
+        pauseCount++;
+        playing = false;
+    }
+
+    @Override
+    public void setScreenOnWhilePlaying(boolean screenOn) {
+    }
+
+    @Override
+    public int getVideoWidth() {
+        return prepared ? videoWidth : 0;
+    }
+
+    @Override
+    public int getVideoHeight() {
+        return prepared ? videoHeight : 0;
+    }
+
+    @Override
+    public boolean isPlaying() {
+        return playing;
+    }
+
+    @Override
+    public void seekTo(long msec) throws IllegalStateException {
+        seeks.add(msec);
+        accurateSeeks.add(accurateSeek);
+        position = msec;
+        handler.postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                notifyOnSeekComplete();
+            }
+        }, seekDelay);
+    }
+
+    @Override
+    public long getCurrentPosition() {
+        return position;
+    }
+
+    @Override
+    public long getDuration() {
+        return prepared ? duration : 0;
+    }
+
+    @Override
+    public void release() {
+        released = true;
+        playing = false;
+        handler.removeCallbacksAndMessages(null);
+        resetListeners();
+    }
+
+    @Override
+    public void reset() {
+        resetCount++;
+        if (failReset) {
+            throw new IllegalStateException("reset failed");
+        }
+        prepared = false;
+        playing = false;
+        renderedFirstFrame = false;
+        position = 0;
+        speed = 1;
+        dataSource = null;
+        handler.removeCallbacksAndMessages(null);
+    }
+
+    @Override
+    public void setVolume(float leftVolume, float rightVolume) {
+    }
+
+    @Override
+    public int getAudioSessionId() {
+        return 0;
+    }
+
+    @Override
+    public MediaInfo getMediaInfo() {
+        return null;
+    }
+
+    @Override
+    public void setLogEnabled(boolean enable) {
+    }
+
+    @Override
+    public boolean isPlayable() {
+        return true;
+    }
+
+    @Override
+    public void setAudioStreamType(int streamtype) {
+    }
+
+    @Override
+    public void setKeepInBackground(boolean keepInBackground) {
+    }
+
+    @Override
+    public int getVideoSarNum() {
+        return 1;
+    }
+
+    @Override
+    public int getVideoSarDen() {
+        return 1;
+    }
+
+    @Override
+    public void setWakeMode(Context context, int mode) {
+    }
+
+    @Override
+    public void setLooping(boolean looping) {
+        this.looping = looping;
+    }
+
+    @Override
+    public boolean isLooping() {
+        return looping;
+    }
+
+    @Override
+    public ITrackInfo[] getTrackInfo() {
+        return new ITrackInfo[0];
+    }
+
+    @Override
+    public void setSurface(Surface surface) {
+    }
+
+    @Override
+    public long readBufferedDuration() {
+        return bufferedDuration;
+    }
+
+    @Override
+    public void setSpeed(float speed) {
+        this.speed = speed;
+    }
+}
@@ -0,0 +1,536 @@
+package tcking.github.com.giraffeplayer2;
+
+import android.net.Uri;
+import android.widget.FrameLayout;
+
+import com.github.tcking.giraffeplayer2.R;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import tv.danmaku.ijk.media.player.IMediaPlayer;
+import tv.danmaku.ijk.media.player.IjkMediaPlayer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * state machine of GiraffePlayer driven by FakeMediaPlayer
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 23)
+public class GiraffePlayerTest {
+    private static final long PREPARE_DELAY = 100;
+
+    private final List<FakeMediaPlayer> mediaPlayers = new ArrayList<>();
+    private int prepareError;
+    private long seekDelay;
+    private long duration = 60 * 1000;
+    private int videoWidth = 1280;
+    private VideoInfo videoInfo;
+    private GiraffePlayer player;
+    private RecordingListener listener;
+
+    @Before
+    public void setUp() {
+        ShadowLooper.pauseMainLooper();
+        PlayerManager.getInstance().setMediaPlayerFactory(new MediaPlayerFactory() {
+            @Override
+            public IMediaPlayer create(VideoInfo videoInfo) {
+                FakeMediaPlayer mediaPlayer = new FakeMediaPlayer()
+                        .setPrepareDelay(PREPARE_DELAY)
+                        .setSeekDelay(seekDelay)
+                        .setDuration(duration)
+                        .setVideoSize(videoWidth, videoWidth * 9 / 16)
+                        .failPrepare(prepareError, 0);
+                mediaPlayers.add(mediaPlayer);
+                return mediaPlayer;
+            }
+        });
+        videoInfo = new VideoInfo(Uri.parse("http://example.com/video.mp4")).setFingerprint("test");
+        player = GiraffePlayer.createPlayer(RuntimeEnvironment.application, videoInfo);
+        listener = new RecordingListener();
+        player.addPlayerListener(listener);
+    }
+
+    @After
+    public void tearDown() {
+        player.release();
+        Loopers.idle(player);
+        PlayerManager.getInstance().setMediaPlayerFactory(null);
+        PlayerManager.getInstance().setMetricsSink(null);
+        PlayerManager.getInstance().getStreamInfoCache().clear();
+        PlayerManager.getInstance().clearPreload();
+        PlayerManager.getInstance().setPreloadBudget(2);
+    }
+
+    private FakeMediaPlayer mediaPlayer() {
+        return mediaPlayers.get(mediaPlayers.size() - 1);
+    }
+
+    private void startAndPrepare() {
+        player.start();
+        Loopers.idle(player);
+        Loopers.advance(player, PREPARE_DELAY);
+    }
+
+    @Test
+    public void startPlaysWhenPrepared() {
+        player.start();
+        Loopers.idle(player);
+        assertEquals(1, mediaPlayers.size());
+        assertEquals(GiraffePlayer.STATE_PREPARING, listener.currentState);
+        assertFalse(mediaPlayer().isPlaying());
+
+        Loopers.advance(player, PREPARE_DELAY);
+        assertTrue(mediaPlayer().isPlaying());
+        assertTrue(player.isPlaying());
+        assertEquals(GiraffePlayer.STATE_PLAYING, listener.currentState);
+        assertEquals(1, listener.prepared);
+        assertTrue(player.getMetrics().getPrepareLatency() >= 0);
+        assertTrue(player.getMetrics().getStartupLatency() >= 0);
+    }
+
+    @Test
+    public void pauseAfterPlaying() {
+        startAndPrepare();
+        player.pause();
+        Loopers.idle(player);
+        assertFalse(mediaPlayer().isPlaying());
+        assertEquals(1, mediaPlayer().getPauseCount());
+        assertFalse(player.isPlaying());
+    }
+
+    @Test
+    public void prepareErrorIsReported() {
+        prepareError = IMediaPlayer.MEDIA_ERROR_IO;
+        startAndPrepare();
+        assertEquals(GiraffePlayer.STATE_ERROR, listener.currentState);
+        assertEquals(IMediaPlayer.MEDIA_ERROR_IO, listener.errorWhat);
+        assertFalse(mediaPlayer().isPlaying());
+        assertEquals(1, player.getMetrics().getErrorCount());
+    }
+
+    @Test
+    public void seeksWhileInFlightAreCoalesced() {
+        seekDelay = 50;
+        startAndPrepare();
+        player.seekTo(1000);
+        player.seekTo(2000);
+        player.seekTo(3000);
+        Loopers.idle(player);
+        assertEquals(Arrays.asList(1000L), mediaPlayer().getSeeks());
+
+        Loopers.advance(player, seekDelay);
+        assertEquals(Arrays.asList(1000L, 3000L), mediaPlayer().getSeeks());
+        Loopers.advance(player, seekDelay);
+        assertEquals(2, listener.seekCompleted);
+        assertEquals(2, player.getMetrics().getSeekHistogram().getCount());
+    }
+
+    @Test
+    public void previewSeeksGoToKeyFrames() {
+        startAndPrepare();
+        player.previewSeekTo(5000);
+        Loopers.idle(player);
+        player.previewSeekTo(5500);
+        Loopers.idle(player);
+        player.seekTo(5200);
+        Loopers.idle(player);
+        assertEquals("close previews are skipped", Arrays.asList(5000L, 5200L), mediaPlayer().getSeeks());
+        assertEquals(Arrays.asList(false, true), mediaPlayer().getAccurateSeeks());
+
+        videoInfo.addOption(Option.create(IjkMediaPlayer.OPT_CATEGORY_PLAYER, "enable-accurate-seek", 0L));
+        player.seekTo(8000);
+        Loopers.idle(player);
+        assertEquals(Arrays.asList(false, true, false), mediaPlayer().getAccurateSeeks());
+    }
+
+    @Test
+    public void errorIsRetriedFromLastPosition() {
+        videoInfo.setRetryPolicy(new RetryPolicy().setInitialDelay(1000).setJitter(0));
+        startAndPrepare();
+        player.seekTo(20000);
+        Loopers.idle(player);
+        mediaPlayer().error(IMediaPlayer.MEDIA_ERROR_UNKNOWN, IMediaPlayer.MEDIA_ERROR_IO);
+        Loopers.advance(player, 999);
+        assertEquals(1, mediaPlayer().getPrepareCount());
+
+        Loopers.advance(player, 1);
+        Loopers.advance(player, PREPARE_DELAY);
+        assertEquals("the media player is reused", 1, mediaPlayers.size());
+        assertEquals(1, mediaPlayer().getResetCount());
+        assertEquals(2, mediaPlayer().getPrepareCount());
+        assertEquals(Arrays.asList(20000L, 20000L), mediaPlayer().getSeeks());
+        assertTrue(player.isPlaying());
+        assertEquals(1, player.getMetrics().getRetryCount());
+    }
+
+    @Test
+    public void retryAfterResetFailureKeepsPosition() {
+        videoInfo.setRetryPolicy(new RetryPolicy().setInitialDelay(1000).setJitter(0));
+        startAndPrepare();
+        player.seekTo(20000);
+        Loopers.idle(player);
+        mediaPlayer().failReset(true);
+        mediaPlayer().error(IMediaPlayer.MEDIA_ERROR_UNKNOWN, IMediaPlayer.MEDIA_ERROR_IO);
+        Loopers.advance(player, 1000);
+        Loopers.advance(player, PREPARE_DELAY);
+        assertEquals("a new media player after reset failed", 2, mediaPlayers.size());
+        assertEquals(Arrays.asList(20000L), mediaPlayer().getSeeks());
+        assertTrue(player.isPlaying());
+        assertEquals(1, player.getMetrics().getRetryCount());
+    }
+
+    @Test
+    public void restartAfterReleaseIsNotRetry() {
+        startAndPrepare();
+        player.release();
+        Loopers.idle(player);
+        startAndPrepare();
+        assertEquals(2, mediaPlayers.size());
+        assertTrue(player.isPlaying());
+        assertEquals(0, player.getMetrics().getRetryCount());
+    }
+
+    @Test
+    public void formatErrorIsNotRetried() {
+        videoInfo.setRetryPolicy(new RetryPolicy().setInitialDelay(1000));
+        startAndPrepare();
+        mediaPlayer().error(IMediaPlayer.MEDIA_ERROR_UNKNOWN, IMediaPlayer.MEDIA_ERROR_UNSUPPORTED);
+        Loopers.advance(player, 60000);
+        assertEquals(1, mediaPlayer().getPrepareCount());
+        assertEquals(GiraffePlayer.STATE_ERROR, listener.currentState);
+    }
+
+    @Test
+    public void rebufferingIsRecorded() {
+        startAndPrepare();
+        mediaPlayer().bufferingStart();
+        Loopers.advance(player, 500);
+        mediaPlayer().bufferingEnd();
+        Loopers.idle(player);
+        assertEquals(1, player.getMetrics().getRebufferCount());
+        assertTrue(player.getMetrics().getRebufferDuration() >= 0);
+    }
+
+    @Test
+    public void rebufferingOfAudioOnlyIsRecorded() {
+        videoWidth = 0;
+        startAndPrepare();
+        assertTrue(player.getMetrics().getStartupLatency() >= 0);
+        mediaPlayer().bufferingStart();
+        Loopers.advance(player, 500);
+        mediaPlayer().bufferingEnd();
+        Loopers.idle(player);
+        assertEquals(1, player.getMetrics().getRebufferCount());
+    }
+
+    @Test
+    public void liveLatencyIsHeldBySpeedAndJump() {
+        duration = 0;
+        videoInfo.setLiveLatency(new LiveLatencyConfig().setSampleInterval(1000));
+        final List<Integer> actions = new ArrayList<>();
+        player.setOnLatencyActionListener(new LiveLatencyController.OnLatencyActionListener() {
+            @Override
+            public void onLatencyAction(GiraffePlayer player, int action, long latency, float speed) {
+                actions.add(action);
+            }
+        });
+        startAndPrepare();
+        FakeMediaPlayer mediaPlayer = mediaPlayer();
+
+        //behind the target,catch up at the max speed
+        mediaPlayer.setBufferedDuration(6000);
+        Loopers.advance(player, 1000);
+        assertEquals(1.1f, mediaPlayer.getSpeed(), 0.001f);
+        assertEquals(1.1f, player.getPositionClock().getSpeed(), 0.001f);
+
+        //far behind,jump to the live edge by preparing again
+        mediaPlayer.setBufferedDuration(20000);
+        Loopers.advance(player, 1000);
+        assertEquals(1, mediaPlayer.getResetCount());
+        assertEquals(2, mediaPlayer.getPrepareCount());
+        assertEquals(1f, mediaPlayer.getSpeed(), 0.001f);
+        assertEquals(1f, player.getPositionClock().getSpeed(), 0.001f);
+        mediaPlayer.setBufferedDuration(3000);
+        Loopers.advance(player, PREPARE_DELAY);
+        assertTrue(player.isPlaying());
+
+        assertEquals(Arrays.asList(LiveLatencyController.ACTION_SPEED, LiveLatencyController.ACTION_JUMP), actions);
+        assertEquals(1, player.getMetrics().getSpeedChangeCount());
+        assertEquals(1, player.getMetrics().getLiveEdgeJumpCount());
+        assertEquals("a jump is not a retry", 0, player.getMetrics().getRetryCount());
+    }
+
+    @Test
+    public void liveLatencyIgnoresVod() {
+        videoInfo.setLiveLatency(new LiveLatencyConfig().setSampleInterval(1000));
+        startAndPrepare();
+        mediaPlayer().setBufferedDuration(20000);
+        Loopers.advance(player, 5000);
+        assertEquals(1, mediaPlayer().getPrepareCount());
+        assertEquals(1f, mediaPlayer().getSpeed(), 0.001f);
+        assertTrue(player.isPlaying());
+    }
+
+    @Test
+    public void playbackThreadsStayBounded() {
+        PlaybackLooperPool pool = PlaybackLooperPool.getInstance();
+        for (int i = 0; i < 2000; i++) {
+            GiraffePlayer created = GiraffePlayer.createPlayer(RuntimeEnvironment.application,
+                    new VideoInfo(Uri.parse("http://example.com/" + i + ".mp4")).setFingerprint("bounded" + i));
+            created.start();
+            Loopers.idle(created);
+            created.release();
+            Loopers.idle(created);
+            assertTrue("threads:" + pool.getThreadCount(), pool.getThreadCount() <= pool.getMaxSize());
+        }
+    }
+
+    @Test
+    public void releaseReportsMetrics() {
+        final List<PlayerMetrics> reports = new ArrayList<>();
+        PlayerManager.getInstance().setMetricsSink(new MetricsSink() {
+            @Override
+            public void onReport(VideoInfo videoInfo, PlayerMetrics metrics) {
+                reports.add(metrics);
+            }
+        });
+        startAndPrepare();
+        player.release();
+        Loopers.idle(player);
+        assertTrue(player.isReleased());
+        assertTrue(mediaPlayer().isReleased());
+        assertEquals(1, listener.released);
+        assertEquals(1, reports.size());
+        assertSame(player.getMetrics(), reports.get(0));
+    }
+
+    @Test
+    public void streamInfoIsCachedWhenPrepared() {
+        StreamInfoCache cache = PlayerManager.getInstance().getStreamInfoCache();
+        assertNull(cache.get(StreamInfoCache.keyOf(videoInfo)));
+        startAndPrepare();
+        StreamInfo info = cache.get(StreamInfoCache.keyOf(videoInfo));
+        assertEquals(1280, info.getVideoWidth());
+        assertEquals(720, info.getVideoHeight());
+        assertEquals(60 * 1000, info.getDuration());
+    }
+
+    @Test
+    public void streamInfoIsDroppedOnError() {
+        StreamInfoCache cache = PlayerManager.getInstance().getStreamInfoCache();
+        startAndPrepare();
+        assertNotNull(cache.get(StreamInfoCache.keyOf(videoInfo)));
+        mediaPlayer().error(IMediaPlayer.MEDIA_ERROR_UNKNOWN, IMediaPlayer.MEDIA_ERROR_IO);
+        Loopers.idle(player);
+        assertNull(cache.get(StreamInfoCache.keyOf(videoInfo)));
+    }
+
+    @Test
+    public void parkedPlayerKeepsItsMediaPlayer() {
+        startAndPrepare();
+        FakeMediaPlayer mediaPlayer = mediaPlayer();
+        player.seekTo(20000);
+        Loopers.idle(player);
+        player.park();
+        Loopers.idle(player);
+        assertTrue(player.isParked());
+        assertFalse(player.isReleased());
+        assertFalse(mediaPlayer.isPlaying());
+        assertFalse(mediaPlayer.isReleased());
+        assertEquals(20000, mediaPlayer.getCurrentPosition());
+        assertEquals(1, mediaPlayer.getPrepareCount());
+        assertEquals(1, mediaPlayer.getPauseCount());
+        //a parked player is invisible to listeners
+        assertEquals(GiraffePlayer.STATE_PLAYING, listener.currentState);
+    }
+
+    @Test
+    public void surfaceViewFallsBackToTextureView() {
+        VideoInfo surface = new VideoInfo().setDisplayBackend(VideoInfo.DISPLAY_BACKEND_SURFACE);
+        assertTrue(GiraffePlayer.usingSurfaceView(surface, false));
+        assertFalse("in list", GiraffePlayer.usingSurfaceView(surface, true));
+        VideoInfo animated = new VideoInfo(surface).setPortraitWhenFullScreen(false).setFullScreenAnimation(true);
+        assertFalse("fullscreen animation", GiraffePlayer.usingSurfaceView(animated, false));
+        assertTrue(GiraffePlayer.usingSurfaceView(new VideoInfo(animated).setFullScreenAnimation(false), false));
+        assertFalse(GiraffePlayer.usingSurfaceView(new VideoInfo(), false));
+    }
+
+    @Test
+    public void displayBackendIsCreated() {
+        FrameLayout container = new FrameLayout(RuntimeEnvironment.application);
+        player.createDisplay(container);
+        assertTrue(container.findViewById(R.id.player_display) instanceof ScalableTextureView);
+
+        videoInfo.setDisplayBackend(VideoInfo.DISPLAY_BACKEND_SURFACE);
+        FrameLayout another = new FrameLayout(RuntimeEnvironment.application);
+        player.createDisplay(another);
+        assertNotNull(another.findViewById(R.id.player_display_group));
+        assertTrue(another.findViewById(R.id.player_display) instanceof ScalableSurfaceView);
+    }
+
+    @Test
+    public void releasedPositionIsResumed() {
+        File file = new File(RuntimeEnvironment.application.getCacheDir(), "resume-test.log");
+        file.delete();
+        ResumeStore store = new ResumeStore(file);
+        PlayerManager.getInstance().setResumeStore(store);
+        VideoInfo videoInfo = new VideoInfo(Uri.parse("http://example.com/long.mp4"))
+                .setFingerprint("resume").setResumeEnabled(true);
+        try {
+            GiraffePlayer first = GiraffePlayer.createPlayer(RuntimeEnvironment.application, videoInfo);
+            first.start();
+            Loopers.idle(first);
+            Loopers.advance(first, PREPARE_DELAY);
+            first.seekTo(20000);
+            Loopers.idle(first);
+            first.release();
+            Loopers.idle(first);
+            assertEquals(20000, store.get(ResumeStore.keyOf(videoInfo)));
+
+            GiraffePlayer second = GiraffePlayer.createPlayer(RuntimeEnvironment.application, videoInfo);
+            second.start();
+            Loopers.idle(second);
+            Loopers.advance(second, PREPARE_DELAY);
+            Loopers.idle(second);
+            assertEquals(Arrays.asList(20000L), mediaPlayer().getSeeks());
+            assertTrue(second.isPlaying());
+            second.release();
+            Loopers.idle(second);
+        } finally {
+            PlayerManager.getInstance().setResumeStore(null);
+        }
+    }
+
+    private static VideoInfo preloadInfo(String fingerprint, String name) {
+        return new VideoInfo(Uri.parse("http://example.com/" + name + ".mp4")).setFingerprint(fingerprint);
+    }
+
+    private GiraffePlayer preload(String fingerprint) {
+        PlayerManager.getInstance().preload(RuntimeEnvironment.application, preloadInfo(fingerprint, fingerprint));
+        GiraffePlayer preloaded = PlayerManager.getInstance().getPreloadedPlayers().get(fingerprint);
+        assertNotNull(preloaded);
+        Loopers.idle(preloaded);
+        return preloaded;
+    }
+
+    @Test
+    public void preloadPreparesWithoutDisplay() {
+        GiraffePlayer preloaded = preload("preload");
+        assertTrue(preloaded.isPreloading());
+        assertEquals(GiraffePlayer.STATE_PREPARING, preloaded.getCurrentState());
+
+        Loopers.advance(preloaded, PREPARE_DELAY);
+        assertEquals(GiraffePlayer.STATE_PREPARED, preloaded.getCurrentState());
+        assertEquals(1, mediaPlayer().getPrepareCount());
+        assertFalse("a preloaded player never starts by itself", mediaPlayer().isPlaying());
+        assertTrue(PlayerManager.getInstance().getPreloadedPlayers().contains("preload"));
+    }
+
+    @Test
+    public void preloadedPlayerIsHandedOver() {
+        GiraffePlayer preloaded = preload("handover");
+        FakeMediaPlayer preloadedMediaPlayer = mediaPlayer();
+        Loopers.advance(preloaded, PREPARE_DELAY);
+
+        PlayerLruCache preloadedPlayers = PlayerManager.getInstance().getPreloadedPlayers();
+        assertSame(preloaded, PlayerManager.takeDetachedPlayer(preloadedPlayers, preloadInfo("handover", "handover")));
+        assertFalse(preloadedPlayers.contains("handover"));
+        int created = mediaPlayers.size();
+        preloaded.start();
+        Loopers.idle(preloaded);
+        assertTrue(preloadedMediaPlayer.isPlaying());
+        assertEquals("no second prepareAsync", 1, preloadedMediaPlayer.getPrepareCount());
+        assertEquals(created, mediaPlayers.size());
+        preloaded.release();
+        Loopers.idle(preloaded);
+    }
+
+    @Test
+    public void preloadOverBudgetIsEvicted() {
+        GiraffePlayer first = preload("first");
+        GiraffePlayer second = preload("second");
+        GiraffePlayer third = preload("third");
+        PlayerLruCache preloadedPlayers = PlayerManager.getInstance().getPreloadedPlayers();
+        Loopers.idle(first);
+        assertTrue(first.isReleased());
+        assertFalse(preloadedPlayers.contains("first"));
+        assertEquals(2, preloadedPlayers.size());
+
+        PlayerManager.getInstance().setPreloadBudget(1);
+        Loopers.idle(second);
+        assertTrue(second.isReleased());
+        assertFalse(third.isReleased());
+        assertTrue(preloadedPlayers.contains("third"));
+
+        //keep the first ones when preloading more than the budget at once
+        PlayerManager.getInstance().clearPreload();
+        PlayerManager.getInstance().preload(RuntimeEnvironment.application,
+                preloadInfo("a", "a"), preloadInfo("b", "b"));
+        assertTrue(preloadedPlayers.contains("a"));
+        assertFalse(preloadedPlayers.contains("b"));
+    }
+
+    @Test
+    public void preloadOfAnotherUriIsReleased() {
+        GiraffePlayer preloaded = preload("moved");
+        FakeMediaPlayer preloadedMediaPlayer = mediaPlayer();
+        PlayerLruCache preloadedPlayers = PlayerManager.getInstance().getPreloadedPlayers();
+        assertNull(PlayerManager.takeDetachedPlayer(preloadedPlayers, preloadInfo("moved", "other")));
+        assertFalse(preloadedPlayers.contains("moved"));
+        Loopers.idle(preloaded);
+        assertTrue(preloaded.isReleased());
+        assertTrue(preloadedMediaPlayer.isReleased());
+    }
+
+    private static class RecordingListener extends DefaultPlayerListener {
+        private int currentState = GiraffePlayer.STATE_IDLE;
+        private int prepared;
+        private int seekCompleted;
+        private int released;
+        private int errorWhat;
+
+        @Override
+        public void onCurrentStateChange(int oldState, int newState) {
+            currentState = newState;
+        }
+
+        @Override
+        public void onPrepared(GiraffePlayer giraffePlayer) {
+            prepared++;
+        }
+
+        @Override
+        public void onSeekComplete(GiraffePlayer giraffePlayer) {
+            seekCompleted++;
+        }
+
+        @Override
+        public void onRelease(GiraffePlayer giraffePlayer) {
+            released++;
+        }
+
+        @Override
+        public boolean onError(GiraffePlayer giraffePlayer, int what, int extra) {
+            errorWhat = what;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package tcking.github.com.giraffeplayer2;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * decisions of LiveLatencyController on synthetic buffer levels
+ */
+public class LiveLatencyControllerTest {
+    private static final float DELTA = 0.001f;
+
+    /**
+     * a player which reports the buffer level set by the test
+     */
+    private static class FakeSource implements LiveLatencyController.Source {
+        private long buffered;
+
+        @Override
+        public long readBufferedDuration() {
+            return buffered;
+        }
+    }
+
+    private final FakeSource source = new FakeSource();
+    private final LiveLatencyController controller = new LiveLatencyController(new LiveLatencyConfig()
+            .setTargetLatency(3000).setTolerance(500).setMinSpeed(0.9f).setMaxSpeed(1.2f)
+            .setSpeedGain(0.05f).setJumpThreshold(10000), source);
+
+    private int sample(long buffered) {
+        source.buffered = buffered;
+        return controller.sample();
+    }
+
+    @Test
+    public void normalSpeedWithinTolerance() {
+        assertEquals(LiveLatencyController.ACTION_NONE, sample(3000));
+        assertEquals(LiveLatencyController.ACTION_NONE, sample(3400));
+        assertEquals(LiveLatencyController.ACTION_NONE, sample(2600));
+        assertEquals(1f, controller.getSpeed(), DELTA);
+        assertEquals(2600, controller.getLatency());
+    }
+
+    @Test
+    public void speedsUpUntilTargetIsReached() {
+        assertEquals(LiveLatencyController.ACTION_SPEED, sample(5000));
+        assertEquals(1.1f, controller.getSpeed(), DELTA);
+        assertEquals(LiveLatencyController.ACTION_SPEED, sample(4000));
+        assertEquals(1.05f, controller.getSpeed(), DELTA);
+        //within the tolerance but still behind the target
+        assertEquals(LiveLatencyController.ACTION_SPEED, sample(3200));
+        assertEquals(1.01f, controller.getSpeed(), DELTA);
+        assertEquals(LiveLatencyController.ACTION_SPEED, sample(2950));
+        assertEquals(1f, controller.getSpeed(), DELTA);
+        assertEquals(LiveLatencyController.ACTION_NONE, sample(3100));
+    }
+
+    @Test
+    public void speedIsBounded() {
+        assertEquals(LiveLatencyController.ACTION_SPEED, sample(12000));
+        assertEquals(1.2f, controller.getSpeed(), DELTA);
+        assertEquals(LiveLatencyController.ACTION_NONE, sample(11000));
+        assertEquals(LiveLatencyController.ACTION_SPEED, sample(0));
+        assertEquals(0.9f, controller.getSpeed(), DELTA);
+    }
+
+    @Test
+    public void slowsDownWhenBufferRunsLow() {
+        assertEquals(LiveLatencyController.ACTION_SPEED, sample(1000));
+        assertEquals(0.9f, controller.getSpeed(), DELTA);
+        assertEquals(LiveLatencyController.ACTION_SPEED, sample(2000));
+        assertEquals(0.95f, controller.getSpeed(), DELTA);
+        assertEquals(LiveLatencyController.ACTION_SPEED, sample(3050));
+        assertEquals(1f, controller.getSpeed(), DELTA);
+    }
+
+    @Test
+    public void jumpsWhenFarBehind() {
+        sample(5000);
+        assertEquals(LiveLatencyController.ACTION_JUMP, sample(13001));
+        assertEquals(1f, controller.getSpeed(), DELTA);
+        controller.reset();
+        assertEquals(-1, controller.getLatency());
+
+        LiveLatencyController neverJump = new LiveLatencyController(new LiveLatencyConfig().setJumpThreshold(0), source);
+        source.buffered = 60 * 1000;
+        assertEquals(LiveLatencyController.ACTION_SPEED, neverJump.sample());
+        assertEquals(1.1f, neverJump.getSpeed(), DELTA);
+    }
+}
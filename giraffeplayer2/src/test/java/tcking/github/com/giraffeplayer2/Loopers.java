@@ -0,0 +1,36 @@
+package tcking.github.com.giraffeplayer2;
+
+import org.robolectric.Shadows;
+import org.robolectric.shadows.ShadowLooper;
+import org.robolectric.util.Scheduler;
+
+/**
+ * drive the playback looper of a player and the main looper by hand
+ */
+
+class Loopers {
+    private static final int MAX_ROUNDS = 50;
+
+    /**
+     * run the messages of the player and main thread which are due now,until both are idle
+     */
+    static void idle(GiraffePlayer player) {
+        Scheduler playback = Shadows.shadowOf(player.getPlaybackLooper()).getScheduler();
+        Scheduler main = ShadowLooper.getShadowMainLooper().getScheduler();
+        for (int i = 0; i < MAX_ROUNDS && (playback.areAnyRunnable() || main.areAnyRunnable()); i++) {
+            playback.advanceBy(0);
+            main.advanceBy(0);
+        }
+    }
+
+    /**
+     * move the clocks of main thread and the playback looper forward,
+     * eg: let the delayed events of FakeMediaPlayer and the delayed retry happen
+     */
+    static void advance(GiraffePlayer player, long millis) {
+        idle(player);
+        ShadowLooper.idleMainLooper(millis);
+        Shadows.shadowOf(player.getPlaybackLooper()).getScheduler().advanceBy(millis);
+        idle(player);
+    }
+}
@@ -0,0 +1,75 @@
+package tcking.github.com.giraffeplayer2;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * stream encoding of OptionCodec
+ */
+public class OptionCodecTest {
+
+    static HashSet<Option> sampleOptions() {
+        HashSet<Option> options = new HashSet<>();
+        options.add(Option.create(4, "mediacodec", 1L));
+        options.add(Option.create(4, "framedrop", 5L));
+        options.add(Option.create(1, "user_agent", "giraffe/1.0 开心"));
+        options.add(Option.create(1, "timeout", -1L));
+        options.add(Option.create(2, "skip_loop_filter", (String) null));
+        return options;
+    }
+
+    @Test
+    public void roundTrip() throws IOException {
+        HashSet<Option> options = sampleOptions();
+        assertEquals(options, read(write(options)));
+        assertEquals(new HashSet<Option>(), read(write(new HashSet<Option>())));
+    }
+
+    @Test
+    public void unknownVersionIsRejected() throws IOException {
+        byte[] data = write(sampleOptions());
+        data[0] = (byte) (OptionCodec.VERSION + 1);
+        try {
+            read(data);
+            fail();
+        } catch (IOException e) {
+            //expected
+        }
+    }
+
+    @Test
+    public void badTagIsRejected() throws IOException {
+        HashSet<Option> options = new HashSet<>();
+        options.add(Option.create(4, "a", 1L));
+        byte[] data = write(options);
+        //version(1) count(4) category(4) name(2+1),then the tag
+        data[12] = 9;
+        try {
+            read(data);
+            fail();
+        } catch (IOException e) {
+            //expected
+        }
+    }
+
+    private static byte[] write(HashSet<Option> options) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        OptionCodec.write(options, out);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    private static HashSet<Option> read(byte[] data) throws IOException {
+        return OptionCodec.read(new DataInputStream(new ByteArrayInputStream(data)));
+    }
+}
@@ -0,0 +1,75 @@
+package tcking.github.com.giraffeplayer2;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * ordering,replacing and sharing of OptionProfile
+ */
+public class OptionProfileTest {
+
+    @Test
+    public void entriesAreSortedByCategoryAndName() {
+        OptionProfile profile = OptionProfile.EMPTY
+                .with(Option.create(4, "mediacodec", 1L))
+                .with(Option.create(1, "timeout", 30000000L))
+                .with(Option.create(4, "framedrop", 5L))
+                .with(Option.create(1, "user_agent", "giraffe"));
+        assertEquals(4, profile.size());
+        assertEquals("timeout", profile.getName(0));
+        assertEquals("user_agent", profile.getName(1));
+        assertEquals("giraffe", profile.getString(1));
+        assertEquals("framedrop", profile.getName(2));
+        assertEquals("mediacodec", profile.getName(3));
+        assertTrue(profile.isLong(3));
+        assertEquals(1, profile.getLong(3));
+    }
+
+    @Test
+    public void lastWriteWins() {
+        OptionProfile profile = OptionProfile.EMPTY
+                .with(Option.create(4, "framedrop", 1L))
+                .with(Option.create(4, "framedrop", 5L));
+        assertEquals(1, profile.size());
+        assertEquals(5L, profile.get(4, "framedrop"));
+        profile = profile.with(Option.create(4, "framedrop", "3"));
+        assertEquals("3", profile.get(4, "framedrop"));
+        assertNull(profile.get(1, "framedrop"));
+    }
+
+    @Test
+    public void profilesAreImmutable() {
+        OptionProfile base = OptionProfile.EMPTY.with(Option.create(4, "framedrop", 1L));
+        OptionProfile changed = base.with(Option.create(4, "framedrop", 5L)).with(Option.create(4, "mediacodec", 1L));
+        assertEquals(1L, base.get(4, "framedrop"));
+        assertEquals(1, base.size());
+        assertEquals(2, changed.size());
+        assertSame("an equal option changes nothing", base, base.with(Option.create(4, "framedrop", 1L)));
+    }
+
+    @Test
+    public void equalRegardlessOfInsertOrder() {
+        OptionProfile a = OptionProfile.EMPTY.with(Option.create(4, "a", 1L)).with(Option.create(1, "b", "x"));
+        OptionProfile b = OptionProfile.EMPTY.with(Option.create(1, "b", "x")).with(Option.create(4, "a", 1L));
+        assertEquals(a, b);
+        assertEquals(a.hashCode(), b.hashCode());
+        assertFalse(a.equals(a.with(Option.create(4, "a", 2L))));
+        assertEquals(a, OptionProfile.of(a.toOptions()));
+    }
+
+    @Test
+    public void copiedVideoInfoSharesProfile() {
+        VideoInfo defaultVideoInfo = new VideoInfo().addOption(Option.create(4, "framedrop", 1L));
+        VideoInfo copy = new VideoInfo(defaultVideoInfo);
+        assertSame(defaultVideoInfo.getOptionProfile(), copy.getOptionProfile());
+
+        copy.addOption(Option.create(4, "mediacodec", 1L));
+        assertEquals(1, defaultVideoInfo.getOptionProfile().size());
+        assertEquals(2, copy.getOptionProfile().size());
+    }
+}
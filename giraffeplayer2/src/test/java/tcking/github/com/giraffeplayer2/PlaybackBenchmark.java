@@ -0,0 +1,244 @@
+package tcking.github.com.giraffeplayer2;
+
+import android.net.Uri;
+import android.os.Parcel;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashSet;
+import java.util.Locale;
+
+import tv.danmaku.ijk.media.player.IMediaPlayer;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * micro benchmarks of the playback core,skipped unless -Dgiraffe.benchmark=true.
+ * every benchmark warms up first,then reports the best and average cost of several rounds
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 23)
+public class PlaybackBenchmark {
+    private static final int WARM_UP_ROUNDS = 3;
+    private static final int ROUNDS = 5;
+
+    private int playerIndex;
+
+    @Before
+    public void setUp() {
+        assumeTrue(Boolean.getBoolean("giraffe.benchmark"));
+        ShadowLooper.pauseMainLooper();
+        PlayerManager.getInstance().setMediaPlayerFactory(new MediaPlayerFactory() {
+            @Override
+            public IMediaPlayer create(VideoInfo videoInfo) {
+                return new FakeMediaPlayer();
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        PlayerManager.getInstance().setMediaPlayerFactory(null);
+    }
+
+    private GiraffePlayer newPlayer() {
+        VideoInfo videoInfo = new VideoInfo(Uri.parse("http://example.com/video.mp4"))
+                .setFingerprint("benchmark-" + (playerIndex++));
+        return GiraffePlayer.createPlayer(RuntimeEnvironment.application, videoInfo);
+    }
+
+    @Test
+    public void createAndRelease() {
+        measure("create,prepare,release", 200, new Runnable() {
+            @Override
+            public void run() {
+                GiraffePlayer player = newPlayer();
+                player.start();
+                Loopers.idle(player);
+                player.release();
+                Loopers.idle(player);
+            }
+        });
+    }
+
+    @Test
+    public void messageRoundTrip() {
+        final GiraffePlayer player = newPlayer();
+        player.start();
+        Loopers.idle(player);
+        measure("pause,start through handler", 5000, new Runnable() {
+            @Override
+            public void run() {
+                player.pause();
+                player.start();
+                Loopers.idle(player);
+            }
+        });
+        player.release();
+        Loopers.idle(player);
+    }
+
+    @Test
+    public void callbackFanOut() {
+        final GiraffePlayer player = newPlayer();
+        for (int i = 0; i < 8; i++) {
+            player.addPlayerListener(new DefaultPlayerListener());
+        }
+        final PlayerListener proxy = player.getProxyPlayerListener();
+        Runnable dispatch = new Runnable() {
+            @Override
+            public void run() {
+                proxy.onInfo(player, IMediaPlayer.MEDIA_INFO_NETWORK_BANDWIDTH, 0);
+                proxy.onBufferingUpdate(player, 50);
+            }
+        };
+        measure("onInfo,onBufferingUpdate to 8 listeners", 100000, dispatch);
+        double allocated = measureAllocation("onInfo,onBufferingUpdate to 8 listeners", 100000, dispatch);
+        //the listener chain is cached,nothing is allocated per event
+        assertTrue("allocated " + allocated + " bytes/op", allocated < 0.01);
+        player.release();
+        Loopers.idle(player);
+    }
+
+    @Test
+    public void bufferingUpdateBatching() {
+        final UIEventBatcher batcher = new UIEventBatcher(new UIEventBatcher.Target() {
+            @Override
+            public void onEvent(int type, int arg1, int arg2) {
+            }
+        });
+        measure("100 buffering updates,1 dispatch", 10000, new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < 100; i++) {
+                    batcher.postBufferingUpdate(i);
+                }
+                ShadowLooper.runUiThreadTasks();
+            }
+        });
+    }
+
+    @Test
+    public void optionParcel() {
+        final HashSet<Option> options = OptionCodecTest.sampleOptions();
+        final Parcel parcel = Parcel.obtain();
+        parcel.writeSerializable(options);
+        System.out.println("[benchmark] options parcel size,serializable:" + parcel.dataSize());
+        parcel.setDataSize(0);
+        OptionCodec.writeToParcel(options, parcel);
+        System.out.println("[benchmark] options parcel size,codec:" + parcel.dataSize());
+        measure("options parcel round trip,serializable", 2000, new Runnable() {
+            @Override
+            public void run() {
+                parcel.setDataPosition(0);
+                parcel.writeSerializable(options);
+                parcel.setDataPosition(0);
+                parcel.readSerializable();
+            }
+        });
+        measure("options parcel round trip,codec", 2000, new Runnable() {
+            @Override
+            public void run() {
+                parcel.setDataPosition(0);
+                OptionCodec.writeToParcel(options, parcel);
+                parcel.setDataPosition(0);
+                OptionCodec.readFromParcel(parcel);
+            }
+        });
+        parcel.recycle();
+    }
+
+    @Test
+    public void copyVideoInfo() {
+        final VideoInfo defaultVideoInfo = new VideoInfo();
+        for (Option option : OptionCodecTest.sampleOptions()) {
+            defaultVideoInfo.addOption(option);
+        }
+        measure("copy VideoInfo with 5 options", 100000, new Runnable() {
+            @Override
+            public void run() {
+                new VideoInfo(defaultVideoInfo);
+            }
+        });
+    }
+
+    @Test
+    public void scrubbingLabels() {
+        //one second of seek bar drag at 120Hz over a 2 hours video,a label per frame
+        final long step = 2 * 3600 * 1000L / 120;
+        final TimeFormatter formatter = new TimeFormatter();
+        Runnable legacy = new Runnable() {
+            @Override
+            public void run() {
+                for (int frame = 0; frame < 120; frame++) {
+                    TimeFormatterTest.legacyFormat(frame * step);
+                }
+            }
+        };
+        Runnable formatted = new Runnable() {
+            @Override
+            public void run() {
+                for (int frame = 0; frame < 120; frame++) {
+                    formatter.format(frame * step);
+                }
+            }
+        };
+        measure("120 labels,String.format", 2000, legacy);
+        measure("120 labels,TimeFormatter", 2000, formatted);
+        measureAllocation("120 labels,String.format", 2000, legacy);
+        double allocated = measureAllocation("120 labels,TimeFormatter", 2000, formatted);
+        assertTrue("allocated " + allocated + " bytes/op", allocated < 0.01);
+    }
+
+    /**
+     * @return bytes allocated by the current thread per operation,after warm up
+     */
+    private static double measureAllocation(String name, int operations, Runnable operation) {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threadBean.isThreadAllocatedMemorySupported() && threadBean.isThreadAllocatedMemoryEnabled());
+        for (int round = 0; round < WARM_UP_ROUNDS; round++) {
+            for (int i = 0; i < operations; i++) {
+                operation.run();
+            }
+        }
+        long threadId = Thread.currentThread().getId();
+        long start = threadBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < operations; i++) {
+            operation.run();
+        }
+        double allocated = (threadBean.getThreadAllocatedBytes(threadId) - start) / (double) operations;
+        System.out.println(String.format(Locale.US, "[benchmark] %-36s allocated:%8.3f bytes/op", name, allocated));
+        return allocated;
+    }
+
+    private static void measure(String name, int operations, Runnable operation) {
+        for (int round = 0; round < WARM_UP_ROUNDS; round++) {
+            for (int i = 0; i < operations; i++) {
+                operation.run();
+            }
+        }
+        long best = Long.MAX_VALUE;
+        long total = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < operations; i++) {
+                operation.run();
+            }
+            long cost = (System.nanoTime() - start) / operations;
+            best = Math.min(best, cost);
+            total += cost;
+        }
+        System.out.println(String.format(Locale.US, "[benchmark] %-36s best:%8d ns/op avg:%8d ns/op", name, best, total / ROUNDS));
+    }
+}
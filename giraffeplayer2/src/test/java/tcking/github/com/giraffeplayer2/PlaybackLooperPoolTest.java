@@ -0,0 +1,67 @@
+package tcking.github.com.giraffeplayer2;
+
+import android.os.Looper;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.Shadows;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * players come and go,the playback threads stay bounded and idle ones are quit
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 23)
+public class PlaybackLooperPoolTest {
+    private static final int MAX_SIZE = 4;
+    private static final long KEEP_ALIVE = 1000;
+
+    @Test
+    public void threadCountStaysFlat() {
+        PlaybackLooperPool pool = new PlaybackLooperPool().setMaxSize(MAX_SIZE).setKeepAliveTime(KEEP_ALIVE);
+        Set<Looper> seen = new HashSet<>();
+        //like a scrolling list,a few players alive at the same time
+        ArrayDeque<Looper> alive = new ArrayDeque<>();
+        for (int i = 0; i < 5000; i++) {
+            Looper looper = pool.acquire();
+            seen.add(looper);
+            alive.add(looper);
+            if (alive.size() > 10) {
+                pool.release(alive.poll());
+            }
+            assertTrue("threads:" + pool.getThreadCount(), pool.getThreadCount() <= MAX_SIZE);
+        }
+        assertTrue(seen.size() <= MAX_SIZE);
+        while (!alive.isEmpty()) {
+            pool.release(alive.poll());
+        }
+        assertEquals(MAX_SIZE, pool.getThreadCount());
+
+        for (Looper looper : seen) {
+            Shadows.shadowOf(looper).getScheduler().advanceBy(KEEP_ALIVE);
+        }
+        assertEquals(0, pool.getThreadCount());
+    }
+
+    @Test
+    public void threadIsReusedBeforeKeepAlive() {
+        PlaybackLooperPool pool = new PlaybackLooperPool().setMaxSize(MAX_SIZE).setKeepAliveTime(KEEP_ALIVE);
+        Looper looper = pool.acquire();
+        pool.release(looper);
+        Shadows.shadowOf(looper).getScheduler().advanceBy(KEEP_ALIVE - 1);
+        assertEquals(1, pool.getThreadCount());
+        assertTrue(looper == pool.acquire());
+        //acquired again,the pending quit is cancelled
+        Shadows.shadowOf(looper).getScheduler().advanceBy(KEEP_ALIVE);
+        assertEquals(1, pool.getThreadCount());
+        pool.release(looper);
+    }
+}
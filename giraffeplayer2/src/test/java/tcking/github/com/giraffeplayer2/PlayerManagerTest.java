@@ -0,0 +1,140 @@
+package tcking.github.com.giraffeplayer2;
+
+import android.app.Activity;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import tv.danmaku.ijk.media.player.IMediaPlayer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * parking players of VideoViews and attaching them again by PlayerManager
+ */
+@RunWith(RobolectricTestRunner.class)
+//VideoView inflates the controller layout of the library
+@Config(manifest = "src/main/AndroidManifest.xml", sdk = 23)
+public class PlayerManagerTest {
+    private static final long PREPARE_DELAY = 100;
+
+    private final List<FakeMediaPlayer> mediaPlayers = new ArrayList<>();
+    private final List<GiraffePlayer> players = new ArrayList<>();
+    private Activity activity;
+
+    @Before
+    public void setUp() {
+        ShadowLooper.pauseMainLooper();
+        PlayerManager.getInstance().setMediaPlayerFactory(new MediaPlayerFactory() {
+            @Override
+            public IMediaPlayer create(VideoInfo videoInfo) {
+                FakeMediaPlayer mediaPlayer = new FakeMediaPlayer().setPrepareDelay(PREPARE_DELAY);
+                mediaPlayers.add(mediaPlayer);
+                return mediaPlayer;
+            }
+        });
+        activity = Robolectric.setupActivity(Activity.class);
+    }
+
+    @After
+    public void tearDown() {
+        PlayerManager.getInstance().clearParked();
+        PlayerManager.getInstance().setParkBudget(2);
+        for (GiraffePlayer player : players) {
+            player.release();
+            Loopers.idle(player);
+        }
+        PlayerManager.getInstance().setMediaPlayerFactory(null);
+    }
+
+    private VideoView videoView(Activity activity, String fingerprint, String name) {
+        VideoView videoView = new VideoView(activity);
+        videoView.setVideoPath("http://example.com/" + name + ".mp4").setFingerprint(fingerprint);
+        return videoView;
+    }
+
+    private GiraffePlayer play(VideoView videoView) {
+        GiraffePlayer player = videoView.getPlayer();
+        players.add(player);
+        player.start();
+        Loopers.advance(player, PREPARE_DELAY);
+        return player;
+    }
+
+    private GiraffePlayer park(String fingerprint, GiraffePlayer player) {
+        PlayerManager.getInstance().parkByFingerprint(fingerprint);
+        Loopers.idle(player);
+        return player;
+    }
+
+    @Test
+    public void parkedPlayerIsAttachedAgain() {
+        GiraffePlayer player = park("item", play(videoView(activity, "item", "a")));
+        FakeMediaPlayer mediaPlayer = mediaPlayers.get(0);
+        assertTrue(player.isParked());
+        assertFalse(mediaPlayer.isPlaying());
+
+        assertSame(player, play(videoView(activity, "item", "a")));
+        assertFalse(player.isParked());
+        assertTrue(PlayerManager.getInstance().isCurrentPlayer("item"));
+        assertTrue(mediaPlayer.isPlaying());
+        assertEquals("no second prepareAsync", 1, mediaPlayer.getPrepareCount());
+        assertEquals(1, mediaPlayers.size());
+    }
+
+    @Test
+    public void parkedPlayerOfAnotherUriIsReleased() {
+        GiraffePlayer parked = park("item", play(videoView(activity, "item", "a")));
+        GiraffePlayer player = play(videoView(activity, "item", "b"));
+        Loopers.idle(parked);
+        assertNotSame(parked, player);
+        assertTrue(parked.isReleased());
+        assertTrue(mediaPlayers.get(0).isReleased());
+        assertEquals(2, mediaPlayers.size());
+    }
+
+    @Test
+    public void parkBudgetEvictsLeastRecentlyParked() {
+        PlayerManager.getInstance().setParkBudget(1);
+        GiraffePlayer first = park("first", play(videoView(activity, "first", "first")));
+        GiraffePlayer second = park("second", play(videoView(activity, "second", "second")));
+        Loopers.idle(first);
+        assertTrue(first.isReleased());
+        assertTrue(second.isParked());
+        assertFalse(second.isReleased());
+
+        PlayerManager.getInstance().setParkBudget(0);
+        Loopers.idle(second);
+        assertTrue(second.isReleased());
+        GiraffePlayer third = park("third", play(videoView(activity, "third", "third")));
+        assertTrue("released instead of parked", third.isReleased());
+        assertFalse(third.isParked());
+    }
+
+    @Test
+    public void onlyPlayersOfDestroyedActivityAreReleased() {
+        Activity other = Robolectric.setupActivity(Activity.class);
+        GiraffePlayer feed = park("feed", play(videoView(activity, "feed", "feed")));
+        GiraffePlayer detail = park("detail", play(videoView(other, "detail", "detail")));
+
+        PlayerManager.getInstance().releaseDetachedPlayers(other);
+        Loopers.idle(feed);
+        Loopers.idle(detail);
+        assertTrue(detail.isReleased());
+        assertFalse(feed.isReleased());
+        assertTrue(feed.isParked());
+    }
+}
@@ -0,0 +1,36 @@
+package tcking.github.com.giraffeplayer2;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import tv.danmaku.ijk.media.player.IMediaPlayer;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+/**
+ * the listener chain is resolved once per binding version,events are dispatched without allocation
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 23)
+public class ProxyPlayerListenerTest {
+
+    @Test
+    public void chainIsCachedUntilBindingChanged() {
+        ProxyPlayerListener proxy = new ProxyPlayerListener(new VideoInfo().setFingerprint("chain"));
+        ProxyPlayerListener.Chain chain = proxy.chain();
+        proxy.onInfo(null, IMediaPlayer.MEDIA_INFO_NETWORK_BANDWIDTH, 0);
+        proxy.onBufferingUpdate(null, 50);
+        assertSame(chain, proxy.chain());
+
+        PlayerManager.getInstance().notifyBindingChanged();
+        ProxyPlayerListener.Chain resolved = proxy.chain();
+        assertNotSame(chain, resolved);
+        assertSame(resolved, proxy.chain());
+
+        proxy.setVideoInfo(new VideoInfo().setFingerprint("other"));
+        assertNotSame("attached to another VideoView", resolved, proxy.chain());
+    }
+}
@@ -0,0 +1,128 @@
+package tcking.github.com.giraffeplayer2;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * ResumeStore on a temporary log file
+ */
+public class ResumeStoreTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void positionsSurviveRestart() throws Exception {
+        File file = new File(folder.newFolder(), "resume.log");
+        ResumeStore store = new ResumeStore(file);
+        store.put("a", 60000, 600000);
+        store.put("b", 70000, 0);
+        store.put("a", 65000, 600000);
+        store.close();
+        assertTrue(store.awaitFlushed(2000));
+
+        ResumeStore restarted = new ResumeStore(file);
+        assertEquals(65000, restarted.get("a"));
+        assertEquals(70000, restarted.get("b"));
+        assertEquals(0, restarted.get("c"));
+        restarted.close();
+    }
+
+    @Test
+    public void positionsNearStartOrEndAreCleared() throws Exception {
+        File file = new File(folder.newFolder(), "resume.log");
+        ResumeStore store = new ResumeStore(file);
+        store.put("a", 60000, 600000);
+        store.put("a", 598000, 600000);
+        assertEquals(0, store.get("a"));
+        store.put("b", 60000, 600000);
+        store.put("b", 1000, 600000);
+        assertEquals(0, store.get("b"));
+        store.close();
+        assertTrue(store.awaitFlushed(2000));
+
+        assertEquals(0, new ResumeStore(file).size());
+    }
+
+    @Test
+    public void writesAreBatched() throws Exception {
+        File file = new File(folder.newFolder(), "resume.log");
+        ResumeStore store = new ResumeStore(file);
+        for (int i = 0; i < 100; i++) {
+            store.put("a", 10000 + i * 1000, 0);
+        }
+        assertEquals("nothing written before the batch delay", 0, file.length());
+        store.flush();
+        assertTrue(store.awaitFlushed(2000));
+        //magic + one record
+        assertEquals(4 + 1 + 2 + 1 + 8, file.length());
+        store.close();
+    }
+
+    @Test
+    public void logIsCompacted() throws Exception {
+        File file = new File(folder.newFolder(), "resume.log");
+        ResumeStore store = new ResumeStore(file);
+        for (int i = 0; i < 500; i++) {
+            store.put("a", 10000 + i * 1000, 0);
+            store.flush();
+            assertTrue(store.awaitFlushed(2000));
+        }
+        assertTrue("log must not keep every record:" + file.length(), file.length() < 100 * 12);
+        store.close();
+        assertEquals(10000 + 499 * 1000, new ResumeStore(file).get("a"));
+    }
+
+    @Test
+    public void oldestEntriesAreEvicted() throws Exception {
+        File file = new File(folder.newFolder(), "resume.log");
+        ResumeStore store = new ResumeStore(file).setMaxEntries(2);
+        store.put("a", 10000, 0);
+        store.put("b", 10000, 0);
+        store.get("a");
+        store.put("c", 10000, 0);
+        assertEquals(2, store.size());
+        assertEquals(0, store.get("b"));
+        store.close();
+        assertTrue(store.awaitFlushed(2000));
+        assertEquals(0, new ResumeStore(file).get("b"));
+    }
+
+    @Test
+    public void brokenTailIsIgnored() throws Exception {
+        File file = new File(folder.newFolder(), "resume.log");
+        ResumeStore store = new ResumeStore(file);
+        store.put("a", 60000, 0);
+        store.close();
+        assertTrue(store.awaitFlushed(2000));
+        //a record cut by a crash
+        FileOutputStream out = new FileOutputStream(file, true);
+        out.write(new byte[]{1, 0, 5, 'b'});
+        out.close();
+
+        ResumeStore restarted = new ResumeStore(file);
+        assertEquals(60000, restarted.get("a"));
+        restarted.put("c", 30000, 0);
+        restarted.close();
+        assertTrue(restarted.awaitFlushed(2000));
+        ResumeStore again = new ResumeStore(file);
+        assertEquals(60000, again.get("a"));
+        assertEquals(30000, again.get("c"));
+    }
+
+    @Test
+    public void badFileStartsEmpty() throws IOException {
+        File file = new File(folder.newFolder(), "resume.log");
+        FileOutputStream out = new FileOutputStream(file);
+        out.write("not a log".getBytes("US-ASCII"));
+        out.close();
+        assertEquals(0, new ResumeStore(file).size());
+    }
+}
@@ -0,0 +1,74 @@
+package tcking.github.com.giraffeplayer2;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import tv.danmaku.ijk.media.player.IMediaPlayer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * backoff,jitter and error filters of RetryPolicy
+ */
+public class RetryPolicyTest {
+    private static final int IO = IMediaPlayer.MEDIA_ERROR_IO;
+
+    @Test
+    public void delayGrowsUpToMaxDelay() {
+        RetryPolicy policy = new RetryPolicy().setInitialDelay(1000).setMultiplier(2).setMaxDelay(5000).setJitter(0);
+        Random random = new Random(1);
+        assertEquals(1000, policy.getDelay(0, random));
+        assertEquals(2000, policy.getDelay(1, random));
+        assertEquals(4000, policy.getDelay(2, random));
+        assertEquals(5000, policy.getDelay(3, random));
+        assertEquals(5000, policy.getDelay(100, random));
+    }
+
+    @Test
+    public void jitterSpreadsDelays() {
+        RetryPolicy policy = new RetryPolicy().setInitialDelay(1000).setJitter(0.5f);
+        Random random = new Random(1);
+        long min = Long.MAX_VALUE;
+        long max = 0;
+        for (int i = 0; i < 1000; i++) {
+            long delay = policy.getDelay(0, random);
+            min = Math.min(min, delay);
+            max = Math.max(max, delay);
+        }
+        assertTrue("min:" + min, min >= 500 && min < 550);
+        assertTrue("max:" + max, max <= 1000 && max > 950);
+    }
+
+    @Test
+    public void attemptsAreCapped() {
+        RetryPolicy policy = new RetryPolicy().setMaxAttempts(3);
+        assertTrue(policy.shouldRetry(IMediaPlayer.MEDIA_ERROR_UNKNOWN, IO, 2));
+        assertFalse(policy.shouldRetry(IMediaPlayer.MEDIA_ERROR_UNKNOWN, IO, 3));
+        assertTrue(policy.setMaxAttempts(0).shouldRetry(IMediaPlayer.MEDIA_ERROR_UNKNOWN, IO, 1000));
+    }
+
+    @Test
+    public void errorsAreFilteredByClass() {
+        assertEquals(RetryPolicy.ERROR_NETWORK, RetryPolicy.classify(IMediaPlayer.MEDIA_ERROR_UNKNOWN, IO));
+        assertEquals(RetryPolicy.ERROR_SERVER_DIED, RetryPolicy.classify(IMediaPlayer.MEDIA_ERROR_SERVER_DIED, 0));
+        assertEquals(RetryPolicy.ERROR_FORMAT,
+                RetryPolicy.classify(IMediaPlayer.MEDIA_ERROR_UNKNOWN, IMediaPlayer.MEDIA_ERROR_MALFORMED));
+        assertEquals(RetryPolicy.ERROR_OTHER, RetryPolicy.classify(-10000, 0));
+
+        RetryPolicy policy = new RetryPolicy();
+        assertFalse(policy.shouldRetry(IMediaPlayer.MEDIA_ERROR_UNKNOWN, IMediaPlayer.MEDIA_ERROR_UNSUPPORTED, 0));
+        assertTrue(policy.shouldRetry(-10000, 0, 0));
+        assertFalse(policy.setRetryOn(RetryPolicy.ERROR_NETWORK).shouldRetry(-10000, 0, 0));
+    }
+
+    @Test
+    public void fixedPolicyKeepsRetryInterval() {
+        RetryPolicy policy = new VideoInfo().setRetryInterval(3).getRetryPolicy();
+        assertEquals(3000, policy.getDelay(0, new Random()));
+        assertEquals(3000, policy.getDelay(50, new Random()));
+        assertTrue(policy.shouldRetry(IMediaPlayer.MEDIA_ERROR_UNKNOWN, IMediaPlayer.MEDIA_ERROR_UNSUPPORTED, 50));
+    }
+}
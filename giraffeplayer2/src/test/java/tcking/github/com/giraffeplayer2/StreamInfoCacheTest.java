@@ -0,0 +1,71 @@
+package tcking.github.com.giraffeplayer2;
+
+import org.junit.Test;
+
+import tv.danmaku.ijk.media.player.IjkMediaPlayer;
+import tv.danmaku.ijk.media.player.misc.ITrackInfo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * eviction of StreamInfoCache and the probe options of a cached stream
+ */
+public class StreamInfoCacheTest {
+    private static final int FORMAT = IjkMediaPlayer.OPT_CATEGORY_FORMAT;
+
+    private static StreamInfo info(int width, int height) {
+        return new StreamInfo("mov,mp4,m4a,3gp,3g2,mj2", "h264", "aac", 60 * 1000, width, height,
+                new int[]{ITrackInfo.MEDIA_TRACK_TYPE_VIDEO, ITrackInfo.MEDIA_TRACK_TYPE_AUDIO},
+                new String[]{"und", "en"});
+    }
+
+    @Test
+    public void leastRecentlyUsedIsEvicted() {
+        StreamInfoCache cache = new StreamInfoCache(2);
+        StreamInfo a = info(1280, 720);
+        StreamInfo b = info(640, 360);
+        cache.put("a", a);
+        cache.put("b", b);
+        assertSame(a, cache.get("a"));
+        cache.put("c", info(320, 180));
+        assertEquals(2, cache.size());
+        assertNull(cache.get("b"));
+        assertSame(a, cache.get("a"));
+
+        cache.setMaxSize(0);
+        assertEquals(0, cache.size());
+        cache.put("a", a);
+        assertNull(cache.get("a"));
+        assertNull(cache.get(null));
+    }
+
+    @Test
+    public void probeOptionsYieldToVideoOptions() {
+        StreamInfo info = info(1280, 720);
+        OptionProfile probe = info.probeOptions();
+        assertEquals(StreamInfo.FAST_PROBE_SIZE, probe.get(FORMAT, "probesize"));
+        assertEquals(StreamInfo.FAST_ANALYZE_DURATION, probe.get(FORMAT, "analyzeduration"));
+
+        VideoInfo videoInfo = new VideoInfo().setBufferConfig(new BufferConfig().setProbeSize(16 * 1024));
+        OptionProfile options = probe.with(videoInfo.playerOptions());
+        assertEquals(16 * 1024L, options.get(FORMAT, "probesize"));
+        assertEquals(StreamInfo.FAST_ANALYZE_DURATION, options.get(FORMAT, "analyzeduration"));
+    }
+
+    @Test
+    public void missedTrackIsDetected() {
+        StreamInfo full = info(1280, 720);
+        assertTrue(full.hasSameTracks(info(640, 360)));
+        StreamInfo videoOnly = new StreamInfo("mpegts", "h264", null, 60 * 1000, 1280, 720,
+                new int[]{ITrackInfo.MEDIA_TRACK_TYPE_VIDEO}, new String[]{"und"});
+        assertFalse(full.hasSameTracks(videoOnly));
+        StreamInfo otherLanguage = new StreamInfo("mov,mp4,m4a,3gp,3g2,mj2", "h264", "aac", 60 * 1000, 1280, 720,
+                new int[]{ITrackInfo.MEDIA_TRACK_TYPE_VIDEO, ITrackInfo.MEDIA_TRACK_TYPE_AUDIO},
+                new String[]{"und", "fr"});
+        assertFalse(full.hasSameTracks(otherLanguage));
+    }
+}
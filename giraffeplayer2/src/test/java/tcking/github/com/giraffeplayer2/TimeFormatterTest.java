@@ -0,0 +1,59 @@
+package tcking.github.com.giraffeplayer2;
+
+import org.junit.Test;
+
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * labels of TimeFormatter,the same as the String.format ones it replaced
+ */
+public class TimeFormatterTest {
+
+    /**
+     * the labels before TimeFormatter
+     */
+    static String legacyFormat(long time) {
+        int totalSeconds = (int) (time / 1000);
+        int seconds = totalSeconds % 60;
+        int minutes = (totalSeconds / 60) % 60;
+        int hours = totalSeconds / 3600;
+        return hours > 0 ? String.format(Locale.US, "%02d:%02d:%02d", hours, minutes, seconds)
+                : String.format(Locale.US, "%02d:%02d", minutes, seconds);
+    }
+
+    @Test
+    public void edgeValues() {
+        TimeFormatter formatter = new TimeFormatter();
+        assertEquals("00:00", formatter.format(0));
+        assertEquals("00:00", formatter.format(999));
+        assertEquals("00:59", formatter.format(59999));
+        assertEquals("01:00", formatter.format(60000));
+        assertEquals("59:59", formatter.format(3599999));
+        assertEquals("01:00:00", formatter.format(3600000));
+        assertEquals("01:59:59", formatter.format(TimeFormatter.INTERNED_SECONDS * 1000L - 1));
+        assertEquals("02:00:00", formatter.format(TimeFormatter.INTERNED_SECONDS * 1000L));
+        assertEquals("100:00:00", formatter.format(100 * 3600 * 1000L));
+    }
+
+    @Test
+    public void negativeTimeIsClamped() {
+        //String.format gave 00:-5 and -1:-40 for these
+        TimeFormatter formatter = new TimeFormatter();
+        assertEquals("00:00", formatter.format(-1));
+        assertEquals("00:00", formatter.format(-5000));
+        assertEquals("00:00", formatter.format(-3700000));
+    }
+
+    @Test
+    public void sameAsStringFormat() {
+        TimeFormatter formatter = new TimeFormatter();
+        char[] buffer = new char[16];
+        for (long time = 0; time < 3 * 3600 * 1000L; time += 997) {
+            String expected = legacyFormat(time);
+            assertEquals(expected, formatter.format(time));
+            assertEquals(expected, new String(buffer, 0, formatter.format(time, buffer)));
+        }
+    }
+}
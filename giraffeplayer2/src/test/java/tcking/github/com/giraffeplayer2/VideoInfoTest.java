@@ -0,0 +1,48 @@
+package tcking.github.com.giraffeplayer2;
+
+import android.net.Uri;
+import android.os.Parcel;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * VideoInfo through a parcel,as it goes to PlayerActivity
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 23)
+public class VideoInfoTest {
+
+    @Test
+    public void parcelRoundTrip() {
+        VideoInfo videoInfo = new VideoInfo(Uri.parse("http://example.com/video.mp4"))
+                .setFingerprint("parcel")
+                .setTitle("title")
+                .setRetryPolicy(new RetryPolicy().setMaxAttempts(7))
+                .setResumeEnabled(true)
+                .setParallelFetch(4)
+                .setDisplayBackend(VideoInfo.DISPLAY_BACKEND_SURFACE);
+        for (Option option : OptionCodecTest.sampleOptions()) {
+            videoInfo.addOption(option);
+        }
+        Parcel parcel = Parcel.obtain();
+        videoInfo.writeToParcel(parcel, 0);
+        parcel.setDataPosition(0);
+        VideoInfo read = VideoInfo.CREATOR.createFromParcel(parcel);
+        parcel.recycle();
+
+        assertEquals(videoInfo.getUri(), read.getUri());
+        assertEquals("parcel", read.getFingerprint());
+        assertEquals("title", read.getTitle());
+        assertEquals(videoInfo.getOptions(), read.getOptions());
+        assertEquals(7, read.getRetryPolicy().getMaxAttempts());
+        assertTrue(read.isResumeEnabled());
+        assertEquals(4, read.getParallelFetch());
+        assertEquals(VideoInfo.DISPLAY_BACKEND_SURFACE, read.getDisplayBackend());
+    }
+}
@@ -0,0 +1,137 @@
+package tcking.github.com.giraffeplayer2;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * binding,unbinding and collecting of ViewRegistry,and a stress test from several threads
+ */
+public class ViewRegistryTest {
+    private static final int THREADS = 8;
+    private static final int ROUNDS = 20000;
+    private static final int SHARED_KEYS = 8;
+
+    /**
+     * stands for a VideoView,counts the events dispatched to it
+     */
+    private static class View {
+        private final AtomicInteger events = new AtomicInteger();
+    }
+
+    @Test
+    public void unbindKeepsViewBoundLater() {
+        ViewRegistry<View> registry = new ViewRegistry<>();
+        View first = new View();
+        View second = new View();
+        registry.bind("a", first);
+        assertSame(first, registry.get("a"));
+        registry.bind("a", second);
+        assertFalse(registry.unbind("a", first));
+        assertSame(second, registry.get("a"));
+        assertTrue(registry.unbind("a", second));
+        assertNull(registry.get("a"));
+        assertNull(registry.get(null));
+        assertEquals(0, registry.size());
+    }
+
+    @Test
+    public void collectedViewIsRemoved() throws InterruptedException {
+        ViewRegistry<View> registry = new ViewRegistry<>();
+        View kept = new View();
+        registry.bind("kept", kept);
+        registry.bind("dropped", new View());
+        for (int i = 0; i < 50 && registry.size() > 1; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        assertEquals(1, registry.size());
+        assertNull(registry.get("dropped"));
+        assertSame(kept, registry.get("kept"));
+    }
+
+    @Test
+    public void bindUnbindAndDispatchFromSeveralThreads() throws InterruptedException {
+        final ViewRegistry<View> registry = new ViewRegistry<>();
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final AtomicInteger dispatched = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            final int id = t;
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Random random = new Random(id);
+                    String ownKey = "own-" + id;
+                    try {
+                        start.await();
+                        for (int i = 0; i < ROUNDS; i++) {
+                            //a key only this thread writes,must always read what was written last
+                            View own = new View();
+                            registry.bind(ownKey, own);
+                            assertSame(own, registry.get(ownKey));
+                            registry.get(ownKey).events.incrementAndGet();
+                            if (random.nextBoolean()) {
+                                assertTrue(registry.unbind(ownKey, own));
+                                assertNull(registry.get(ownKey));
+                            }
+
+                            //keys every thread writes and dispatches to
+                            String shared = "shared-" + random.nextInt(SHARED_KEYS);
+                            View view = new View();
+                            switch (random.nextInt(3)) {
+                                case 0:
+                                    registry.bind(shared, view);
+                                    break;
+                                case 1:
+                                    //never bound,must not unbind the view of other threads
+                                    assertFalse(registry.unbind(shared, view));
+                                    break;
+                                default:
+                                    View target = registry.get(shared);
+                                    if (target != null) {
+                                        target.events.incrementAndGet();
+                                        dispatched.incrementAndGet();
+                                    }
+                            }
+                        }
+                        registry.unbind(ownKey, registry.get(ownKey));
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+        assertTrue(dispatched.get() > 0);
+        for (int t = 0; t < THREADS; t++) {
+            assertNull(registry.get("own-" + t));
+        }
+        //the views of shared keys are only held by the registry
+        for (int i = 0; i < 50 && registry.size() > 0; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        assertEquals(0, registry.size());
+    }
+}
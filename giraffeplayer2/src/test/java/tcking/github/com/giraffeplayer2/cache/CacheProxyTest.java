@@ -0,0 +1,219 @@
+package tcking.github.com.giraffeplayer2.cache;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * CacheProxy against a local origin server which supports range requests
+ */
+public class CacheProxyTest {
+    private static final int VIDEO_SIZE = 512 * 1024;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final byte[] video = new byte[VIDEO_SIZE];
+    private OriginServer origin;
+    private String originUrl;
+
+    @Before
+    public void setUp() throws IOException {
+        new Random(7).nextBytes(video);
+        origin = new OriginServer(video);
+        originUrl = origin.url("/video.mp4?id=1");
+    }
+
+    @After
+    public void tearDown() {
+        origin.stop();
+    }
+
+    @Test
+    public void servesRangesAndCachesThem() throws IOException {
+        CacheProxy proxy = new CacheProxy(folder.newFolder(), 10 * VIDEO_SIZE);
+        String url = proxy.getProxyUrl(originUrl);
+
+        assertArrayEquals(slice(100, 199), get(url, 100, 199));
+        assertArrayEquals(slice(200 * 1024, VIDEO_SIZE - 1), get(url, 200 * 1024, -1));
+        assertArrayEquals(video, get(url, -1, -1));
+        assertEquals(VIDEO_SIZE, proxy.getCacheSize());
+
+        int requests = origin.getRequests();
+        assertArrayEquals(video, get(url, -1, -1));
+        assertArrayEquals(slice(1000, 300 * 1024), get(url, 1000, 300 * 1024));
+        assertEquals("fully cached video must not hit the origin", requests, origin.getRequests());
+        proxy.shutdown();
+    }
+
+    @Test
+    public void cacheSurvivesRestart() throws IOException {
+        java.io.File dir = folder.newFolder();
+        CacheProxy proxy = new CacheProxy(dir, 10 * VIDEO_SIZE);
+        assertArrayEquals(video, get(proxy.getProxyUrl(originUrl), -1, -1));
+        proxy.shutdown();
+
+        //the index is written when the connection ends,which may be a moment after the last byte received
+        CacheProxy restarted = new CacheProxy(dir, 10 * VIDEO_SIZE);
+        for (int i = 0; i < 100 && restarted.getCacheSize() < VIDEO_SIZE; i++) {
+            sleep(20);
+            restarted = new CacheProxy(dir, 10 * VIDEO_SIZE);
+        }
+        assertEquals(VIDEO_SIZE, restarted.getCacheSize());
+        int requests = origin.getRequests();
+        assertArrayEquals(video, get(restarted.getProxyUrl(originUrl), -1, -1));
+        assertEquals(requests, origin.getRequests());
+        restarted.shutdown();
+    }
+
+    @Test
+    public void evictsWhenOverMaxSize() throws IOException {
+        CacheProxy proxy = new CacheProxy(folder.newFolder(), VIDEO_SIZE);
+        get(proxy.getProxyUrl(originUrl), -1, -1);
+        get(proxy.getProxyUrl(originUrl + "&other"), -1, -1);
+        assertTrue(awaitCacheSize(proxy, VIDEO_SIZE));
+        proxy.setMaxSize(0);
+        assertTrue(awaitCacheSize(proxy, 0));
+        proxy.shutdown();
+    }
+
+    //the proxy releases an entry after the last byte is sent,it may be still in use for a moment
+    private static boolean awaitCacheSize(CacheProxy proxy, long maxSize) {
+        for (int i = 0; i < 100 && proxy.getCacheSize() > maxSize; i++) {
+            sleep(20);
+            proxy.setMaxSize(proxy.getMaxSize());
+        }
+        return proxy.getCacheSize() <= maxSize;
+    }
+
+    @Test
+    public void parallelFetchReassemblesInOrder() throws IOException {
+        origin.throttle(20, 0);
+        CacheProxy proxy = new CacheProxy(folder.newFolder(), 10 * VIDEO_SIZE);
+        String url = proxy.getProxyUrl(originUrl, 4, 384 * 1024);
+
+        assertArrayEquals(slice(1000, VIDEO_SIZE - 1), get(url, 1000, -1));
+        assertTrue("window must be fetched by several requests", origin.getRequests() > 2);
+        //plus the first box header read by the mp4 scanner
+        assertEquals(VIDEO_SIZE - 1000 + 8, proxy.getThroughputMeter().getTotalBytes());
+        assertArrayEquals(video, get(url, -1, -1));
+        proxy.shutdown();
+    }
+
+    @Test
+    public void parallelFetchRespectsHostLimit() throws IOException {
+        CacheProxy proxy = new CacheProxy(folder.newFolder(), 10 * VIDEO_SIZE).setMaxConnectionsPerHost(1);
+        assertArrayEquals(video, get(proxy.getProxyUrl(originUrl, 4, VIDEO_SIZE), -1, -1));
+        proxy.shutdown();
+    }
+
+    @Test
+    public void servesMoovAtEndAsFaststart() throws IOException {
+        byte[] payload = new byte[200 * 1024];
+        new Random(11).nextBytes(payload);
+        byte[] ftyp = box("ftyp", "isom".getBytes("US-ASCII"), new byte[8]);
+        long mdatStart = ftyp.length;
+        byte[] mdat = box("mdat", payload);
+        long[] chunks = {mdatStart + 8, mdatStart + 8 + 1000, mdatStart + 8 + 100 * 1024};
+        byte[] moov = moov(chunks, 0);
+        byte[] original = concat(ftyp, mdat, moov);
+        byte[] faststart = concat(ftyp, moov(chunks, moov.length), mdat);
+
+        OriginServer mp4Origin = new OriginServer(original);
+        CacheProxy proxy = new CacheProxy(folder.newFolder(), 10 * VIDEO_SIZE);
+        String url = proxy.getProxyUrl(mp4Origin.url("/moov-at-end.mp4"));
+        //a seek before the head is read must see the same view
+        assertArrayEquals(Arrays.copyOfRange(faststart, 50 * 1024, faststart.length), get(url, 50 * 1024, -1));
+        assertArrayEquals(Arrays.copyOfRange(faststart, 10, 200), get(url, 10, 199));
+        assertArrayEquals(faststart, get(url, -1, -1));
+        proxy.shutdown();
+        mp4Origin.stop();
+    }
+
+    @Test
+    public void servesFaststartMp4AsItIs() throws IOException {
+        byte[] payload = new byte[64 * 1024];
+        new Random(13).nextBytes(payload);
+        byte[] ftyp = box("ftyp", "isom".getBytes("US-ASCII"), new byte[8]);
+        byte[] moov = moov(new long[]{ftyp.length + 8}, 0);
+        byte[] faststart = concat(ftyp, moov, box("mdat", payload));
+
+        OriginServer mp4Origin = new OriginServer(faststart);
+        CacheProxy proxy = new CacheProxy(folder.newFolder(), 10 * VIDEO_SIZE);
+        assertArrayEquals(faststart, get(proxy.getProxyUrl(mp4Origin.url("/faststart.mp4")), -1, -1));
+        proxy.shutdown();
+        mp4Origin.stop();
+    }
+
+    //moov/trak/mdia/minf/stbl/stco with the chunk offsets shifted by delta
+    private static byte[] moov(long[] chunks, long delta) {
+        byte[] stco = new byte[8 + 4 * chunks.length];
+        Mp4BoxScanner.writeUInt32(stco, 4, chunks.length);
+        for (int i = 0; i < chunks.length; i++) {
+            Mp4BoxScanner.writeUInt32(stco, 8 + 4 * i, chunks[i] + delta);
+        }
+        byte[] mvhd = new byte[100];
+        return box("moov", box("mvhd", mvhd), box("trak", box("mdia", box("minf", box("stbl", box("stco", stco))))));
+    }
+
+    private static byte[] box(String type, byte[]... payloads) {
+        byte[] payload = concat(payloads);
+        byte[] box = new byte[8 + payload.length];
+        Mp4BoxScanner.writeUInt32(box, 0, box.length);
+        for (int i = 0; i < 4; i++) {
+            box[4 + i] = (byte) type.charAt(i);
+        }
+        System.arraycopy(payload, 0, box, 8, payload.length);
+        return box;
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.write(part, 0, part.length);
+        }
+        return out.toByteArray();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private byte[] slice(int start, int end) {
+        return Arrays.copyOfRange(video, start, end + 1);
+    }
+
+    private static byte[] get(String url, long start, long end) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        if (start >= 0) {
+            connection.setRequestProperty("Range", "bytes=" + start + "-" + (end >= 0 ? end : ""));
+        }
+        InputStream in = connection.getInputStream();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = in.read(buffer)) > 0) {
+            out.write(buffer, 0, read);
+        }
+        in.close();
+        return out.toByteArray();
+    }
+}
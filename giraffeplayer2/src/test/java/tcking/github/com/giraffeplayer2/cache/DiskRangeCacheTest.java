@@ -0,0 +1,82 @@
+package tcking.github.com.giraffeplayer2.cache;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * entries of DiskRangeCache in use must survive the eviction of the same url
+ */
+public class DiskRangeCacheTest {
+    private static final int THREADS = 2;
+    private static final int ROUNDS = 5000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void acquireRacesEviction() throws Exception {
+        File dir = folder.newFolder();
+        //every release evicts the entry
+        final DiskRangeCache cache = new DiskRangeCache(dir, 0);
+        final String url = "http://example.com/video.mp4";
+        final File dataFile = new File(dir, DiskRangeCache.keyOf(url) + ".data");
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final AtomicBoolean done = new AtomicBoolean();
+
+        Thread[] users = new Thread[THREADS];
+        for (int i = 0; i < THREADS; i++) {
+            users[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    ByteBuffer buffer = ByteBuffer.allocate(1024);
+                    try {
+                        for (int n = 0; n < ROUNDS && failure.get() == null; n++) {
+                            CacheEntry entry = cache.acquire(url);
+                            try {
+                                buffer.clear();
+                                //ClosedChannelException if closed by a release of another thread
+                                entry.channel().write(buffer, 0);
+                                entry.addRange(0, buffer.capacity());
+                                //give a racing delete the chance to happen while in use
+                                Thread.yield();
+                                assertTrue("data file deleted while in use", dataFile.exists());
+                            } finally {
+                                cache.release(entry);
+                            }
+                        }
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    }
+                }
+            });
+        }
+        Thread cleaner = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (!done.get()) {
+                    cache.clear();
+                }
+            }
+        });
+        cleaner.start();
+        for (Thread user : users) {
+            user.start();
+        }
+        for (Thread user : users) {
+            user.join();
+        }
+        done.set(true);
+        cleaner.join();
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+    }
+}
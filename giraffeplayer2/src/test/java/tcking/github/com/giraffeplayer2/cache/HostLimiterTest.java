@@ -0,0 +1,44 @@
+package tcking.github.com.giraffeplayer2.cache;
+
+import org.junit.Test;
+
+import java.util.concurrent.Semaphore;
+
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * resizing HostLimiter while connections are open
+ */
+public class HostLimiterTest {
+    private static final String HOST = "example.com";
+
+    @Test
+    public void shrinkCountsOpenConnections() {
+        HostLimiter limiter = new HostLimiter(4);
+        Semaphore[] open = new Semaphore[3];
+        for (int i = 0; i < open.length; i++) {
+            open[i] = limiter.tryAcquire(HOST);
+            assertNotNull(open[i]);
+        }
+        limiter.setMaxPerHost(2);
+        assertNull("3 open,max 2", limiter.tryAcquire(HOST));
+        open[0].release();
+        assertNull("2 open,max 2", limiter.tryAcquire(HOST));
+        open[1].release();
+        assertNotNull(limiter.tryAcquire(HOST));
+        assertNull(limiter.tryAcquire(HOST));
+        assertNotNull("other hosts have their own permits", limiter.tryAcquire("example.org"));
+    }
+
+    @Test
+    public void growAddsPermits() {
+        HostLimiter limiter = new HostLimiter(1);
+        assertNotNull(limiter.tryAcquire(HOST));
+        assertNull(limiter.tryAcquire(HOST));
+        limiter.setMaxPerHost(3);
+        assertNotNull(limiter.tryAcquire(HOST));
+        assertNotNull(limiter.tryAcquire(HOST));
+        assertNull(limiter.tryAcquire(HOST));
+    }
+}
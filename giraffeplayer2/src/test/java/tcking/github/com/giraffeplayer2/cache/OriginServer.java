@@ -0,0 +1,105 @@
+package tcking.github.com.giraffeplayer2.cache;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * a local http server of one file which supports range requests,
+ * can be throttled by a latency before every response and a bandwidth per connection
+ */
+class OriginServer {
+    private static final int WRITE_SIZE = 16 * 1024;
+
+    private final byte[] content;
+    private final AtomicInteger requests = new AtomicInteger();
+    private final HttpServer server;
+    private long latency;
+    private int bytesPerSecond;
+
+    OriginServer(byte[] content) throws IOException {
+        this.content = content;
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                serve(exchange);
+            }
+        });
+        server.start();
+    }
+
+    /**
+     * @param latency ms before every response
+     * @param bytesPerSecond bandwidth of every connection,<=0 for unlimited
+     */
+    OriginServer throttle(long latency, int bytesPerSecond) {
+        this.latency = latency;
+        this.bytesPerSecond = bytesPerSecond;
+        return this;
+    }
+
+    String url(String path) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+
+    int getRequests() {
+        return requests.get();
+    }
+
+    void stop() {
+        server.stop(0);
+    }
+
+    private void serve(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        sleep(latency);
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        long start = 0;
+        long end = content.length - 1;
+        if (range != null) {
+            String spec = range.substring("bytes=".length());
+            int dash = spec.indexOf('-');
+            start = Long.parseLong(spec.substring(0, dash));
+            if (dash < spec.length() - 1) {
+                end = Math.min(end, Long.parseLong(spec.substring(dash + 1)));
+            }
+            exchange.getResponseHeaders().add("Content-Range", "bytes " + start + "-" + end + "/" + content.length);
+        }
+        exchange.getResponseHeaders().add("Content-Type", "video/mp4");
+        exchange.sendResponseHeaders(range != null ? 206 : 200, end - start + 1);
+        OutputStream out = exchange.getResponseBody();
+        try {
+            for (long position = start; position <= end; position += WRITE_SIZE) {
+                int length = (int) Math.min(WRITE_SIZE, end + 1 - position);
+                out.write(content, (int) position, length);
+                if (bytesPerSecond > 0) {
+                    out.flush();
+                    sleep(length * 1000L / bytesPerSecond);
+                }
+            }
+        } catch (IOException e) {
+            //client closed
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package tcking.github.com.giraffeplayer2.cache;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * time to the first bytes through the proxy from a throttled origin,one connection vs parallel connections.
+ * skipped unless -Dgiraffe.benchmark=true
+ */
+public class ParallelFetchBenchmark {
+    private static final int VIDEO_SIZE = 8 * 1024 * 1024;
+    private static final int HEAD_SIZE = 1024 * 1024;
+    private static final long LATENCY = 100;
+    private static final int BANDWIDTH_PER_CONNECTION = 512 * 1024;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private OriginServer origin;
+
+    @Before
+    public void setUp() throws IOException {
+        assumeTrue(Boolean.getBoolean("giraffe.benchmark"));
+        byte[] video = new byte[VIDEO_SIZE];
+        new Random(1).nextBytes(video);
+        origin = new OriginServer(video).throttle(LATENCY, BANDWIDTH_PER_CONNECTION);
+    }
+
+    @After
+    public void tearDown() {
+        if (origin != null) {
+            origin.stop();
+        }
+    }
+
+    @Test
+    public void timeToHead() throws IOException {
+        for (int connections : new int[]{1, 2, 4}) {
+            CacheProxy proxy = new CacheProxy(folder.newFolder(), 2L * VIDEO_SIZE);
+            String url = proxy.getProxyUrl(origin.url("/video.mp4?c=" + connections), connections, 2 * HEAD_SIZE);
+            long start = System.nanoTime();
+            long firstByte = readHead(url);
+            long cost = (System.nanoTime() - start) / 1000000;
+            System.out.println(String.format(Locale.US,
+                    "[benchmark] connections:%d first byte:%4d ms first %dKB:%5d ms throughput:%d KB/s",
+                    connections, (firstByte - start) / 1000000, HEAD_SIZE / 1024, cost,
+                    proxy.getThroughputMeter().getBytesPerSecond() / 1024));
+            proxy.shutdown();
+        }
+    }
+
+    //@return nano time of the first byte
+    private static long readHead(String url) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        InputStream in = connection.getInputStream();
+        byte[] buffer = new byte[16 * 1024];
+        long firstByte = 0;
+        int total = 0;
+        while (total < HEAD_SIZE) {
+            int read = in.read(buffer);
+            if (read < 0) {
+                break;
+            }
+            if (firstByte == 0) {
+                firstByte = System.nanoTime();
+            }
+            total += read;
+        }
+        connection.disconnect();
+        return firstByte;
+    }
+}